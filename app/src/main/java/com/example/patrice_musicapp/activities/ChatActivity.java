@@ -89,15 +89,18 @@ public class ChatActivity extends AppCompatActivity {
             public void done(List<Message> objects, ParseException e) {
                 if (e!=null){
                     Log.e(TAG, "Issue with getting messages", e);
+                    return;
                 }
-                messages.clear();
-                messages.addAll(objects);
-                adapter.notifyDataSetChanged();
-
-                if (firstLoad) {
-                    binding.rvChat.scrollToPosition(messages.size()-1);
-                    firstLoad = false;
-                }
+                //an unchanged poll diffs to nothing, so no rows are rebound
+                adapter.submitList(objects, new Runnable() {
+                    @Override
+                    public void run() {
+                        if (firstLoad) {
+                            binding.rvChat.scrollToPosition(messages.size()-1);
+                            firstLoad = false;
+                        }
+                    }
+                });
             }
         });
 
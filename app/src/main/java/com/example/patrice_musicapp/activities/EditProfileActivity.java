@@ -2,7 +2,6 @@ package com.example.patrice_musicapp.activities;
 
 import android.content.Intent;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Bundle;
 import android.util.Log;
@@ -22,8 +21,12 @@ import com.example.patrice_musicapp.databinding.ActivityEditProfileBinding;
 import com.example.patrice_musicapp.models.Genres;
 import com.example.patrice_musicapp.models.Instruments;
 import com.example.patrice_musicapp.models.User;
+import com.example.patrice_musicapp.utils.GeocodingService;
+import com.example.patrice_musicapp.utils.ImageIngest;
 import com.example.patrice_musicapp.utils.MediaUtil;
 import com.example.patrice_musicapp.utils.SocialsUtils;
+import com.example.patrice_musicapp.utils.Recommendations;
+import com.example.patrice_musicapp.utils.UploadQueue;
 import com.google.android.gms.common.api.Status;
 import com.google.android.libraries.places.api.Places;
 import com.google.android.libraries.places.api.model.Place;
@@ -39,14 +42,13 @@ import com.parse.SaveCallback;
 import org.parceler.Parcels;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
 
 public class EditProfileActivity extends AppCompatActivity {
     public static final String TAG = EditProfileActivity.class.getSimpleName();
+    private static final int PROFILE_PIC_EDGE = 512;
     private ActivityEditProfileBinding binding;
     private Toolbar toolbar;
     private User user;
@@ -125,13 +127,13 @@ public class EditProfileActivity extends AppCompatActivity {
 
 
         //make sure the location isn't null or [0,0]
-        try {
-            if (user.getLocation()!= null && (user.getLocation().getLatitude() != 0.0 && user.getLocation().getLongitude() != 0.0)){
-                String location = User.getStringFromLocation(user.getLocation(), EditProfileActivity.this);
-                binding.etLocation.setText(location);
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+        if (user.getLocation()!= null && (user.getLocation().getLatitude() != 0.0 && user.getLocation().getLongitude() != 0.0)){
+            GeocodingService.get(this).resolve(user.getLocation(), GeocodingService.Style.LOCALITY, new GeocodingService.Callback() {
+                @Override
+                public void onResolved(String location) {
+                    binding.etLocation.setText(location);
+                }
+            });
         }
 
         ArrayAdapter<Genres> genreAdapter = new ArrayAdapter<>
@@ -150,6 +152,12 @@ public class EditProfileActivity extends AppCompatActivity {
         binding.nachoTextViewGenres.setAdapter(genreAdapter);
         binding.nachoTextViewGenres.setText(user.getGenres());
 
+        //what the gig search filters on
+        if (user.hasHourRate()) {
+            binding.etHourRate.setText(String.valueOf(user.getHourRate()));
+        }
+        binding.cbSoloArtist.setChecked(user.isSoloArtist());
+
 
 
 
@@ -169,9 +177,22 @@ public class EditProfileActivity extends AppCompatActivity {
                 }
                 user.setGenre(binding.nachoTextViewGenres.getChipValues());
                 user.setInstrumentList(binding.nachoTextViewInstruments.getChipValues());
+                String hourRate = binding.etHourRate.getText().toString().trim();
+                if (hourRate.isEmpty()) {
+                    user.clearHourRate();
+                } else {
+                    try {
+                        user.setHourRate(Double.parseDouble(hourRate));
+                    } catch (NumberFormatException e) {
+                        e.printStackTrace();
+                    }
+                }
+                user.setSoloArtist(binding.cbSoloArtist.isChecked());
                 user.getParseUser().saveInBackground(new SaveCallback() {
                     @Override
                     public void done(ParseException e) {
+                        //only the signals that depend on the edited genres, instruments or location are rescored
+                        Recommendations.get().onProfileEdited();
                         setResult(EditProfileActivity.RESULT_OK);
                         finish();
                     }
@@ -241,34 +262,15 @@ public class EditProfileActivity extends AppCompatActivity {
         if (requestCode == MediaUtil.CAPTURE_IMAGE_ACTIVITY_REQUEST_CODE) {
             if (resultCode == RESULT_OK) { //make sure a photo was taken
                 // by this point we have the camera photo on disk
-                //decode the file
-                Bitmap takenImage = BitmapFactory.decodeFile(MediaUtil.photoFile.getAbsolutePath());
-                // Load the taken image into a preview
-                binding.ivProfilePic.setImageBitmap(takenImage);
-                saveProfilePic(MediaUtil.photoFile);
+                //sampled, turned upright and re-encoded in the background, then shown and saved
+                ingestProfilePic(Uri.fromFile(MediaUtil.photoFile));
             } else { // Result was a failure
                 Toast.makeText(this, "Picture wasn't taken!", Toast.LENGTH_SHORT).show();
             }
         } else if ((data != null) && requestCode == MediaUtil.PICK_PHOTO_CODE) {
             Uri photoUri = data.getData();
-            // Load the image located at photoUri into selectedImage
-            Bitmap selectedImage = MediaUtil.loadFromUri(photoUri, EditProfileActivity.this);
-
-            // Load the selected image into a preview
-            binding.ivProfilePic.setImageBitmap(selectedImage);
-
-            //save the Image to Parse by converting it to byte Array
-            // Configure byte output stream
-            FileOutputStream outStream = null;
-            try {
-                outStream = new FileOutputStream(MediaUtil.photoFile);
-            } catch (FileNotFoundException e) {
-                e.printStackTrace();
-            }
-
-            //Compress the image further 
-            selectedImage.compress(Bitmap.CompressFormat.JPEG, 100, outStream);
-            saveProfilePic(MediaUtil.photoFile);
+            //copied into photoFile at upload size, the original is never decoded in full
+            ingestProfilePic(photoUri);
 
         } else if(requestCode == 100 && resultCode == RESULT_OK){
             Place place = Autocomplete.getPlaceFromIntent(data);
@@ -286,21 +288,26 @@ public class EditProfileActivity extends AppCompatActivity {
     }
 
 
-    private void saveProfilePic(File photoFile) {
-        user.setImage(new ParseFile(photoFile));
-        user.getParseUser().saveInBackground(new SaveCallback() {
+    private void ingestProfilePic(Uri photoUri) {
+        //profile pictures are only ever shown small
+        new ImageIngest(this).setMaxEdge(PROFILE_PIC_EDGE).ingest(photoUri, MediaUtil.photoFile, binding.ivProfilePic, new ImageIngest.Callback() {
             @Override
-            public void done(ParseException e) {
-                if (e != null){
-                    Log.e(TAG, "Error while saving", e);
-                    Toast.makeText(EditProfileActivity.this, "Error while saving", Toast.LENGTH_SHORT).show();
+            public void onIngested(Bitmap preview) {
+                if (preview == null) {
+                    Toast.makeText(EditProfileActivity.this, "Could not load picture", Toast.LENGTH_SHORT).show();
+                    return;
                 }
-
-                Log.i(TAG, "Post save was successful!");
+                binding.ivProfilePic.setImageBitmap(preview);
+                saveProfilePic(MediaUtil.photoFile);
             }
         });
     }
 
+    private void saveProfilePic(File photoFile) {
+        //uploaded by UploadQueue, which sets it on the current user once the file is up
+        UploadQueue.enqueueAvatar(this, photoFile);
+    }
+
 
 
 
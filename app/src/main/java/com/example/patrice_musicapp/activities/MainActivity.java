@@ -5,26 +5,42 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentManager;
 import androidx.fragment.app.FragmentTransaction;
+import androidx.lifecycle.Observer;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.work.WorkInfo;
 
 import android.os.Bundle;
 import android.view.MenuItem;
+import android.view.View;
+import android.widget.ProgressBar;
+import android.widget.Toast;
 
 import com.example.patrice_musicapp.R;
+import com.example.patrice_musicapp.adapters.SearchAdapter;
 import com.example.patrice_musicapp.fragments.DiscoverFragment;
 import com.example.patrice_musicapp.fragments.FeedFragment;
 import com.example.patrice_musicapp.fragments.EventsFragment;
 import com.example.patrice_musicapp.fragments.ProfileFragment;
+import com.example.patrice_musicapp.models.User;
 import com.example.patrice_musicapp.utils.FragmentUtils;
+import com.example.patrice_musicapp.utils.GenreAffinityStore;
+import com.example.patrice_musicapp.utils.UploadQueue;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
+import com.parse.ParseUser;
+
+import java.util.List;
 
 public class MainActivity extends AppCompatActivity {
     private static final String TAG = MainActivity.class.getSimpleName();
     private BottomNavigationView bottomNavigationView;
+    private ProgressBar pbUploads;
     final FragmentManager fragmentManager = getSupportFragmentManager();
     Fragment feedFragment = new FeedFragment();
     Fragment discoverFragment = new DiscoverFragment();
     Fragment eventsFragment = new EventsFragment();
     Fragment profileFragment = new ProfileFragment();
+    //post rows look the same in the feed, profile and discover lists, so those lists recycle into one pool
+    private final RecyclerView.RecycledViewPool postViewPool = new RecyclerView.RecycledViewPool();
 
 
     @Override
@@ -32,6 +48,15 @@ public class MainActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
+        postViewPool.setMaxRecycledViews(R.id.view_type_post_text, 10);
+        postViewPool.setMaxRecycledViews(R.id.view_type_post_image, 10);
+        postViewPool.setMaxRecycledViews(R.id.view_type_post_video, 5);
+        postViewPool.setMaxRecycledViews(R.id.view_type_post_soundcloud, 5);
+        //the other rows of these lists are inner classes of their adapter, so they must not move to another adapter
+        postViewPool.setMaxRecycledViews(R.id.view_type_event, 0);
+        postViewPool.setMaxRecycledViews(SearchAdapter.TYPE_USER, 0);
+        postViewPool.setMaxRecycledViews(SearchAdapter.TYPE_EVENT, 0);
+
         bottomNavigationView = findViewById(R.id.bottomNavigation);
 
         bottomNavigationView.setOnNavigationItemSelectedListener(new BottomNavigationView.OnNavigationItemSelectedListener() {
@@ -60,10 +85,55 @@ public class MainActivity extends AppCompatActivity {
         // Set default selection
         bottomNavigationView.setSelectedItemId(R.id.action_feed);
 
+        User.backfillSearchFields(ParseUser.getCurrentUser());
+        GenreAffinityStore.schedule(this);
+
+        pbUploads = findViewById(R.id.pbUploads);
+        UploadQueue.getUploads(this).observe(this, new Observer<List<WorkInfo>>() {
+            @Override
+            public void onChanged(List<WorkInfo> uploads) {
+                showUploads(uploads);
+            }
+        });
+
 
 
 
 
     }
 
-}
\ No newline at end of file
+    //one bar for all running uploads, and a toast for the ones that gave up
+    private void showUploads(List<WorkInfo> uploads) {
+        int running = 0;
+        int progress = 0;
+        boolean finished = false;
+        for (WorkInfo upload : uploads) {
+            if (!upload.getState().isFinished()) {
+                running++;
+                progress += upload.getProgress().getInt(UploadQueue.KEY_PROGRESS, 0);
+            } else {
+                finished = true;
+                if (upload.getState() == WorkInfo.State.FAILED) {
+                    Toast.makeText(this, R.string.upload_failed, Toast.LENGTH_LONG).show();
+                }
+            }
+        }
+        if (finished) {
+            UploadQueue.forgetFinished(this);
+        }
+        if (running == 0) {
+            pbUploads.setVisibility(View.GONE);
+            return;
+        }
+        pbUploads.setVisibility(View.VISIBLE);
+        pbUploads.setProgress(progress / running);
+    }
+
+    //lets a list of posts in one of this activity's fragments recycle rows with the others
+    public static void usePostViewPool(Fragment fragment, RecyclerView recyclerView) {
+        if (fragment.getActivity() instanceof MainActivity) {
+            recyclerView.setRecycledViewPool(((MainActivity) fragment.getActivity()).postViewPool);
+        }
+    }
+
+}
@@ -1,9 +1,7 @@
 package com.example.patrice_musicapp.activities;
 
-import android.media.MediaPlayer;
-import android.net.Uri;
+import android.content.Context;
 import android.os.Bundle;
-import android.util.Log;
 import android.view.View;
 
 import androidx.appcompat.app.AppCompatActivity;
@@ -12,22 +10,29 @@ import androidx.appcompat.widget.Toolbar;
 import com.bumptech.glide.Glide;
 import com.example.patrice_musicapp.R;
 import com.example.patrice_musicapp.databinding.ActivityPostDetailsBinding;
+import com.example.patrice_musicapp.models.ParseImage;
 import com.example.patrice_musicapp.models.Post;
-import com.example.patrice_musicapp.utils.MediaUtil;
-import com.parse.ParseException;
+import com.example.patrice_musicapp.models.PostViewModel;
+import com.example.patrice_musicapp.utils.AppExecutors;
+import com.example.patrice_musicapp.utils.LikeStore;
+import com.example.patrice_musicapp.utils.LikeWriteCoalescer;
+import com.example.patrice_musicapp.utils.SoundCloudCard;
+import com.example.patrice_musicapp.utils.SoundCloudPlayer;
+import com.example.patrice_musicapp.utils.VideoPlayerPool;
 import com.parse.ParseFile;
 import com.parse.ParseUser;
-import com.parse.SaveCallback;
 
-import org.json.JSONException;
+import java.util.Collections;
 
 public class PostDetailsActivity extends AppCompatActivity {
     public static final String TAG = PostDetailsActivity.class.getSimpleName();
     private Toolbar toolbar;
     private Post post;
     private ActivityPostDetailsBinding binding;
-    String addS = "";
     private ParseUser user;
+    private PostViewModel viewModel;
+    private String videoUrl;
+    private SoundCloudCard soundCloudCard;
 
 
     @Override
@@ -40,6 +45,9 @@ public class PostDetailsActivity extends AppCompatActivity {
         toolbar = (Toolbar) findViewById(R.id.toolbar_post_details);
         toolbar.setTitle("Post Details");
 
+        //the post passed in is a copy of the one in the feed, so likes queued on that one are written first
+        LikeWriteCoalescer.flush();
+
         //get the intent and post passed in
         post = getIntent().getParcelableExtra("post");
         user = getIntent().getParcelableExtra("user");
@@ -50,47 +58,54 @@ public class PostDetailsActivity extends AppCompatActivity {
         binding.tvUsername.setText(user.getUsername());
         binding.tvCaption.setText(post.getCaption());
         binding.tvTimeStamp.setText(post.getTimeStamp());
+        binding.tvLikeCount.setText(PostViewModel.getLikeCountText(post.getLikesCount()));
 
-        if (post.getLikesCount() != 1) {
-            addS = "s";
-        }
-        binding.tvLikeCount.setText(String.valueOf(post.getLikesCount()) + " Like" + addS);
+        //place and like state take a geocoder lookup and a scan of the likes, so they are bound once worked out
+        final Context appContext = getApplicationContext();
+        AppExecutors.background().execute(new Runnable() {
+            @Override
+            public void run() {
+                LikeStore.loadForPage(Collections.singletonList(post));
+                final PostViewModel postViewModel = PostViewModel.create(post, appContext, null);
+                AppExecutors.mainThread().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!isDestroyed()) {
+                            bindViewModel(postViewModel);
+                        }
+                    }
+                });
+            }
+        });
 
 
 
         //check if the post has a valid image
         ParseFile image = post.getImage();
         if (image != null) {
-            binding.vvPostVideo.setVisibility(View.GONE);
-            binding.webviewSoundCloud.setVisibility(View.GONE);
+            binding.pvPostVideo.setVisibility(View.GONE);
+            binding.ivVideoPoster.setVisibility(View.GONE);
+            binding.cardSoundCloud.getRoot().setVisibility(View.GONE);
             binding.ivPostImage.setVisibility(View.VISIBLE);
-            Glide.with(this).load(post.getImage().getUrl()).into(binding.ivPostImage);
+            Glide.with(this).load(ParseImage.of(post)).into(binding.ivPostImage);
         }
 
         ParseFile video = post.getVideo();
         if (video != null) {
             binding.ivPostImage.setVisibility(View.GONE);
-            binding.webviewSoundCloud.setVisibility(View.GONE);
-            binding.vvPostVideo.setVisibility(View.VISIBLE);
-            try {
-                MediaUtil.videoUri = Uri.fromFile(post.getVideo().getFile());
-            } catch (ParseException e) {
-                e.printStackTrace();
-            }
-            MediaUtil.playbackRecordedVideo(binding.vvPostVideo, this);
-            binding.vvPostVideo.setOnPreparedListener(new MediaPlayer.OnPreparedListener() {
-                @Override
-                public void onPrepared(MediaPlayer mp) {
-                    mp.setLooping(true);
-                }
-            });
+            binding.cardSoundCloud.getRoot().setVisibility(View.GONE);
+            binding.pvPostVideo.setVisibility(View.VISIBLE);
+            //streamed with the shared player, which starts in onStart
+            videoUrl = video.getUrl();
+            VideoPlayerPool.get(this).bindPoster(binding.ivVideoPoster, videoUrl);
         }
 
         if(post.getSoundCloudUrl()!= null){
             binding.ivPostImage.setVisibility(View.GONE);
-            binding.vvPostVideo.setVisibility(View.GONE);
-            binding.webviewSoundCloud.setVisibility(View.VISIBLE);
-            MediaUtil.showSoundCloudPlayer(binding.webviewSoundCloud, post.getSoundCloudUrl());
+            binding.pvPostVideo.setVisibility(View.GONE);
+            binding.ivVideoPoster.setVisibility(View.GONE);
+            soundCloudCard = new SoundCloudCard(binding.cardSoundCloud.getRoot());
+            soundCloudCard.bind(post.getSoundCloudUrl());
         }
 
         //check if the user has a valid profilePic
@@ -107,54 +122,70 @@ public class PostDetailsActivity extends AppCompatActivity {
                     .into(binding.ivProfilePic);
         }
 
-        //change image for ivLike for liked and unliked
-        try {
-            if (post.isLiked(ParseUser.getCurrentUser())) {
-                Glide.with(this).load(getDrawable(R.drawable.ic_ufi_heart_active)).into(binding.ivLike);
-            } else {
-                Glide.with(this).load(getDrawable(R.drawable.ic_ufi_heart)).into(binding.ivLike);
-            }
-        } catch (JSONException e) {
-            e.printStackTrace();
-        }
-
-
         //set onClick listeners
         binding.ivLike.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View view) {
-                try {
-                    if (post.isLiked(ParseUser.getCurrentUser())) {
-                        //unlike post
-                        post.destroyLike(ParseUser.getCurrentUser());
-                        Glide.with(PostDetailsActivity.this).load(getDrawable(R.drawable.ic_ufi_heart)).into(binding.ivLike);
-                        addS = "";
-                        if ((post.getLikesCount()) != 1) {
-                            addS = "s";
-                        }
-                        binding.tvLikeCount.setText(String.valueOf(post.getLikesCount()) + " Like" + addS);
-                    } else {
-                        //like post
-                        post.addLike(ParseUser.getCurrentUser());
-                        Glide.with(PostDetailsActivity.this).load(getDrawable(R.drawable.ic_ufi_heart_active)).into(binding.ivLike);
-                        addS = "";
-                        if ((post.getLikesCount()) != 1) {
-                            addS = "s";
-                        }
-                        binding.tvLikeCount.setText(String.valueOf(post.getLikesCount()) + " Like" + addS);
-                    }
-                } catch (JSONException e) {
-                    e.printStackTrace();
+                //the like state is not known yet
+                if (viewModel == null) {
+                    return;
                 }
-
-                post.saveInBackground(new SaveCallback() {
-                    @Override
-                    public void done(ParseException e) {
-                        Log.i(TAG, "Saved like successfully");
-                    }
-                });
-
+                //like or unlike post, written once the taps settle
+                LikeWriteCoalescer.setLiked(post, !viewModel.isLiked());
+                bindViewModel(viewModel.withLike(post.isLiked(), post.getLikesCount()));
             }
         });
+        LikeWriteCoalescer.addListener(likeListener);
+    }
+
+    private final LikeWriteCoalescer.Listener likeListener = new LikeWriteCoalescer.Listener() {
+        @Override
+        public void onLikeReverted(Post revertedPost) {
+            if (viewModel != null && post.getObjectId().equals(revertedPost.getObjectId())) {
+                bindViewModel(viewModel.withLike(post.isLiked(), post.getLikesCount()));
+            }
+        }
+    };
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        if (videoUrl != null) {
+            VideoPlayerPool.get(this).play(binding.pvPostVideo, binding.ivVideoPoster, videoUrl);
+        }
+    }
+
+    @Override
+    protected void onStop() {
+        LikeWriteCoalescer.flush();
+        VideoPlayerPool.get(this).stop(binding.pvPostVideo);
+        VideoPlayerPool.get(this).releaseIfIdle();
+        if (soundCloudCard != null) {
+            SoundCloudPlayer.stop(soundCloudCard);
+        }
+        super.onStop();
+    }
+
+    @Override
+    protected void onDestroy() {
+        LikeWriteCoalescer.removeListener(likeListener);
+        super.onDestroy();
+    }
+
+    private void bindViewModel(PostViewModel viewModel) {
+        this.viewModel = viewModel;
+        if (viewModel.getPlaceLabel() != null) {
+            binding.tvLocation.setVisibility(View.VISIBLE);
+            binding.tvLocation.setText(viewModel.getPlaceLabel());
+        } else {
+            binding.tvLocation.setVisibility(View.INVISIBLE);
+        }
+        binding.tvLikeCount.setText(viewModel.getLikeCountText());
+        //change image for ivLike for liked and unliked
+        if (viewModel.isLiked()) {
+            Glide.with(this).load(getDrawable(R.drawable.ic_ufi_heart_active)).into(binding.ivLike);
+        } else {
+            Glide.with(this).load(getDrawable(R.drawable.ic_ufi_heart)).into(binding.ivLike);
+        }
     }
 }
@@ -8,6 +8,7 @@ import android.view.View;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.example.patrice_musicapp.databinding.ActivitySignUpBinding;
+import com.example.patrice_musicapp.models.User;
 import com.parse.ParseException;
 import com.parse.ParseUser;
 import com.parse.SignUpCallback;
@@ -40,7 +41,7 @@ public class SignUpActivity extends AppCompatActivity {
         // Create the ParseUser
         ParseUser user = new ParseUser();
         // Set core properties
-        user.setUsername(username);
+        new User(user).setUsername(username);
         user.setPassword(password);
         user.setEmail(email);
         // Invoke signUpInBackground
@@ -14,6 +14,7 @@ import com.bumptech.glide.Glide;
 import com.example.patrice_musicapp.R;
 import com.example.patrice_musicapp.models.Message;
 import com.example.patrice_musicapp.models.User;
+import com.example.patrice_musicapp.utils.ListDiffer;
 import com.parse.ParseUser;
 
 import java.util.List;
@@ -24,10 +25,17 @@ public class ChatAdapter extends RecyclerView.Adapter<ChatAdapter.MessageViewHol
 
     private List<Message> messages;
     private Context context;
+    private final ListDiffer<Message> differ;
 
     public ChatAdapter(Context context, List<Message> messages) {
         this.messages = messages;
         this.context = context;
+        this.differ = new ListDiffer<>(this, messages);
+    }
+
+    //the poll hands over the whole conversation; only new or changed messages are bound
+    public void submitList(List<Message> messages, Runnable commitCallback) {
+        differ.submitList(messages, commitCallback);
     }
 
     @Override
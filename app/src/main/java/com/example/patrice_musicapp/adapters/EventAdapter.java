@@ -13,15 +13,20 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.bumptech.glide.Glide;
 import com.example.patrice_musicapp.R;
 import com.example.patrice_musicapp.models.Event;
+import com.example.patrice_musicapp.models.ParseImage;
+import com.example.patrice_musicapp.utils.GeocodingService;
+import com.example.patrice_musicapp.utils.ListDiffer;
 import com.parse.ParseFile;
+import com.parse.ParseGeoPoint;
 
-import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 public class EventAdapter extends RecyclerView.Adapter<EventAdapter.ViewHolder> {
     public Context context;
     public List<Event> events;
     public onClickListener clickListener;
+    private final ListDiffer<Event> differ;
     public static final String TAG = EventAdapter.class.getSimpleName();
 
     public interface onClickListener {
@@ -31,7 +36,26 @@ public class EventAdapter extends RecyclerView.Adapter<EventAdapter.ViewHolder>
     public EventAdapter(Context context, List<Event> events, onClickListener clickListener){
         this.context = context;
         this.events = events;
+        this.differ = new ListDiffer<>(this, events);
         this.clickListener = clickListener;
+        final GeocodingService geocoding = GeocodingService.get(context);
+        differ.setPreparer(new ListDiffer.Preparer<Event>() {
+            @Override
+            public void prepare(List<Event> items) {
+                //resolve the page's places before its rows are bound
+                List<ParseGeoPoint> points = new ArrayList<>();
+                for (Event event : items) {
+                    points.add(event.getLocation());
+                }
+                geocoding.prefetch(points, Event.getLocationStyle(TAG));
+            }
+        });
+    }
+
+    //an id, so it does not clash with other adapters on a list with a shared pool
+    @Override
+    public int getItemViewType(int position) {
+        return R.id.view_type_event;
     }
 
     @NonNull
@@ -76,17 +100,13 @@ public class EventAdapter extends RecyclerView.Adapter<EventAdapter.ViewHolder>
         public void bind(Event event) {
             //bind views for events
             tvEventName.setText(event.getName());
-            try {
-                tvEventLocation.setText(Event.getStringFromLocation(event.getLocation(), context, TAG));
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+            GeocodingService.get(context).bind(tvEventLocation, event.getLocation(), Event.getLocationStyle(TAG));
             tvEventDate.setText(event.getDate());
             tvHostUsername.setText(event.getHost().getUsername());
 
             ParseFile image = event.getImage();
             if (image != null) {
-                Glide.with(context).load(event.getImage().getUrl()).into(ivEventImage);
+                Glide.with(context).load(ParseImage.of(event)).into(ivEventImage);
             }
 
             //check if the user has a valid profilePic
@@ -113,7 +133,14 @@ public class EventAdapter extends RecyclerView.Adapter<EventAdapter.ViewHolder>
     }
 
     public void clear() {
-        events.clear();
-        notifyDataSetChanged();
+        differ.submitList(new ArrayList<Event>());
+    }
+
+    public void submitList(List<Event> events) {
+        differ.submitList(events);
+    }
+
+    public void appendAll(List<Event> page) {
+        differ.appendAll(page);
     }
 }
@@ -0,0 +1,279 @@
+package com.example.patrice_musicapp.adapters;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.graphics.drawable.AnimatedVectorDrawable;
+import android.graphics.drawable.Drawable;
+import android.view.LayoutInflater;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewStub;
+import android.widget.HorizontalScrollView;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.vectordrawable.graphics.drawable.AnimatedVectorDrawableCompat;
+
+import com.bumptech.glide.Glide;
+import com.example.patrice_musicapp.R;
+import com.example.patrice_musicapp.models.ParseImage;
+import com.example.patrice_musicapp.models.Post;
+import com.example.patrice_musicapp.models.PostViewModel;
+import com.example.patrice_musicapp.utils.GenreChipStrip;
+import com.example.patrice_musicapp.utils.OnDoubleTapListener;
+import com.example.patrice_musicapp.utils.SoundCloudCard;
+import com.example.patrice_musicapp.utils.VideoAutoplay;
+import com.example.patrice_musicapp.utils.VideoPlayerPool;
+import com.google.android.exoplayer2.ui.PlayerView;
+import com.google.android.material.chip.ChipGroup;
+import com.parse.ParseFile;
+
+//a post row, shared by PostAdapter and SearchAdapter. every kind of media has its own view type and the row only
+//inflates the media views of its type, so a text post carries no image, player or track card. nothing here belongs
+//to one adapter (the click actions come with bind), so the rows can move between lists through a shared pool
+public class PostViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener, VideoAutoplay.VideoRow {
+    private final Context context;
+    private final int viewType;
+    private ImageView ivProfilePic;
+    private ImageView ivPostImage;
+    private ImageView ivLike;
+    private ImageView ivLikeAnim;
+    private TextView tvUsername;
+    private TextView tvCaption;
+    private TextView tvLocation;
+    private TextView tvTimeStamp;
+    private TextView tvLikeCount;
+    private PlayerView pvPostVideo;
+    private ImageView ivVideoPoster;
+    private String videoUrl;
+    private SoundCloudCard soundCloudCard;
+    private AnimatedVectorDrawableCompat avd;
+    private AnimatedVectorDrawable avd2;
+    private GenreChipStrip genreStrip;
+    private Actions actions;
+
+    //what a row does when tapped, given by the adapter that binds it
+    public interface Actions {
+        void onPostClick(int position);
+        void onProfilePicAction(int position);
+        void onLikeAction(int position);
+        void onUnlikeAction(int position);
+        void onLocationAction(int position);
+        void onChipAction(String chipGenre);
+    }
+
+    //the same order bind used to pick the media in, a later kind wins
+    public static int viewTypeOf(Post post) {
+        if (post.getSoundCloudUrl() != null) {
+            return R.id.view_type_post_soundcloud;
+        }
+        if (post.getVideo() != null) {
+            return R.id.view_type_post_video;
+        }
+        if (post.getImage() != null) {
+            return R.id.view_type_post_image;
+        }
+        return R.id.view_type_post_text;
+    }
+
+    public static boolean isPostViewType(int viewType) {
+        return viewType == R.id.view_type_post_text || viewType == R.id.view_type_post_image
+                || viewType == R.id.view_type_post_video || viewType == R.id.view_type_post_soundcloud;
+    }
+
+    public static PostViewHolder create(ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_post, parent, false);
+        ViewStub media = view.findViewById(R.id.rlPostMedia);
+        if (viewType == R.id.view_type_post_image) {
+            media.setLayoutResource(R.layout.item_post_media_image);
+            media.inflate();
+        } else if (viewType == R.id.view_type_post_video) {
+            media.setLayoutResource(R.layout.item_post_media_video);
+            media.inflate();
+        } else if (viewType == R.id.view_type_post_soundcloud) {
+            media.setLayoutResource(R.layout.item_soundcloud);
+            media.inflate();
+        }
+        return new PostViewHolder(view, viewType);
+    }
+
+    private PostViewHolder(@NonNull View itemView, int viewType) {
+        super(itemView);
+        this.context = itemView.getContext();
+        this.viewType = viewType;
+        ivProfilePic = itemView.findViewById(R.id.ivProfilePic);
+        ivLike = itemView.findViewById(R.id.ivLike);
+        tvUsername = itemView.findViewById(R.id.tvUsername);
+        tvCaption = itemView.findViewById(R.id.tvCaption);
+        tvLocation = itemView.findViewById(R.id.tvLocation);
+        tvTimeStamp = itemView.findViewById(R.id.tvTimeStamp);
+        tvLikeCount = itemView.findViewById(R.id.tvLikeCount);
+        HorizontalScrollView hsvGenres = itemView.findViewById(R.id.hsvGenres);
+        ChipGroup chipGroupGenres = itemView.findViewById(R.id.chip_group_genres);
+        genreStrip = new GenreChipStrip(hsvGenres, chipGroupGenres);
+        genreStrip.setOnGenreClickListener(new GenreChipStrip.OnGenreClickListener() {
+            @Override
+            public void onGenreClick(String genre) {
+                if (actions != null) {
+                    actions.onChipAction(genre);
+                }
+            }
+        });
+        //only the media views of this row's type exist
+        ivPostImage = itemView.findViewById(R.id.ivPostImage);
+        ivLikeAnim = itemView.findViewById(R.id.ivLikeAnim);
+        pvPostVideo = itemView.findViewById(R.id.pvPostVideo);
+        ivVideoPoster = itemView.findViewById(R.id.ivVideoPoster);
+        if (viewType == R.id.view_type_post_soundcloud) {
+            soundCloudCard = new SoundCloudCard(itemView.findViewById(R.id.rlPostMedia));
+        }
+
+        itemView.setOnClickListener(this);
+    }
+
+    //null for rows without an image, e.g. for the prefetcher to measure
+    public ImageView getPostImageView() {
+        return ivPostImage;
+    }
+
+    public ImageView getProfilePicView() {
+        return ivProfilePic;
+    }
+
+    @SuppressLint("ClickableViewAccessibility")
+    public void bind(final Post post, final PostViewModel viewModel, final Actions actions) {
+        this.actions = actions;
+        //here is where we bind views, everything slow was worked out in the view model
+        tvUsername.setText(post.getUser().getUsername());
+        viewModel.bindCaption(tvCaption);
+        tvTimeStamp.setText(viewModel.getRelativeTime());
+        if (viewModel.getPlaceLabel() != null) {
+            tvLocation.setVisibility(View.VISIBLE);
+            tvLocation.setText(viewModel.getPlaceLabel());
+        } else {
+            tvLocation.setVisibility(View.INVISIBLE);
+        }
+        tvLikeCount.setText(viewModel.getLikeCountText());
+
+        genreStrip.bind(viewModel.getGenres());
+
+        //the media, the view type already says which kind this post has
+        videoUrl = null;
+        if (viewType == R.id.view_type_post_image) {
+            Glide.with(context).load(ParseImage.of(post)).into(ivPostImage);
+        } else if (viewType == R.id.view_type_post_video) {
+            //streamed by the shared player once this row is the most visible one, a poster until then
+            ParseFile video = post.getVideo();
+            videoUrl = video.getUrl();
+            VideoPlayerPool.get(context).bindPoster(ivVideoPoster, videoUrl);
+        } else if (viewType == R.id.view_type_post_soundcloud) {
+            //a static card, the player is only loaded when play is tapped
+            soundCloudCard.bind(post.getSoundCloudUrl());
+        }
+
+        //check if the user has a valid profilePic
+        ParseFile image2 = post.getUser().getParseFile("profileImage");
+        if (image2 != null) {
+            Glide.with(context)
+                    .load(post.getUser().getParseFile("profileImage").getUrl())
+                    .circleCrop()
+                    .into(ivProfilePic);
+        } else {
+            Glide.with(context)
+                    .load(context.getResources().getString(R.string.DEFAULT_PROFILE_PIC))
+                    .circleCrop()
+                    .into(ivProfilePic);
+        }
+
+        //change image for ivLike for liked and unliked
+        if (viewModel.isLiked()){
+            Glide.with(context).load(context.getDrawable(R.drawable.ic_ufi_heart_active)).into(ivLike);
+        } else {
+            Glide.with(context).load(context.getDrawable(R.drawable.ic_ufi_heart)).into(ivLike);
+        }
+
+
+        //set onclickListeners
+        ivProfilePic.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                actions.onProfilePicAction(getAdapterPosition());
+            }
+        });
+
+        ivLike.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                if (viewModel.isLiked()) {
+                    actions.onUnlikeAction(getAdapterPosition());
+                } else {
+                    actions.onLikeAction(getAdapterPosition());
+                }
+            }
+        });
+
+        if (ivPostImage != null) {
+            final Drawable drawable = ivLikeAnim.getDrawable();
+            ivPostImage.setOnTouchListener(new OnDoubleTapListener(context) {
+                @Override
+                public void onDoubleTap(MotionEvent e) {
+
+                    if (viewModel.isLiked()) {
+                        actions.onUnlikeAction(getAdapterPosition());
+                    } else {
+                        ivLikeAnim.setAlpha(0.70f);
+                        if (drawable instanceof AnimatedVectorDrawableCompat){
+                            avd = (AnimatedVectorDrawableCompat) drawable;
+                            avd.start();
+                        } else if (drawable instanceof  AnimatedVectorDrawable){
+                            avd2 = (AnimatedVectorDrawable) drawable;
+                            avd2.start();
+                        }
+                        actions.onLikeAction(getAdapterPosition());
+                    }
+                }
+
+            });
+        }
+
+        tvLocation.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                actions.onLocationAction(getAdapterPosition());
+            }
+        });
+
+    }
+
+    //call from the adapter's onViewRecycled, a track playing in a row that left the screen stops with it
+    public void recycle() {
+        if (soundCloudCard != null) {
+            soundCloudCard.hide();
+        }
+    }
+
+    @Override
+    public void onClick(View view) {
+        if (actions != null) {
+            actions.onPostClick(getAdapterPosition());
+        }
+    }
+
+    @Override
+    public PlayerView getPlayerView() {
+        return pvPostVideo;
+    }
+
+    @Override
+    public ImageView getPosterView() {
+        return ivVideoPoster;
+    }
+
+    @Override
+    public String getVideoUrl() {
+        return videoUrl;
+    }
+}
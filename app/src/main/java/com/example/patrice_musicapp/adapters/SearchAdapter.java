@@ -1,47 +1,44 @@
 package com.example.patrice_musicapp.adapters;
 
 import android.content.Context;
-import android.graphics.drawable.AnimatedVectorDrawable;
-import android.media.MediaPlayer;
-import android.net.Uri;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.webkit.WebView;
-import android.widget.HorizontalScrollView;
 import android.widget.ImageView;
 import android.widget.TextView;
-import android.widget.VideoView;
 
 import androidx.annotation.NonNull;
+import androidx.core.text.PrecomputedTextCompat;
 import androidx.recyclerview.widget.RecyclerView;
-import androidx.vectordrawable.graphics.drawable.AnimatedVectorDrawableCompat;
 
 import com.bumptech.glide.Glide;
 import com.example.patrice_musicapp.R;
 import com.example.patrice_musicapp.models.Event;
+import com.example.patrice_musicapp.models.ParseImage;
 import com.example.patrice_musicapp.models.Post;
+import com.example.patrice_musicapp.models.PostViewModel;
 import com.example.patrice_musicapp.models.User;
-import com.example.patrice_musicapp.utils.MediaUtil;
-import com.google.android.material.chip.Chip;
-import com.google.android.material.chip.ChipGroup;
-import com.parse.ParseException;
+import com.example.patrice_musicapp.utils.GeocodingService;
+import com.example.patrice_musicapp.utils.ListDiffer;
 import com.parse.ParseFile;
-import com.parse.ParseUser;
+import com.parse.ParseGeoPoint;
 
-import org.json.JSONException;
-
-import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-public class SearchAdapter extends RecyclerView.Adapter<SearchAdapter.BaseViewHolder>{
+public class SearchAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>{
     public static final String TAG = SearchAdapter.class.getSimpleName();
-    public static final int TYPE_USER = 0;
-    public static final int TYPE_EVENT = 1;
-    public static final int TYPE_POST = 2;
+    //ids rather than 0, 1, 2 so they never match the view types of other adapters sharing the pool
+    public static final int TYPE_USER = R.id.view_type_search_user;
+    public static final int TYPE_EVENT = R.id.view_type_search_event;
     public Context context;
     public List<Object> objects;
+    private final ListDiffer<Object> differ;
     public SearchAdapter.onClickListener clickListener;
+    //post objectId -> what its row shows, filled by the differ's preparer like in PostAdapter
+    private final Map<String, PostViewModel> viewModels = new ConcurrentHashMap<>();
 
 
     public interface onClickListener{
@@ -54,13 +51,33 @@ public class SearchAdapter extends RecyclerView.Adapter<SearchAdapter.BaseViewHo
     public SearchAdapter(Context context, List<Object> objects, onClickListener clickListener){
         this.context = context;
         this.objects = objects;
+        this.differ = new ListDiffer<>(this, objects);
         this.clickListener = clickListener;
+        final PrecomputedTextCompat.Params captionParams = PostViewModel.captionParams(context);
+        final Context appContext = context.getApplicationContext();
+        differ.setPreparer(new ListDiffer.Preparer<Object>() {
+            @Override
+            public void prepare(List<Object> items) {
+                List<ParseGeoPoint> eventPoints = new ArrayList<>();
+                for (Object item : items) {
+                    if (item instanceof Event) {
+                        eventPoints.add(((Event) item).getLocation());
+                    }
+                }
+                GeocodingService.get(appContext).prefetch(eventPoints, Event.getLocationStyle(TAG));
+                PostViewModel.prepareAll(items, viewModels, appContext, captionParams);
+            }
+        });
 
     }
     @NonNull
     @Override
-    public BaseViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+    public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         Context context = parent.getContext();
+        //posts have a view type per kind of media and the same rows as the feed
+        if (PostViewHolder.isPostViewType(viewType)) {
+            return PostViewHolder.create(parent, viewType);
+        }
         switch (viewType) {
             case TYPE_USER: {
                 View view = LayoutInflater.from(context).inflate(R.layout.item_search, parent, false);
@@ -70,19 +87,24 @@ public class SearchAdapter extends RecyclerView.Adapter<SearchAdapter.BaseViewHo
                 View view = LayoutInflater.from(context).inflate(R.layout.item_event, parent, false);
                 return new EventViewHolder(view, context);
             }
-            case TYPE_POST: {
-                View view = LayoutInflater.from(context).inflate(R.layout.item_post, parent, false);
-                return new PostViewHolder(view, context);
-            }
             default:
                 throw new IllegalArgumentException("Invalid view type");
         }
     }
 
     @Override
-    public void onBindViewHolder(@NonNull BaseViewHolder holder, int position) {
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
         Object object = objects.get(position);
-        holder.bind(object);
+        if (holder instanceof PostViewHolder) {
+            Post post = (Post) object;
+            PostViewModel viewModel = post.getObjectId() == null ? null : viewModels.get(post.getObjectId());
+            if (viewModel == null) {
+                viewModel = PostViewModel.create(post, null, null);
+            }
+            ((PostViewHolder) holder).bind(post, viewModel, postActions);
+        } else {
+            ((BaseViewHolder) holder).bind(object);
+        }
     }
 
     @Override
@@ -93,12 +115,19 @@ public class SearchAdapter extends RecyclerView.Adapter<SearchAdapter.BaseViewHo
         } else if (object instanceof Event) {
             return TYPE_EVENT;
         } else if (object instanceof Post) {
-            return TYPE_POST;
+            return PostViewHolder.viewTypeOf((Post) object);
         }
 
         throw new IllegalArgumentException("Invalid position " + position);
     }
 
+    @Override
+    public void onViewRecycled(@NonNull RecyclerView.ViewHolder holder) {
+        if (holder instanceof PostViewHolder) {
+            ((PostViewHolder) holder).recycle();
+        }
+    }
+
     @Override
     public int getItemCount() {
         return objects.size();
@@ -180,17 +209,13 @@ public class SearchAdapter extends RecyclerView.Adapter<SearchAdapter.BaseViewHo
         @Override
         public void bind(Event event) {
             tvEventName.setText(event.getName());
-            try {
-                tvEventLocation.setText(Event.getStringFromLocation(event.getLocation(), context, TAG));
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+            GeocodingService.get(context).bind(tvEventLocation, event.getLocation(), Event.getLocationStyle(TAG));
             tvEventDate.setText(event.getDate().toString());
             tvHostUsername.setText(event.getHost().getUsername());
 
             ParseFile image = event.getImage();
             if (image != null) {
-                Glide.with(context).load(event.getImage().getUrl()).into(ivEventImage);
+                Glide.with(context).load(ParseImage.of(event)).into(ivEventImage);
             }
 
             //check if the user has a valid profilePic
@@ -216,159 +241,44 @@ public class SearchAdapter extends RecyclerView.Adapter<SearchAdapter.BaseViewHo
         }
     }
 
-    public class PostViewHolder extends BaseViewHolder<Post> implements View.OnClickListener{
-        private Context context;
-        private ImageView ivProfilePic;
-        private ImageView ivPostImage;
-        private ImageView ivLike;
-        private ImageView ivLikeAnim;
-        private TextView tvUsername;
-        private TextView tvCaption;
-        private TextView tvLocation;
-        private TextView tvTimeStamp;
-        private TextView tvLikeCount;
-        private VideoView vvPostVideo;
-        private WebView webviewSoundCloud;
-        private AnimatedVectorDrawableCompat avd;
-        private AnimatedVectorDrawable avd2;
-        private ChipGroup chipGroupGenres;
-        private HorizontalScrollView hsvGenres;
-
-        private PostViewHolder(View itemView, Context context) {
-            super(itemView);
-            this.context = context;
-            ivProfilePic = itemView.findViewById(R.id.ivProfilePic);
-            ivPostImage = itemView.findViewById(R.id.ivPostImage);
-            ivLike = itemView.findViewById(R.id.ivLike);
-            ivLikeAnim = itemView.findViewById(R.id.ivLikeAnim);
-            tvUsername = itemView.findViewById(R.id.tvUsername);
-            tvCaption = itemView.findViewById(R.id.tvCaption);
-            tvLocation = itemView.findViewById(R.id.tvLocation);
-            tvTimeStamp = itemView.findViewById(R.id.tvTimeStamp);
-            tvLikeCount = itemView.findViewById(R.id.tvLikeCount);
-            vvPostVideo = itemView.findViewById(R.id.vvPostVideo);
-            webviewSoundCloud = itemView.findViewById(R.id.webviewSoundCloud);
-            chipGroupGenres = itemView.findViewById(R.id.chip_group_genres);
-            hsvGenres = itemView.findViewById(R.id.hsvGenres);
-            itemView.setOnClickListener(this);
+    //search results only open the post, likes and the rest are done from the feed
+    private final PostViewHolder.Actions postActions = new PostViewHolder.Actions() {
+        @Override
+        public void onPostClick(int position) {
+            clickListener.onPostClick(position);
         }
 
         @Override
-        public void onClick(View view) {
-            clickListener.onPostClick(getAdapterPosition());
+        public void onProfilePicAction(int position) {
         }
 
         @Override
-        public void bind(Post post) {
-
-            //here is where we bind views
-            tvUsername.setText(post.getUser().getUsername());
-            tvCaption.setText(post.getCaption());
-            tvTimeStamp.setText(post.getRelativeTimeAgo(post.getCreatedAt().toString()));
-            try {
-                if (post.getLocation()!=null) {
-                    tvLocation.setVisibility(View.VISIBLE);
-                    tvLocation.setText(Post.getStringFromLocation(post.getLocation(), context));
-                } else {
-                    tvLocation.setVisibility(View.INVISIBLE);
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-            String addS = "";
-            if (post.getLikesCount()!= 1){
-                addS = "s";
-            }
-            tvLikeCount.setText(String.valueOf(post.getLikesCount()) + " Like" + addS);
-
-            List<String> genres;
-            genres = post.getGenreFilters();
-            if (genres!=null) {
-                hsvGenres.setVisibility(View.VISIBLE);
-                chipGroupGenres.setVisibility(View.VISIBLE);
-                chipGroupGenres.removeAllViews();
-                for (String genre : genres) {
-                    Chip chip = new Chip(context);
-                    final String finalGenre = genre;
-                    genre = genre.replace("_", " ");
-                    chip.setText(genre);
-                    chip.isCheckable();
-                    chipGroupGenres.addView(chip);
-                }
-            } else {
-                hsvGenres.setVisibility(View.INVISIBLE);
-                chipGroupGenres.setVisibility(View.INVISIBLE);
-            }
-
-            //check if the post has a valid image
-            ParseFile image = post.getImage();
-            if (image != null) {
-                vvPostVideo.setVisibility(View.GONE);
-                webviewSoundCloud.setVisibility(View.GONE);
-                ivPostImage.setVisibility(View.VISIBLE);
-                Glide.with(context).load(post.getImage().getUrl()).into(ivPostImage);
-            }
-
-            ParseFile video = post.getVideo();
-            if(video != null){
-                ivPostImage.setVisibility(View.GONE);
-                webviewSoundCloud.setVisibility(View.GONE);
-                vvPostVideo.setVisibility(View.VISIBLE);
-                try {
-                    MediaUtil.videoUri = Uri.fromFile(post.getVideo().getFile());
-                } catch (ParseException e) {
-                    e.printStackTrace();
-                }
-                MediaUtil.playbackRecordedVideo(vvPostVideo, context);
-                vvPostVideo.setOnPreparedListener(new MediaPlayer.OnPreparedListener() {
-                    @Override
-                    public void onPrepared(MediaPlayer mp) {
-                        mp.setLooping(true);
-                    }
-                });
-            }
-
-            if(post.getSoundCloudUrl() != null){
-                ivPostImage.setVisibility(View.GONE);
-                vvPostVideo.setVisibility(View.GONE);
-                webviewSoundCloud.setVisibility(View.VISIBLE);
-                MediaUtil.showSoundCloudPlayer(webviewSoundCloud, post.getSoundCloudUrl());
-            }
-
-            //check if the user has a valid profilePic
-            ParseFile image2 = post.getUser().getParseFile("profileImage");
-            if (image2 != null) {
-                Glide.with(context)
-                        .load(post.getUser().getParseFile("profileImage").getUrl())
-                        .circleCrop()
-                        .into(ivProfilePic);
-            } else {
-                Glide.with(context)
-                        .load(context.getResources().getString(R.string.DEFAULT_PROFILE_PIC))
-                        .circleCrop()
-                        .into(ivProfilePic);
-            }
+        public void onLikeAction(int position) {
+        }
 
-            //change image for ivLike for liked and unliked
-            try {
-                if (post.isLiked(ParseUser.getCurrentUser())){
-                    Glide.with(context).load(context.getDrawable(R.drawable.ic_ufi_heart_active)).into(ivLike);
-                } else {
-                    Glide.with(context).load(context.getDrawable(R.drawable.ic_ufi_heart)).into(ivLike);
-                }
-            } catch (JSONException e) {
-                e.printStackTrace();
-            }
+        @Override
+        public void onUnlikeAction(int position) {
+        }
 
+        @Override
+        public void onLocationAction(int position) {
+        }
 
+        @Override
+        public void onChipAction(String chipGenre) {
+        }
+    };
 
+    public void clear() {
+        differ.submitList(new ArrayList<Object>());
+    }
 
-        }
+    public void submitList(List<Object> objects) {
+        differ.submitList(objects);
     }
 
-    public void clear() {
-        objects.clear();
-        notifyDataSetChanged();
+    public void appendAll(List<Object> page) {
+        differ.appendAll(page);
     }
 
 
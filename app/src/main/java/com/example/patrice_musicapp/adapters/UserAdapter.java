@@ -19,11 +19,13 @@ import com.bumptech.glide.Glide;
 import com.example.patrice_musicapp.R;
 import com.example.patrice_musicapp.models.Followers;
 import com.example.patrice_musicapp.models.User;
-import com.google.android.material.chip.Chip;
+import com.example.patrice_musicapp.utils.GenreChipStrip;
+import com.example.patrice_musicapp.utils.ListDiffer;
 import com.google.android.material.chip.ChipGroup;
 import com.parse.DeleteCallback;
 import com.parse.ParseException;
 import com.parse.ParseFile;
+import com.parse.ParseGeoPoint;
 import com.parse.ParseUser;
 import com.parse.SaveCallback;
 
@@ -31,7 +33,10 @@ import org.json.JSONException;
 
 import java.math.BigDecimal;
 import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class UserAdapter extends RecyclerView.Adapter<UserAdapter.ViewHolder> {
     public static final String TAG = UserAdapter.class.getSimpleName();
@@ -39,6 +44,9 @@ public class UserAdapter extends RecyclerView.Adapter<UserAdapter.ViewHolder> {
     private List<ParseUser> users;
     private Followers follow;
     private onClickListener clickListener;
+    private final ListDiffer<ParseUser> differ;
+    //objectId -> "n miles away", formatted once per user rather than on every bind
+    private final Map<String, String> distanceLabels = new HashMap<>();
 
     public interface onClickListener {
         void onUserClick(int position);
@@ -47,6 +55,7 @@ public class UserAdapter extends RecyclerView.Adapter<UserAdapter.ViewHolder> {
     public UserAdapter(Context context, List<ParseUser> users, onClickListener clickListener){
         this.context = context;
         this.users = users;
+        this.differ = new ListDiffer<>(this, users);
         this.clickListener = clickListener;
 
     }
@@ -77,9 +86,8 @@ public class UserAdapter extends RecyclerView.Adapter<UserAdapter.ViewHolder> {
         private TextView tvInstruments;
         private TextView tvDistance;
         private Button btnFollow;
-        private ChipGroup chipGroupGenres;
+        private GenreChipStrip genreStrip;
         private HorizontalScrollView hsvInstruments;
-        private HorizontalScrollView hsvGenres;
 
 
 
@@ -91,9 +99,10 @@ public class UserAdapter extends RecyclerView.Adapter<UserAdapter.ViewHolder> {
             tvDistance = itemView.findViewById(R.id.tvDistance);
             tvInstruments = itemView.findViewById(R.id.tvInstruments);
             btnFollow = itemView.findViewById(R.id.btnFollow);
-            chipGroupGenres = itemView.findViewById(R.id.chip_group_genres);
             hsvInstruments = itemView.findViewById(R.id.hsvInstruments);
-            hsvGenres = itemView.findViewById(R.id.hsvGenres);
+            HorizontalScrollView hsvGenres = itemView.findViewById(R.id.hsvGenres);
+            ChipGroup chipGroupGenres = itemView.findViewById(R.id.chip_group_genres);
+            genreStrip = new GenreChipStrip(hsvGenres, chipGroupGenres);
 
 
             itemView.setOnClickListener(this);
@@ -119,17 +128,10 @@ public class UserAdapter extends RecyclerView.Adapter<UserAdapter.ViewHolder> {
             tvUsername.setText(user.getUsername());
             tvBio.setText(user.getBio());
 
-            User currentUser = new User(ParseUser.getCurrentUser());
-            if (user.getLocation() != null && currentUser.getLocation() != null){
+            String distance = distanceLabelOf(user);
+            if (distance != null){
                 tvDistance.setVisibility(View.VISIBLE);
-                double distance = user.getLocation().distanceInMilesTo(currentUser.getLocation());
-
-                BigDecimal bd = new BigDecimal(distance);
-                bd = bd.round(new MathContext(1));
-                int rounded = (int) bd.doubleValue();
-
-                String str = String.valueOf(rounded);
-                tvDistance.setText(str + " miles away");
+                tvDistance.setText(distance);
             } else {
                 tvDistance.setVisibility(View.INVISIBLE);
             }
@@ -145,23 +147,7 @@ public class UserAdapter extends RecyclerView.Adapter<UserAdapter.ViewHolder> {
                 tvInstruments.setVisibility(View.INVISIBLE);
             }
 
-            List<String> genres;
-            if (user.getGenres()!=null) {
-                hsvGenres.setVisibility(View.VISIBLE);
-                chipGroupGenres.setVisibility(View.VISIBLE);
-                genres = user.getGenres();
-                chipGroupGenres.removeAllViews();
-                for (String genre : genres) {
-                    Chip chip = new Chip(context);
-                    genre = genre.replace("_", " ");
-                    chip.setText(genre);
-                    chip.isCheckable();
-                    chipGroupGenres.addView(chip);
-                }
-            } else {
-                hsvGenres.setVisibility(View.INVISIBLE);
-                chipGroupGenres.setVisibility(View.INVISIBLE);
-            }
+            genreStrip.bind(user.getGenres());
 
             final User subjectUser = new User(ParseUser.getCurrentUser());
             final User user2follow = new User(user.getParseUser());
@@ -242,8 +228,43 @@ public class UserAdapter extends RecyclerView.Adapter<UserAdapter.ViewHolder> {
         }
     }
 
+    //distances already known, e.g. from NearbyUsers, so rows don't work them out again
+    public void setDistances(Map<String, Double> miles) {
+        for (Map.Entry<String, Double> entry : miles.entrySet()) {
+            distanceLabels.put(entry.getKey(), formatMiles(entry.getValue()));
+        }
+    }
+
+    private String distanceLabelOf(User user) {
+        String objectId = user.getParseUser().getObjectId();
+        String label = distanceLabels.get(objectId);
+        if (label == null) {
+            ParseGeoPoint currentLocation = new User(ParseUser.getCurrentUser()).getLocation();
+            if (user.getLocation() == null || currentLocation == null) {
+                return null;
+            }
+            label = formatMiles(user.getLocation().distanceInMilesTo(currentLocation));
+            distanceLabels.put(objectId, label);
+        }
+        return label;
+    }
+
+    private static String formatMiles(double distance) {
+        BigDecimal bd = new BigDecimal(distance);
+        bd = bd.round(new MathContext(1));
+        int rounded = (int) bd.doubleValue();
+        return rounded + " miles away";
+    }
+
     public void clear() {
-        users.clear();
-        notifyDataSetChanged();
+        differ.submitList(new ArrayList<ParseUser>());
+    }
+
+    public void submitList(List<ParseUser> users) {
+        differ.submitList(users);
+    }
+
+    public void appendAll(List<ParseUser> page) {
+        differ.appendAll(page);
     }
 }
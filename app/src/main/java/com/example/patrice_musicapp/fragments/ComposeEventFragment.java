@@ -3,7 +3,6 @@ package com.example.patrice_musicapp.fragments;
 import android.app.DatePickerDialog;
 import android.content.Intent;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Bundle;
 import android.util.Log;
@@ -23,22 +22,18 @@ import androidx.fragment.app.Fragment;
 import com.example.patrice_musicapp.R;
 import com.example.patrice_musicapp.activities.MainActivity;
 import com.example.patrice_musicapp.models.Event;
+import com.example.patrice_musicapp.utils.ImageIngest;
 import com.example.patrice_musicapp.utils.MediaUtil;
+import com.example.patrice_musicapp.utils.UploadQueue;
 import com.google.android.gms.common.api.Status;
 import com.google.android.libraries.places.api.Places;
 import com.google.android.libraries.places.api.model.Place;
 import com.google.android.libraries.places.widget.Autocomplete;
 import com.google.android.libraries.places.widget.AutocompleteActivity;
 import com.google.android.libraries.places.widget.model.AutocompleteActivityMode;
-import com.parse.ParseException;
-import com.parse.ParseFile;
 import com.parse.ParseGeoPoint;
-import com.parse.ParseUser;
-import com.parse.SaveCallback;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -135,13 +130,9 @@ public class ComposeEventFragment extends Fragment {
                     Toast.makeText(getContext(), "Description cannot be empty", Toast.LENGTH_SHORT).show();
                     return;
                 }
-                //get the user
-                ParseUser currentUser = ParseUser.getCurrentUser();
-                //save the location
-
                 String name = etName.getText().toString();
                 //save the post into
-                saveEvents(description, currentUser, MediaUtil.photoFile, date, name);
+                saveEvents(description, MediaUtil.photoFile, date, name);
                 //go back to post fragment(which is in MainActivity)
                 Intent intent = new Intent(getContext(), MainActivity.class);
                 startActivity(intent);
@@ -157,27 +148,11 @@ public class ComposeEventFragment extends Fragment {
     }
 
 
-    private void saveEvents(String description, ParseUser currentUser, File photoFile, Date date, String name) {
-       event.setDescription(description);
-       event.setName(name);
-       event.setDate(date);
-       event.setHost(currentUser);
-       if (photoFile != null){
-           event.setImage(new ParseFile(photoFile));
-        }
-       event.saveInBackground(new SaveCallback() {
-           @Override
-           public void done(ParseException e) {
-               if (e != null){
-                   Log.e(TAG, "Error while saving", e);
-                   Toast.makeText(getContext(), "Error while saving", Toast.LENGTH_SHORT).show();
-               }
-
-               Log.i(TAG, "Post save was successful!");
-               etDescription.setText(""); // clear out edit text so user does not save the same post twice
-               ivEventImage.setImageResource(0); //clear the image view
-           }
-       });
+    private void saveEvents(String description, File photoFile, Date date, String name) {
+       //uploaded by UploadQueue, which keeps going after this screen is gone and retries when it fails
+       UploadQueue.enqueueEvent(getContext(), name, description, date, event.getLocation(), photoFile);
+       etDescription.setText(""); // clear out edit text so user does not save the same post twice
+       ivEventImage.setImageResource(0); //clear the image view
     }
 
     private void updateLabel() {
@@ -187,37 +162,36 @@ public class ComposeEventFragment extends Fragment {
         etDate.setText(sdf.format(myCalendar.getTime()));
     }
 
+    //writes the photo into MediaUtil.photoFile and previews it
+    private void showPhoto(Uri photoUri) {
+        new ImageIngest(getContext()).ingest(photoUri, MediaUtil.photoFile, ivEventImage, new ImageIngest.Callback() {
+            @Override
+            public void onIngested(Bitmap preview) {
+                if (preview == null) {
+                    if (isAdded()) {
+                        Toast.makeText(getContext(), "Could not load picture", Toast.LENGTH_SHORT).show();
+                    }
+                    return;
+                }
+                ivEventImage.setImageBitmap(preview);
+            }
+        });
+    }
+
     public void onActivityResult(int requestCode, int resultCode, @Nullable Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
         if (requestCode == MediaUtil.CAPTURE_IMAGE_ACTIVITY_REQUEST_CODE) {
             if (resultCode == RESULT_OK) { //make sure a photo was taken
                 // by this point we have the camera photo on disk
-                //decode the file
-                Bitmap takenImage = BitmapFactory.decodeFile(MediaUtil.photoFile.getAbsolutePath());
-                // Load the taken image into a preview
-                ivEventImage.setImageBitmap(takenImage);
+                //sampled, turned upright and re-encoded in the background, then shown as a preview
+                showPhoto(Uri.fromFile(MediaUtil.photoFile));
             } else { // Result was a failure
                 Toast.makeText(getContext(), "Picture wasn't taken!", Toast.LENGTH_SHORT).show();
             }
         } else if ((data != null) && requestCode == MediaUtil.PICK_PHOTO_CODE) {
             Uri photoUri = data.getData();
-            // Load the image located at photoUri into selectedImage
-            Bitmap selectedImage = MediaUtil.loadFromUri(photoUri, getContext());
-
-            // Load the selected image into a preview
-            ivEventImage.setImageBitmap(selectedImage);
-
-            //save the Image to Parse by converting it to byte Array
-            // Configure byte output stream
-            FileOutputStream outStream = null;
-            try {
-                outStream = new FileOutputStream(MediaUtil.photoFile);
-            } catch (FileNotFoundException e) {
-                e.printStackTrace();
-            }
-
-            //Compress the image further 
-            selectedImage.compress(Bitmap.CompressFormat.JPEG, 100, outStream);
+            //copied into photoFile at upload size, the original is never decoded in full
+            showPhoto(photoUri);
 
         }  else if(requestCode == 100 && resultCode == RESULT_OK){
             Place place = Autocomplete.getPlaceFromIntent(data);
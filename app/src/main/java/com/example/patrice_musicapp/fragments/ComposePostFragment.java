@@ -2,7 +2,6 @@ package com.example.patrice_musicapp.fragments;
 
 import android.content.Intent;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Bundle;
 import android.util.Log;
@@ -27,10 +26,11 @@ import com.example.patrice_musicapp.R;
 import com.example.patrice_musicapp.activities.ComposeActivity;
 import com.example.patrice_musicapp.activities.MainActivity;
 import com.example.patrice_musicapp.models.Genres;
-import com.example.patrice_musicapp.models.Post;
 import com.example.patrice_musicapp.models.User;
+import com.example.patrice_musicapp.utils.ImageIngest;
 import com.example.patrice_musicapp.utils.MediaUtil;
 import com.example.patrice_musicapp.utils.SocialsUtils;
+import com.example.patrice_musicapp.utils.UploadQueue;
 import com.google.android.gms.common.api.Status;
 import com.google.android.libraries.places.api.Places;
 import com.google.android.libraries.places.api.model.Place;
@@ -39,15 +39,10 @@ import com.google.android.libraries.places.widget.AutocompleteActivity;
 import com.google.android.libraries.places.widget.model.AutocompleteActivityMode;
 import com.google.android.material.chip.Chip;
 import com.google.android.material.chip.ChipGroup;
-import com.parse.ParseException;
-import com.parse.ParseFile;
 import com.parse.ParseGeoPoint;
 import com.parse.ParseUser;
-import com.parse.SaveCallback;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -201,7 +196,7 @@ public class ComposePostFragment extends Fragment {
                     return;
                 }
                 //save the post into
-                savePosts(description, user, MediaUtil.photoFile, MediaUtil.videoFile, SocialsUtils.soundCloudUrl, geoPoint, checkedGenres);
+                savePosts(description, MediaUtil.photoFile, MediaUtil.videoFile, SocialsUtils.soundCloudUrl, geoPoint, checkedGenres);
                 //go back to post fragment(which is in MainActivity)
                 Intent intent = new Intent(getContext(), MainActivity.class);
                 startActivity(intent);
@@ -212,89 +207,46 @@ public class ComposePostFragment extends Fragment {
 
     }
 
-    private void savePosts(String caption, final ParseUser currentUser, File photoFile, final File videoFile, final String soundCloudUrl, ParseGeoPoint geoPoint, List<String> checkedGenres) {
-        final Post post = new Post();
-        post.setCaption(caption);
-        if (photoFile != null) {
-            post.setImage(new ParseFile(photoFile));
-        }
-        post.setUser(currentUser);
-        if (videoFile != null) {
-            post.setVideo(new ParseFile(videoFile));
-        }
-        if(soundCloudUrl != null){
-            post.setSoundCloudUrl(soundCloudUrl);
-        }
-
-        if(geoPoint!=null){
-            post.setLocation(geoPoint);
-        }
-        if (checkedGenres!= null){
-            post.setGenreFilter(checkedGenres);
-        }
-        pb.setVisibility(ProgressBar.VISIBLE);
-        post.saveInBackground(new SaveCallback() {
-            @Override
-            public void done(ParseException e) {
-                if (e != null) {
-                    Log.e(TAG, "Error while saving", e);
-                    Toast.makeText(getContext(), "Error while saving", Toast.LENGTH_SHORT).show();
-                }
+    private void savePosts(String caption, File photoFile, File videoFile, String soundCloudUrl, ParseGeoPoint geoPoint, List<String> checkedGenres) {
+        //uploaded by UploadQueue, which keeps going after this screen is gone and retries when it fails
+        UploadQueue.enqueuePost(getContext(), caption, photoFile, videoFile, soundCloudUrl, geoPoint, checkedGenres);
+        etCaption.setText(""); // clear out edit text so user does not save the same post twice
+        ivPostImage.setImageResource(0); //clear the image view
+    }
 
-                Log.i(TAG, "Post save was successful!");
-                etCaption.setText(""); // clear out edit text so user does not save the same post twice
-                ivPostImage.setImageResource(0); //clear the image view
-                User user = new User(currentUser);
-                user.setPostCount(user.getPostCount() + 1);
 
-                post.getUser().saveInBackground(new SaveCallback() {
-                    @Override
-                    public void done(ParseException e) {
-                        if (e != null) {
-                            Log.e(TAG, "Error while saving post author");
-                        }
-                        pb.setVisibility(ProgressBar.INVISIBLE);
 
+    //writes the photo into MediaUtil.photoFile and previews it
+    private void showPhoto(Uri photoUri) {
+        new ImageIngest(getContext()).ingest(photoUri, MediaUtil.photoFile, ivPostImage, new ImageIngest.Callback() {
+            @Override
+            public void onIngested(Bitmap preview) {
+                if (preview == null) {
+                    if (isAdded()) {
+                        Toast.makeText(getContext(), "Could not load picture", Toast.LENGTH_SHORT).show();
                     }
-                });
+                    return;
+                }
+                ivPostImage.setImageBitmap(preview);
             }
         });
     }
 
-
-
     @Override
     public void onActivityResult(int requestCode, int resultCode, @Nullable Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
         if (requestCode == MediaUtil.CAPTURE_IMAGE_ACTIVITY_REQUEST_CODE) {
             if (resultCode == RESULT_OK) { //make sure a photo was taken
                 // by this point we have the camera photo on disk
-                //decode the file
-                Bitmap takenImage = BitmapFactory.decodeFile(MediaUtil.photoFile.getAbsolutePath());
-                // Load the taken image into a preview
-                ivPostImage.setImageBitmap(takenImage);
+                //sampled, turned upright and re-encoded in the background, then shown as a preview
+                showPhoto(Uri.fromFile(MediaUtil.photoFile));
             } else { // Result was a failure
                 Toast.makeText(getContext(), "Picture wasn't taken!", Toast.LENGTH_SHORT).show();
             }
         } else if ((data != null) && requestCode == MediaUtil.PICK_PHOTO_CODE) {
             Uri photoUri = data.getData();
-            // Load the image located at photoUri into selectedImage
-            Bitmap selectedImage = MediaUtil.loadFromUri(photoUri, getContext());
-
-            // Load the selected image into a preview
-            ivPostImage.setImageBitmap(selectedImage);
-
-            //save the Image to Parse by converting it to byte Array
-            // Configure byte output stream
-            FileOutputStream outStream = null;
-            try {
-                outStream = new FileOutputStream(MediaUtil.photoFile);
-            } catch (FileNotFoundException e) {
-                e.printStackTrace();
-            }
-
-            //Compress the image further 
-            selectedImage.compress(Bitmap.CompressFormat.JPEG, 100, outStream);
+            //copied into photoFile at upload size, the original is never decoded in full
+            showPhoto(photoUri);
 
         } else if (requestCode == MediaUtil.VIDEO_CAPTURE) {
             if (resultCode == RESULT_OK) {
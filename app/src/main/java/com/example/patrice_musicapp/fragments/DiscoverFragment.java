@@ -1,5 +1,6 @@
 package com.example.patrice_musicapp.fragments;
 
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.os.Bundle;
 import android.util.Log;
@@ -9,6 +10,9 @@ import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.ArrayAdapter;
+import android.widget.CheckBox;
+import android.widget.Spinner;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -23,27 +27,45 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.patrice_musicapp.R;
+import com.example.patrice_musicapp.activities.MainActivity;
 import com.example.patrice_musicapp.activities.PostDetailsActivity;
 import com.example.patrice_musicapp.adapters.PostAdapter;
 import com.example.patrice_musicapp.adapters.SearchAdapter;
 import com.example.patrice_musicapp.adapters.UserAdapter;
 import com.example.patrice_musicapp.models.Event;
+import com.example.patrice_musicapp.models.Genres;
+import com.example.patrice_musicapp.models.GigCursor;
+import com.example.patrice_musicapp.models.Instruments;
 import com.example.patrice_musicapp.models.Post;
 import com.example.patrice_musicapp.models.User;
+import com.example.patrice_musicapp.utils.DiscoverRanking;
+import com.example.patrice_musicapp.utils.GenreAffinity;
+import com.example.patrice_musicapp.utils.GenreAffinityStore;
+import com.example.patrice_musicapp.utils.GigSearch;
+import com.example.patrice_musicapp.utils.NearbyUsers;
+import com.example.patrice_musicapp.utils.Recommendations;
+import com.example.patrice_musicapp.utils.SearchIndex;
+import com.example.patrice_musicapp.utils.SearchResultMerger;
+import com.example.patrice_musicapp.utils.SearchService;
+import com.example.patrice_musicapp.utils.SoundCloudPlayer;
+import com.example.patrice_musicapp.utils.VideoAutoplay;
+import com.example.patrice_musicapp.utils.VideoPlayerPool;
+import com.google.android.material.dialog.MaterialAlertDialogBuilder;
+import com.google.android.material.textfield.TextInputEditText;
 import com.parse.FindCallback;
 import com.parse.ParseException;
 import com.parse.ParseGeoPoint;
 import com.parse.ParseQuery;
 import com.parse.ParseUser;
 
+import org.json.JSONException;
+
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
-import java.util.Locale;
-import java.util.PriorityQueue;
 
 public class DiscoverFragment extends Fragment {
     public static final String TAG = DiscoverFragment.class.getSimpleName();
+    private static final double GIG_RADIUS_MILES = 20;
     private Toolbar toolbar;
     private SearchAdapter searchAdapter;
     private UserAdapter userAdapter;
@@ -53,10 +75,23 @@ public class DiscoverFragment extends Fragment {
     private RecyclerView rvSearch;
     private RecyclerView rvUsers;
     private SearchView searchView;
-    private PriorityQueue<User> pqGenres;
-    private PriorityQueue<User> pqInstruments;
-    private PriorityQueue<User> pqProximity;
+    //null until the loaded users are ranked
+    private DiscoverRanking ranking;
+    private DiscoverRanking.Sort sort = DiscoverRanking.Sort.FOR_YOU;
+    private final List<ParseUser> forYou = new ArrayList<>();
+    //pages of the users nearest to the current user, for the proximity sort
+    private NearbyUsers nearbyUsers;
+    private final List<ParseUser> nearby = new ArrayList<>();
+    //pages of the last gig search, cheapest first
+    private GigSearch gigSearch;
+    private GigCursor gigCursor;
+    private ParseQuery<ParseUser> gigQuery;
+    private boolean moreGigs;
+    private final List<ParseUser> gigs = new ArrayList<>();
     private String chipGenre;
+    private VideoAutoplay videoAutoplay;
+    private SearchService searchService;
+    private final SearchResultMerger searchResults = new SearchResultMerger();
 
 
 
@@ -68,6 +103,27 @@ public class DiscoverFragment extends Fragment {
         return view;
     }
 
+    @Override
+    public void onStop() {
+        videoAutoplay.stop();
+        VideoPlayerPool.get(getContext()).releaseIfIdle();
+        SoundCloudPlayer.release();
+        super.onStop();
+    }
+
+    @Override
+    public void onDestroyView() {
+        searchService.cancel();
+        nearbyUsers.cancel();
+        if (gigQuery != null) {
+            gigQuery.cancel();
+            gigQuery = null;
+        }
+        Recommendations.get().stopListening(recommendationsCallback);
+        videoAutoplay.detach();
+        super.onDestroyView();
+    }
+
     @Override
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
 
@@ -79,17 +135,23 @@ public class DiscoverFragment extends Fragment {
             @Override
             public boolean onMenuItemClick(MenuItem item) {int id = item.getItemId();
                 switch (id) {
+                    case R.id.forYouButton:
+                        showSort(DiscoverRanking.Sort.FOR_YOU);
+                        break;
                     case R.id.genresButton:
-                        sortByGenre();
+                        showSort(DiscoverRanking.Sort.GENRE);
                         break;
                     case R.id.instrumentsButton:
-                        sortByInstruments();
+                        showSort(DiscoverRanking.Sort.INSTRUMENTS);
                         break;
                     case R.id.nearMeButton:
-                        sortByProximity();
+                        showSort(DiscoverRanking.Sort.PROXIMITY);
                         break;
                     case R.id.activeUsers:
-                        sortByPostCount();
+                        showSort(DiscoverRanking.Sort.POST_COUNT);
+                        break;
+                    case R.id.gigsButton:
+                        showGigSearch();
                         break;
                 }
                 return true;
@@ -106,6 +168,10 @@ public class DiscoverFragment extends Fragment {
         //set layout manager on recycler view
         final LinearLayoutManager linearLayoutManager = new LinearLayoutManager(getContext());
         rvSearch.setLayoutManager(linearLayoutManager);
+        MainActivity.usePostViewPool(this, rvSearch);
+        //video posts in the results play with the shared player, one at a time
+        videoAutoplay = new VideoAutoplay(VideoPlayerPool.get(getContext()));
+        videoAutoplay.attach(rvSearch);
 
 
         users = new ArrayList<>();
@@ -117,15 +183,28 @@ public class DiscoverFragment extends Fragment {
         final GridLayoutManager gridLayoutManager = new GridLayoutManager(getContext(), 2);
         rvUsers.setLayoutManager(gridLayoutManager);
         rvUsers.setHasFixedSize(true);
-
-        pqGenres = new PriorityQueue<User>(10, new UserGenreComparator());
-        pqInstruments = new PriorityQueue<User>(10, new UserInstrumentComparator());
-        pqProximity = new PriorityQueue<User>(10, new UserProximityComparator());
+        rvUsers.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                //the next ring of nearby users once the end of the grid shows
+                if (sort == DiscoverRanking.Sort.PROXIMITY && dy > 0 && !recyclerView.canScrollVertically(1)) {
+                    queryNearby();
+                }
+                if (sort == DiscoverRanking.Sort.GIGS && dy > 0 && !recyclerView.canScrollVertically(1)) {
+                    queryGigs();
+                }
+            }
+        });
+        nearbyUsers = new NearbyUsers(ParseUser.getCurrentUser(), DiscoverRanking.TOP);
+        nearby.clear();
 
         if (searchAdapter.getItemCount() == 0){
             rvSearch.setAlpha(0);
             rvUsers.setAlpha(1);
             queryUsers();
+            queryNearby();
+            //kept across recreations, so coming back shows the last grid straight away
+            Recommendations.get().load(getContext(), DiscoverRanking.TOP, recommendationsCallback);
         } else {
             rvUsers.setAlpha(0);
             rvSearch.setAlpha(1);
@@ -134,6 +213,10 @@ public class DiscoverFragment extends Fragment {
 
 
         searchView = view.findViewById(R.id.searchView);
+        //the index answers from the device once it has synced, until then the search goes to the server
+        SearchIndex searchIndex = SearchIndex.get(getContext());
+        searchIndex.sync();
+        searchService = new SearchService(searchIndex, GenreAffinityStore.get(getContext()).getAffinity(), searchListener);
 
 
         searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
@@ -155,6 +238,7 @@ public class DiscoverFragment extends Fragment {
                     rvSearch.setAdapter(searchAdapter);
                     filter(newText);
                 } else {
+                    searchService.cancel();
                     rvSearch.setAlpha(0);
                     rvSearch.setVisibility(View.GONE);
                     rvSearch.setLayoutManager(null);
@@ -182,76 +266,33 @@ public class DiscoverFragment extends Fragment {
 
 
     public void filter(String characterText) {
-        characterText = characterText.toLowerCase(Locale.getDefault());
-        searchAdapter.clear();
-        if (characterText.length() != 0) {
-            //search through users
-            ParseQuery<ParseUser> queryUser = ParseUser.getQuery();
-            final String finalCharacterText = characterText;
-            queryUser.findInBackground(new FindCallback<ParseUser>() {
-                @Override
-                public void done(List<ParseUser> allUsers, ParseException e) {
-                    if (e!= null){
-                        Log.e(TAG, "Issue with getting all users from Parse");
-                    }
-                    Log.i(TAG, "Got all users from parse Successfully");
-
-                    for (ParseUser parseUser: allUsers) {
-                        if (parseUser.getUsername().toLowerCase(Locale.getDefault()).startsWith(finalCharacterText)) {
-                            objects.add(new User(parseUser));
-                        }
-                    }
-                    searchAdapter.notifyDataSetChanged();
-                }
-            });
-
-            //search through events
-            ParseQuery<Event> queryEvent = ParseQuery.getQuery("Event");
-            queryEvent.include("Host");
-            queryEvent.findInBackground(new FindCallback<Event>() {
-                @Override
-                public void done(List<Event> events, ParseException e) {
-                    if (e!= null){
-                        Log.e(TAG, "Issue with getting all events from Parse");
-                    }
-                    Log.i(TAG, "Got all events from parse Successfully");
-
-                    for  (Event event: events){
-                        if (event.getName().toLowerCase(Locale.getDefault()).startsWith(finalCharacterText)) {
-                            objects.add(event);
-                        }
-                    }
-                    searchAdapter.notifyDataSetChanged();
-                }
-            });
-
-            //search through posts
-            ParseQuery<Post> queryPost = ParseQuery.getQuery("Post");
-            queryPost.include("user");
-            queryPost.findInBackground(new FindCallback<Post>() {
-                @Override
-                public void done(List<Post> posts, ParseException e) {
-                    if (e!= null){
-                        Log.e(TAG, "Issue with getting all posts from Parse");
-                    }
-                    Log.i(TAG, "Got all posts from parse Successfully");
-
-                    for  (Post post: posts){
-                        if (post.getGenreFilters()!=null) {
-                            for (String genre : post.getGenreFilters()) {
-                                if (genre.toLowerCase(Locale.getDefault()).startsWith(finalCharacterText)) {
-                                    objects.add(post);
-                                }
-                            }
-                        }
-                    }
+        //results come back through searchListener, from the index right away or from the server once typing pauses
+        searchService.search(characterText);
+    }
 
-                    searchAdapter.notifyDataSetChanged();
-                }
-            });
+    SearchService.Listener searchListener = new SearchService.Listener() {
+        @Override
+        public void onSearchStarted(String query) {
+            //the old rows stay up until the first results replace them in one diff
+            List<String> followingIds = new ArrayList<>();
+            try {
+                followingIds = new User(ParseUser.getCurrentUser()).getFollowingIds();
+            } catch (JSONException e) {
+                e.printStackTrace();
+            }
+            searchResults.reset(query, followingIds, ParseUser.getCurrentUser());
         }
 
-    }
+        @Override
+        public void onResults(String query, List<Object> matches) {
+            //rows the user can already see keep their places
+            int visibleRows = 0;
+            if (rvSearch.getLayoutManager() instanceof LinearLayoutManager) {
+                visibleRows = ((LinearLayoutManager) rvSearch.getLayoutManager()).findLastVisibleItemPosition() + 1;
+            }
+            searchAdapter.submitList(searchResults.merge(matches, visibleRows));
+        }
+    };
 
     SearchAdapter.onClickListener clickListener = new SearchAdapter.onClickListener() {
         @Override
@@ -339,177 +380,166 @@ public class DiscoverFragment extends Fragment {
             public void done(List<ParseUser> users2Follow, ParseException e) {
                 if (e != null) {
                     Log.e(TAG, "Issues with getting users to follow", e);
+                    return;
                 }
-                userAdapter.clear();
                 users.addAll(users2Follow);
 
-                sortByProximity();
+                //every sort at once, off the UI thread
+                GenreAffinity genreAffinity = GenreAffinityStore.get(getContext()).getAffinity();
+                DiscoverRanking.rankInBackground(users, ParseUser.getCurrentUser(), genreAffinity, new DiscoverRanking.Callback() {
+                    @Override
+                    public void onRanked(DiscoverRanking ranked) {
+                        ranking = ranked;
+                        showSort(sort);
+                    }
+                });
             }
 
         });
 
     }
 
-    private void sortByGenre() {
-        usersToShow.clear();
-        pqGenres.clear();
-            for (ParseUser user: users){
-                User userpq = new User(user);
-                pqGenres.add(userpq);
-            }
-            while (!pqGenres.isEmpty() && pqGenres.size() > (users.size() - 10)) {
-                usersToShow.add((pqGenres.poll()).getParseUser());
+    private void queryNearby() {
+        nearbyUsers.loadMore(new NearbyUsers.Callback() {
+            @Override
+            public void onPage(List<ParseUser> page, boolean hasMore) {
+                nearby.addAll(page);
+                userAdapter.setDistances(nearbyUsers.getMiles());
+                if (sort == DiscoverRanking.Sort.PROXIMITY) {
+                    showSort(sort);
+                }
+                //a ring can end on a short page, the grid needs rows to scroll
+                if (hasMore && nearby.size() < DiscoverRanking.TOP) {
+                    queryNearby();
+                }
             }
-
-            userAdapter.notifyDataSetChanged();
+        });
     }
 
-
-    private void sortByInstruments() {
-        usersToShow.clear();
-        pqInstruments.clear();
-        for (ParseUser user: users){
-            User userpq = new User(user);
-            pqInstruments.add(userpq);
+    //the filters of the gig search, around the current user's location when they have one
+    private void showGigSearch() {
+        View dialogView = LayoutInflater.from(getContext()).inflate(R.layout.dialog_gig_search, null);
+        final Spinner spInstrument = dialogView.findViewById(R.id.spInstrument);
+        final Spinner spGenre = dialogView.findViewById(R.id.spGenre);
+        final TextInputEditText etMaxHourRate = dialogView.findViewById(R.id.etMaxHourRate);
+        final TextInputEditText etRadius = dialogView.findViewById(R.id.etRadius);
+        final CheckBox cbSoloOnly = dialogView.findViewById(R.id.cbSoloOnly);
+
+        final List<String> instruments = new ArrayList<>();
+        instruments.add(getString(R.string.any_instrument));
+        for (Instruments instrument : Instruments.values()) {
+            instruments.add(instrument.name());
         }
-        while (!pqInstruments.isEmpty() && pqInstruments.size() > (users.size() - 10)) {
-            usersToShow.add((pqInstruments.poll()).getParseUser());
+        final List<String> genres = new ArrayList<>();
+        genres.add(getString(R.string.any_genre));
+        for (Genres genre : Genres.values()) {
+            genres.add(genre.name());
         }
-
-        userAdapter.notifyDataSetChanged();
+        spInstrument.setAdapter(new ArrayAdapter<>(getContext(), R.layout.dropdown_menu, instruments));
+        spGenre.setAdapter(new ArrayAdapter<>(getContext(), R.layout.dropdown_menu, genres));
+        etRadius.setText(String.valueOf(GIG_RADIUS_MILES));
+
+        new MaterialAlertDialogBuilder(getContext())
+                .setTitle(R.string.find_gigs)
+                .setView(dialogView)
+                .setNegativeButton(R.string.cancel, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialogInterface, int i) {
+                        dialogInterface.cancel();
+                    }
+                })
+                .setPositiveButton(R.string.search, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialogInterface, int i) {
+                        GigSearch search = new GigSearch();
+                        //position 0 is "any"
+                        int instrument = spInstrument.getSelectedItemPosition();
+                        search.setInstrument(instrument > 0 ? instruments.get(instrument) : null);
+                        int genre = spGenre.getSelectedItemPosition();
+                        search.setGenre(genre > 0 ? genres.get(genre) : null);
+                        search.setMaxHourRate(parseOr(etMaxHourRate.getText().toString(), Double.NaN));
+                        search.setSoloOnly(cbSoloOnly.isChecked());
+                        ParseGeoPoint location = new User(ParseUser.getCurrentUser()).getLocation();
+                        search.setNear(location, parseOr(etRadius.getText().toString(), GIG_RADIUS_MILES));
+                        startGigSearch(search);
+                    }
+                })
+                .show();
     }
 
-
-    private void sortByPostCount() {
-        usersToShow.clear();
-        for (int i = 0 ; i < 10; i++){
-            usersToShow.add(users.get(i));
+    private static double parseOr(String text, double fallback) {
+        try {
+            return text.trim().isEmpty() ? fallback : Double.parseDouble(text.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
         }
-
-        userAdapter.notifyDataSetChanged();
-
     }
 
-    private void sortByProximity(){
-        usersToShow.clear();
-        pqProximity.clear();
-        for (ParseUser user: users){
-            User userpq = new User(user);
-            pqProximity.add(userpq);
-        }
-        while (!pqProximity.isEmpty() && pqProximity.size() > (users.size() - 10)) {
-            usersToShow.add((pqProximity.poll()).getParseUser());
+    private void startGigSearch(GigSearch search) {
+        if (gigQuery != null) {
+            gigQuery.cancel();
+            gigQuery = null;
         }
-
-        userAdapter.notifyDataSetChanged();
-
+        gigSearch = search;
+        gigCursor = null;
+        moreGigs = true;
+        gigs.clear();
+        showSort(DiscoverRanking.Sort.GIGS);
+        queryGigs();
     }
 
-    public class UserGenreComparator implements Comparator<User> {
-        // Overriding compare()method of Comparator
-
-        @Override
-        public int compare(User user1, User user2) {
-            User currentUser = new User(ParseUser.getCurrentUser());
-            List<String> currentUserGenre = currentUser.getGenres();
-            List<String> user1Genre = new ArrayList<>();
-            if(user1.getGenres()!=null) {
-                user1Genre.addAll(user1.getGenres());
-            }
-            List<String> user2Genre = new ArrayList<>();
-            if(user2.getGenres() !=null) {
-                user2Genre.addAll(user2.getGenres());
-            }
-
-            List<String> commonGenre1 = new ArrayList<>();
-            commonGenre1.addAll(user1Genre);
-            List<String> commonGenre2 = new ArrayList<>();
-            commonGenre2.addAll(user2Genre);
-
-            commonGenre1.retainAll(currentUserGenre);
-            commonGenre2.retainAll(currentUserGenre);
-
-            int matches1 = commonGenre1.size();
-            int matches2 = commonGenre2.size();
-
-            if (matches1 > matches2){
-                return -1;
-            } else if (matches2 > matches1) {
-                return 1;
-            }
-
-            return 0;
+    private void queryGigs() {
+        if (gigSearch == null || !moreGigs || gigQuery != null) {
+            return;
         }
-    }
-
-    public class UserInstrumentComparator implements Comparator<User> {
-
-        @Override
-        public int compare(User user1, User user2) {
-            User currentUser = new User(ParseUser.getCurrentUser());
-            List<String> currentUserInstrument = currentUser.getInstruments();
-            List<String> user1Instruments = new ArrayList<>();
-            if(user1.getInstruments()!=null) {
-                user1Instruments.addAll(user1.getInstruments());
-            }
-            List<String> user2Instuments = new ArrayList<>();
-            if(user2.getInstruments() !=null) {
-                user2Instuments.addAll(user2.getInstruments());
+        gigQuery = gigSearch.query(gigCursor, DiscoverRanking.TOP, new GigSearch.Callback() {
+            @Override
+            public void onPage(List<ParseUser> page, GigCursor next) {
+                gigQuery = null;
+                gigs.addAll(page);
+                gigCursor = next;
+                moreGigs = next != null;
+                if (sort == DiscoverRanking.Sort.GIGS) {
+                    showSort(sort);
+                }
+                //a page can come back trimmed to nothing by the radius, the grid needs rows to scroll
+                if (gigs.size() < DiscoverRanking.TOP) {
+                    queryGigs();
+                }
             }
 
-            List<String> commonInstrument1 = new ArrayList<>();
-            commonInstrument1.addAll(user1Instruments);
-            List<String> commonInstrument2 = new ArrayList<>();
-            commonInstrument2.addAll(user2Instuments);
-
-            commonInstrument1.retainAll(currentUserInstrument);
-            commonInstrument2.retainAll(currentUserInstrument);
-
-            int matches1 = commonInstrument1.size();
-            int matches2 = commonInstrument2.size();
-
-            if (matches1 > matches2){
-                return -1;
-            } else if (matches2 > matches1) {
-                return 1;
+            @Override
+            public void onError(ParseException e) {
+                //the cursor is unchanged, so the next scroll asks for the same page again
+                gigQuery = null;
             }
-
-            return 0;
-        }
+        });
     }
 
-    public class UserProximityComparator implements Comparator<User> {
-
+    private final Recommendations.Callback recommendationsCallback = new Recommendations.Callback() {
         @Override
-        public int compare(User user1, User user2) {
-            User currentUser = new User(ParseUser.getCurrentUser());
-
-            ParseGeoPoint currentUserLocation = new ParseGeoPoint();
-            if (currentUser.getLocation()!=null) {
-               currentUserLocation = currentUser.getLocation();
-            }
-            ParseGeoPoint user1Location = new ParseGeoPoint();
-            if(user1.getLocation()!=null) {
-               user1Location = user1.getLocation();
-            }
-            ParseGeoPoint user2Location = new ParseGeoPoint();
-            if(user2.getLocation() !=null) {
-                user2Location = user2.getLocation();
-            }
-
-            double distance1 = user1Location.distanceInMilesTo(currentUserLocation);
-            double distance2 = user2Location.distanceInMilesTo(currentUserLocation);
-
-            if (distance1 > distance2){
-                return 1;
-            } else if (distance2 > distance1) {
-                return -1;
+        public void onRecommendations(List<ParseUser> users) {
+            forYou.clear();
+            forYou.addAll(users);
+            if (sort == DiscoverRanking.Sort.FOR_YOU) {
+                showSort(sort);
             }
-            return 0;
+        }
+    };
 
+    //shows the ranking for sort, or remembers it until the users are ranked
+    private void showSort(DiscoverRanking.Sort sort) {
+        this.sort = sort;
+        //only the rows whose position changed are moved, the rest stay bound
+        if (sort == DiscoverRanking.Sort.FOR_YOU) {
+            userAdapter.submitList(forYou);
+        } else if (sort == DiscoverRanking.Sort.PROXIMITY && nearbyUsers.hasLocation()) {
+            userAdapter.submitList(nearby);
+        } else if (sort == DiscoverRanking.Sort.GIGS) {
+            userAdapter.submitList(gigs);
+        } else if (ranking != null) {
+            //without a location to search around, near me shows the most active users
+            userAdapter.submitList(ranking.get(sort == DiscoverRanking.Sort.PROXIMITY ? DiscoverRanking.Sort.POST_COUNT : sort));
         }
     }
-
-
-
-}
\ No newline at end of file
+}
@@ -16,8 +16,12 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.example.patrice_musicapp.R;
 import com.example.patrice_musicapp.adapters.EventAdapter;
 import com.example.patrice_musicapp.models.Event;
+import com.example.patrice_musicapp.models.PageCursor;
+import com.example.patrice_musicapp.utils.EndlessRecyclerViewScrollListener;
+import com.example.patrice_musicapp.utils.FeedCache;
 import com.parse.FindCallback;
 import com.parse.ParseException;
+import com.parse.ParseQuery;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -29,6 +33,7 @@ public class EventsPostsFragment extends Fragment {
     RecyclerView rvEventPosts;
     EventAdapter adapter;
     List<Event> allEvents;
+    EndlessRecyclerViewScrollListener scrollListener;
 
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container,
@@ -50,13 +55,28 @@ public class EventsPostsFragment extends Fragment {
         LinearLayoutManager linearLayoutManager = new LinearLayoutManager(getContext());
         rvEventPosts.setLayoutManager(linearLayoutManager);
 
-        queryEvents(0);
+        scrollListener = new EndlessRecyclerViewScrollListener(linearLayoutManager) {
+            @Override
+            public void onLoadMore(PageCursor cursor, int totalItemsCount, RecyclerView view) {
+                queryEvents(cursor);
+            }
+        };
+        rvEventPosts.addOnScrollListener(scrollListener);
+
+        queryEvents(null);
 
 
     }
 
-    private void queryEvents(final int page) {
-        Event.query(page, DISPLAY_LIMIT, null, new FindCallback<Event>() {
+    private void queryEvents(final PageCursor cursor) {
+        FeedCache.NetworkPage<Event> network = new FeedCache.NetworkPage<Event>() {
+            @Override
+            public ParseQuery<Event> find(FindCallback<Event> callback) {
+                return Event.query(cursor, DISPLAY_LIMIT, null, callback);
+            }
+        };
+        String key = FeedCache.key(TAG, null, cursor);
+        FeedCache.loadPage(Event.class, Event.KEY_HOST, key, cursor == null, network, new FindCallback<Event>() {
             @Override
             public void done(List<Event> events, ParseException e) {
                 if (e != null){
@@ -66,11 +86,12 @@ public class EventsPostsFragment extends Fragment {
                 for(Event event: events){
                     Log.i(TAG, "Post: " + event.getDescription() + " Username: " + event.getHost().getUsername());
                 }
-                if(page == 0) {
-                    adapter.clear();
+                if(cursor == null) {
+                    adapter.submitList(events);
+                } else {
+                    adapter.appendAll(events);
                 }
-                allEvents.addAll(events);
-                adapter.notifyDataSetChanged();
+                scrollListener.setNextCursor(PageCursor.next(events, DISPLAY_LIMIT));
 
             }
         });
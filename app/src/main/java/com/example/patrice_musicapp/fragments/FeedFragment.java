@@ -2,7 +2,6 @@ package com.example.patrice_musicapp.fragments;
 
 import android.content.Intent;
 import android.os.Bundle;
-import android.os.Handler;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -21,16 +20,24 @@ import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
 
 import com.example.patrice_musicapp.R;
 import com.example.patrice_musicapp.activities.ComposeActivity;
+import com.example.patrice_musicapp.activities.MainActivity;
 import com.example.patrice_musicapp.adapters.PostAdapter;
+import com.example.patrice_musicapp.models.PageCursor;
 import com.example.patrice_musicapp.models.Post;
-import com.example.patrice_musicapp.models.User;
 import com.example.patrice_musicapp.utils.EndlessRecyclerViewScrollListener;
+import com.example.patrice_musicapp.utils.FeedCache;
+import com.example.patrice_musicapp.utils.FeedPrefetcher;
+import com.example.patrice_musicapp.utils.FollowingCache;
+import com.example.patrice_musicapp.utils.LikeWriteCoalescer;
+import com.example.patrice_musicapp.utils.SoundCloudPlayer;
+import com.example.patrice_musicapp.utils.VideoAutoplay;
+import com.example.patrice_musicapp.utils.VideoPlayerPool;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.parse.FindCallback;
 import com.parse.ParseException;
+import com.parse.ParseQuery;
 import com.parse.ParseUser;
-import com.parse.SaveCallback;
 
 import org.json.JSONException;
 
@@ -45,11 +52,13 @@ public class FeedFragment extends Fragment {
     private RecyclerView rvFeedPosts;
     private PostAdapter adapter;
     private List<Post> allPosts;
-    private List<ParseUser> following = new ArrayList<>();
-    private User user = new User(ParseUser.getCurrentUser());
     private ParseUser filterForUser;
     private SwipeRefreshLayout swipeContainer;
     private EndlessRecyclerViewScrollListener scrollListener;
+    private FeedPrefetcher prefetcher;
+    private VideoAutoplay videoAutoplay;
+    //the network query of the page being appended, so it can be cancelled
+    private ParseQuery<Post> pageQuery;
 
 
 
@@ -77,6 +86,15 @@ public class FeedFragment extends Fragment {
         rvFeedPosts.setAdapter(adapter);
         LinearLayoutManager linearLayoutManager = new LinearLayoutManager(getContext());
         rvFeedPosts.setLayoutManager(linearLayoutManager);
+        MainActivity.usePostViewPool(this, rvFeedPosts);
+        //preload the images of the next rows before they are bound
+        prefetcher = new FeedPrefetcher(this, allPosts);
+        adapter.setPrefetcher(prefetcher);
+        prefetcher.attach(rvFeedPosts);
+        LikeWriteCoalescer.addListener(likeListener);
+        //only the most visible video row gets the shared player
+        videoAutoplay = new VideoAutoplay(VideoPlayerPool.get(getContext()));
+        videoAutoplay.attach(rvFeedPosts);
 
 
         fab.setOnClickListener(new View.OnClickListener() {
@@ -95,9 +113,9 @@ public class FeedFragment extends Fragment {
         }
 
 
-        //get the user following and their posts from the parse dashboard
+        //get the posts of the user and everyone they follow from the parse dashboard
         try {
-            getUserFollowing(0);
+            queryPosts(null);
         } catch (JSONException e) {
             e.printStackTrace();
         }
@@ -105,19 +123,13 @@ public class FeedFragment extends Fragment {
         swipeContainer.setOnRefreshListener(new SwipeRefreshLayout.OnRefreshListener() {
             @Override
             public void onRefresh() {
+                //keep showing the current posts until the new ones arrive
                 try {
-                    allPosts.clear();
-                    getUserFollowing(0);
+                    FeedCache.refresh(feedKey(null), feedPage(null), onPage(null, true));
                 } catch (JSONException e) {
                     e.printStackTrace();
+                    swipeContainer.setRefreshing(false);
                 }
-                new Handler().postDelayed(new Runnable() {
-                    @Override
-                    public void run() {
-                        // Stop animation (This will be after 2 seconds)
-                        swipeContainer.setRefreshing(false);
-                    }
-                }, 2000); //Delay in millis
             }
         });
 
@@ -130,44 +142,110 @@ public class FeedFragment extends Fragment {
 
         scrollListener = new EndlessRecyclerViewScrollListener(linearLayoutManager) {
             @Override
-            public void onLoadMore(int pages, int totalItemsCount, RecyclerView view) {
+            public void onLoadMore(PageCursor cursor, int totalItemsCount, RecyclerView view) {
                 //get the next 20 posts
                 try {
-                    getUserFollowing(pages);
+                    queryPosts(cursor);
                 } catch (JSONException e) {
                     e.printStackTrace();
                 }
             }
+
+            @Override
+            public void onCancelLoad(PageCursor cursor) {
+                if (pageQuery != null) {
+                    pageQuery.cancel();
+                    pageQuery = null;
+                }
+            }
         };
         rvFeedPosts.addOnScrollListener(scrollListener);
     }
 
-    private void getUserFollowing(final int onPage) throws JSONException {
-        following.clear();
-        following.add(ParseUser.getCurrentUser());
-        user.queryUserFollowing(new FindCallback<ParseUser>() {
-            @Override
-            public void done(List objects, ParseException e) {
-                if (e != null) {
-                    Log.e(TAG, "Issue with getting following users list to populate the feed fragment", e);
-                }
-                Log.i(TAG, "Got the followers successfully");
-                following.addAll(objects);
-                try {
-                    queryPosts(onPage);
-                } catch (JSONException ex) {
-                    ex.printStackTrace();
-                }
+    @Override
+    public void onHiddenChanged(boolean hidden) {
+        super.onHiddenChanged(hidden);
+        if (hidden && scrollListener != null) {
+            scrollListener.cancelLoad();
+        }
+        if (videoAutoplay != null) {
+            if (hidden) {
+                videoAutoplay.stop();
+            } else {
+                videoAutoplay.update();
             }
+        }
+    }
 
-        });
+    @Override
+    public void onStart() {
+        super.onStart();
+        if (videoAutoplay != null) {
+            videoAutoplay.update();
+        }
+    }
+
+    @Override
+    public void onStop() {
+        //likes still waiting for their window are written before the app may be killed
+        LikeWriteCoalescer.flush();
+        //frees the decoders while the feed is not on screen
+        videoAutoplay.stop();
+        VideoPlayerPool.get(getContext()).releaseIfIdle();
+        SoundCloudPlayer.release();
+        super.onStop();
+    }
+
+    @Override
+    public void onDestroyView() {
+        scrollListener.cancelLoad();
+        prefetcher.detach(rvFeedPosts);
+        videoAutoplay.detach();
+        LikeWriteCoalescer.removeListener(likeListener);
+        super.onDestroyView();
+    }
+
+    private final LikeWriteCoalescer.Listener likeListener = new LikeWriteCoalescer.Listener() {
+        @Override
+        public void onLikeReverted(Post post) {
+            adapter.refreshLike(post);
+        }
+    };
 
+    //the first page is shown straight from the cache and revalidated in the background
+    private void queryPosts(final PageCursor cursor) throws JSONException {
+        FeedCache.loadPage(Post.class, Post.KEY_USER, feedKey(cursor), cursor == null, feedPage(cursor), onPage(cursor, false));
+    }
+
+    private String feedKey(PageCursor cursor) {
+        return FeedCache.key(TAG, ParseUser.getCurrentUser(), cursor);
+    }
+
+    private FeedCache.NetworkPage<Post> feedPage(final PageCursor cursor) throws JSONException {
+        final List<ParseUser> following = FollowingCache.get();
+        return new FeedCache.NetworkPage<Post>() {
+            @Override
+            public ParseQuery<Post> find(FindCallback<Post> callback) {
+                ParseQuery<Post> query = Post.query(cursor, DISPLAY_LIMIT, filterForUser, callback, following);
+                if (cursor != null) {
+                    pageQuery = query;
+                }
+                return query;
+            }
+        };
     }
 
-    private void queryPosts(final int page) throws JSONException {
-        Post.query(page, DISPLAY_LIMIT, filterForUser, new FindCallback<Post>() {
+    //refresh is for swipe to refresh, which starts the feed over. a head that is only revalidated keeps the pages
+    //scrolled in below it
+    private FindCallback<Post> onPage(final PageCursor cursor, final boolean refresh) {
+        return new FindCallback<Post>() {
             @Override
             public void done(List<Post> posts, ParseException e) {
+                //the user turned back or left before this page arrived
+                if (cursor != null && !scrollListener.isRequested(cursor)) {
+                    return;
+                }
+                swipeContainer.setRefreshing(false);
                 if (e != null){
                     Log.e(TAG, "Issue with getting posts", e);
                     return;
@@ -176,13 +254,30 @@ public class FeedFragment extends Fragment {
                 for(Post post: posts){
                     Log.i(TAG, "Post: " + post.getCaption() + " Username: " + post.getUser().getUsername());
                 }
-                if(page == 0) {
-                    adapter.clear();
+                //a fresh head is diffed against what is on screen, later pages are appended
+                PageCursor next = PageCursor.next(posts, DISPLAY_LIMIT);
+                List<Post> current = adapter.getLatestList();
+                if (cursor == null && !refresh && next != null && current.size() > posts.size()) {
+                    //more pages are loaded: the head takes the place of the rows up to its last one and the rows
+                    //after it stay, so does the cursor of the next page
+                    List<Post> merged = new ArrayList<>(posts);
+                    for (Post post : current) {
+                        if (next.isBefore(post)) {
+                            merged.add(post);
+                        }
+                    }
+                    adapter.submitList(merged);
+                    return;
                 }
-                allPosts.addAll(posts);
-                adapter.notifyDataSetChanged();
+                if(cursor == null) {
+                    scrollListener.resetState();
+                    adapter.submitList(posts);
+                } else {
+                    adapter.appendAll(posts);
+                }
+                scrollListener.setNextCursor(next);
             }
-        }, following);
+        };
     }
 
     PostAdapter.onClickListener onClickListener = new PostAdapter.onClickListener() {
@@ -208,33 +303,17 @@ public class FeedFragment extends Fragment {
 
         @Override
         public void onLikeAction(int position) {
-            // add like to post
+            // add like to post, shown now and written with the other likes of the next second
             Post post = allPosts.get(position);
-            post.addLike(ParseUser.getCurrentUser());
-            post.saveInBackground(new SaveCallback() {
-                @Override
-                public void done(ParseException e) {
-                    Log.i(TAG, "Saved like successfully");
-                }
-            });
-            adapter.notifyItemChanged(position);
+            LikeWriteCoalescer.setLiked(post, true);
+            adapter.setLiked(position, true);
         }
 
         @Override
         public void onUnlikeAction(int position) {
             Post post = allPosts.get(position);
-            try {
-                post.destroyLike(ParseUser.getCurrentUser());
-            } catch (JSONException e) {
-                e.printStackTrace();
-            }
-            post.saveInBackground(new SaveCallback() {
-                @Override
-                public void done(ParseException e) {
-                    Log.i(TAG, "DestroyedLike successfully");
-                }
-            });
-            adapter.notifyItemChanged(position);
+            LikeWriteCoalescer.setLiked(post, false);
+            adapter.setLiked(position, false);
         }
 
         @Override
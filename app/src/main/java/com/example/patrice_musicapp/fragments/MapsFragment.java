@@ -34,7 +34,9 @@ import androidx.fragment.app.FragmentTransaction;
 import com.bumptech.glide.Glide;
 import com.example.patrice_musicapp.R;
 import com.example.patrice_musicapp.models.Event;
+import com.example.patrice_musicapp.models.ParseImage;
 import com.example.patrice_musicapp.models.User;
+import com.example.patrice_musicapp.utils.GeocodingService;
 import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationServices;
 import com.google.android.gms.maps.CameraUpdateFactory;
@@ -55,7 +57,6 @@ import com.parse.ParseUser;
 
 import org.json.JSONException;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -87,7 +88,7 @@ public class MapsFragment extends Fragment {
     private OnMapReadyCallback callback = new OnMapReadyCallback() {
         @Override
         public void onMapReady(GoogleMap googleMap) {
-            queryEvents(0, googleMap);
+            queryEvents(googleMap);
 
         }
 
@@ -269,11 +270,7 @@ public class MapsFragment extends Fragment {
     }
 
     private void bindViews() {
-        try {
-            tvAddress.setText(Event.getStringFromLocation(event.getLocation(), getContext(), TAG));
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        GeocodingService.get(getContext()).bind(tvAddress, event.getLocation(), Event.getLocationStyle(TAG));
 
         tvDateTime.setText(event.getDate().toString());
         tvDescription.setText(event.getDescription());
@@ -283,7 +280,7 @@ public class MapsFragment extends Fragment {
         //check if the post has a valid image
         ParseFile image = event.getImage();
         if (image != null) {
-            Glide.with(this).load(event.getImage().getUrl()).into(ivEventImage);
+            Glide.with(this).load(ParseImage.of(event)).into(ivEventImage);
         }
 
         //check if the user has a valid profilePic
@@ -302,8 +299,8 @@ public class MapsFragment extends Fragment {
 
     }
 
-    private void queryEvents(final int page, final GoogleMap googleMap) {
-        Event.query(page, DISPLAY_LIMIT,null,  new FindCallback<Event>() {
+    private void queryEvents(final GoogleMap googleMap) {
+        Event.query(null, DISPLAY_LIMIT,null,  new FindCallback<Event>() {
             @Override
             public void done(List<Event> events, ParseException e) {
                 if (e != null) {
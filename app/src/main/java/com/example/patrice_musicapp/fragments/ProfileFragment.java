@@ -17,6 +17,7 @@ import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
 import android.widget.AutoCompleteTextView;
 import android.widget.Button;
+import android.widget.HorizontalScrollView;
 import android.widget.ImageView;
 import android.widget.TextView;
 
@@ -33,27 +34,33 @@ import com.bumptech.glide.Glide;
 import com.example.patrice_musicapp.R;
 import com.example.patrice_musicapp.activities.ChatActivity;
 import com.example.patrice_musicapp.activities.EditProfileActivity;
+import com.example.patrice_musicapp.activities.MainActivity;
 import com.example.patrice_musicapp.activities.SettingsActivity;
 import com.example.patrice_musicapp.adapters.EventAdapter;
 import com.example.patrice_musicapp.adapters.PostAdapter;
 import com.example.patrice_musicapp.models.Event;
 import com.example.patrice_musicapp.models.Followers;
+import com.example.patrice_musicapp.models.Genres;
+import com.example.patrice_musicapp.models.PageCursor;
 import com.example.patrice_musicapp.models.Post;
 import com.example.patrice_musicapp.models.User;
+import com.example.patrice_musicapp.utils.EndlessRecyclerViewScrollListener;
+import com.example.patrice_musicapp.utils.FeedCache;
+import com.example.patrice_musicapp.utils.GenreChipStrip;
+import com.example.patrice_musicapp.utils.GeocodingService;
 import com.google.android.gms.maps.model.LatLng;
-import com.google.android.material.chip.Chip;
 import com.google.android.material.chip.ChipGroup;
 import com.parse.DeleteCallback;
 import com.parse.FindCallback;
 import com.parse.ParseException;
 import com.parse.ParseFile;
+import com.parse.ParseQuery;
 import com.parse.ParseUser;
 import com.parse.SaveCallback;
 
 import org.json.JSONException;
 import org.parceler.Parcels;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -80,12 +87,13 @@ public class ProfileFragment extends Fragment {
     private TextView tvInstruments;
     private Button btnEditProfile;
     private Button btnFollow;
-    private ChipGroup chipGroupGenres;
+    private GenreChipStrip genreStrip;
     private AutoCompleteTextView editTextFilledExposedDropdown;
     public static final int DISPLAY_LIMIT= 20;
     public static final String TAG = ProfileFragment.class.getSimpleName();
     private Followers follow = new Followers();
     private String selected;
+    private EndlessRecyclerViewScrollListener scrollListener;
 
 
     @Override
@@ -132,6 +140,18 @@ public class ProfileFragment extends Fragment {
         //set layout manager on recycler view
         LinearLayoutManager linearLayoutManager = new LinearLayoutManager(getContext());
         rvProfileContent.setLayoutManager(linearLayoutManager);
+        MainActivity.usePostViewPool(this, rvProfileContent);
+        scrollListener = new EndlessRecyclerViewScrollListener(linearLayoutManager) {
+            @Override
+            public void onLoadMore(PageCursor cursor, int totalItemsCount, RecyclerView view) {
+                if (selected.equals("Events")) {
+                    queryEvents(cursor);
+                } else {
+                    queryPosts(cursor);
+                }
+            }
+        };
+        rvProfileContent.addOnScrollListener(scrollListener);
 
         checkChoice();
         editTextFilledExposedDropdown.setOnItemClickListener(new AdapterView.OnItemClickListener() {
@@ -155,7 +175,8 @@ public class ProfileFragment extends Fragment {
         tvFollowing = view.findViewById(R.id.tvFollowing);
         btnEditProfile = view.findViewById(R.id.btnEditProfile);
         btnFollow = view.findViewById(R.id.btnFollow);
-        chipGroupGenres = view.findViewById(R.id.chip_group_genres);
+        genreStrip = new GenreChipStrip((HorizontalScrollView) view.findViewById(R.id.hsvGenres),
+                (ChipGroup) view.findViewById(R.id.chip_group_genres));
         ivYoutube = view.findViewById(R.id.ivYoutube);
         ivInstagram = view.findViewById(R.id.ivInstagram);
         ivChat = view.findViewById(R.id.ivChat);
@@ -200,32 +221,21 @@ public class ProfileFragment extends Fragment {
         }
 
 
-        List<String> genres;
-        genres = user.getGenres();
-        if (genres!=null) {
-            for (String genre : genres) {
-                Chip chip = new Chip(getContext());
-                genre = genre.replace("_", " ");
-                chip.setText(genre);
-                chip.isCheckable();
-                final String chipGenre = genre;
-                chip.setOnClickListener(new View.OnClickListener() {
-                    @Override
-                    public void onClick(View view) {
-                        //go to discover fragment and sortByGenre
-                        Fragment newFragment = new DiscoverFragment();
-                        Bundle bundle2 = new Bundle();
-                        bundle2.putString("chipGenre", chipGenre);
-                        newFragment.setArguments(bundle2);
-                        FragmentTransaction fragmentTransaction = getFragmentManager().beginTransaction();
-                        fragmentTransaction.replace(R.id.flContainer, newFragment);
-                        fragmentTransaction.disallowAddToBackStack();
-                        fragmentTransaction.commit();
-                    }
-                });
-                chipGroupGenres.addView(chip);
+        genreStrip.setOnGenreClickListener(new GenreChipStrip.OnGenreClickListener() {
+            @Override
+            public void onGenreClick(String genre) {
+                //go to discover fragment and sortByGenre
+                Fragment newFragment = new DiscoverFragment();
+                Bundle bundle2 = new Bundle();
+                bundle2.putString("chipGenre", Genres.labelOf(genre));
+                newFragment.setArguments(bundle2);
+                FragmentTransaction fragmentTransaction = getFragmentManager().beginTransaction();
+                fragmentTransaction.replace(R.id.flContainer, newFragment);
+                fragmentTransaction.disallowAddToBackStack();
+                fragmentTransaction.commit();
             }
-        }
+        });
+        genreStrip.bind(user.getGenres());
 
 
 
@@ -324,11 +334,7 @@ public class ProfileFragment extends Fragment {
         }
 
         if (user.getLocation()!= null && (user.getLocation().getLatitude() != 0.0 && user.getLocation().getLongitude() != 0.0)) {
-            try {
-                tvLocation.setText(User.getStringFromLocation(user.getLocation(), getContext()));
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+            GeocodingService.get(getContext()).bind(tvLocation, user.getLocation(), GeocodingService.Style.LOCALITY);
         }
 
         tvLocation.setOnClickListener(new View.OnClickListener() {
@@ -396,18 +402,19 @@ public class ProfileFragment extends Fragment {
     }
 
     private void checkChoice() {
+        scrollListener.resetState();
         switch (selected){
             case "Posts":
                 userPosts = new ArrayList<>();
                 userPostAdapter = new PostAdapter(getContext(), userPosts, onClickListenerPost);
                 rvProfileContent.setAdapter(userPostAdapter);
-                queryPosts(0);
+                queryPosts(null);
                 break;
             case "Events":
                 userEvents = new ArrayList<>();
                 userEventsAdapter = new EventAdapter(getContext(), userEvents, onClickListenerEvent);
                 rvProfileContent.setAdapter(userEventsAdapter);
-                queryEvents(0);
+                queryEvents(null);
                 break;
         }
 
@@ -434,8 +441,15 @@ public class ProfileFragment extends Fragment {
         return true;
     }
 
-    protected void queryPosts(final int page) {
-        Post.query(page, DISPLAY_LIMIT, user.parseUser, new FindCallback<Post>() {
+    protected void queryPosts(final PageCursor cursor) {
+        FeedCache.NetworkPage<Post> network = new FeedCache.NetworkPage<Post>() {
+            @Override
+            public ParseQuery<Post> find(FindCallback<Post> callback) {
+                return Post.query(cursor, DISPLAY_LIMIT, user.getParseUser(), callback, null);
+            }
+        };
+        String key = FeedCache.key(TAG + "Posts", user.getParseUser(), cursor);
+        FeedCache.loadPage(Post.class, Post.KEY_USER, key, cursor == null, network, new FindCallback<Post>() {
             @Override
             public void done(List<Post> posts, ParseException e) {
                 if (e != null){
@@ -446,18 +460,26 @@ public class ProfileFragment extends Fragment {
                 for(Post post: posts){
                     Log.i(TAG, "Post: " + post.getCaption() + " Username: " + post.getUser().getUsername());
                 }
-                if(page == 0) {
-                    userPostAdapter.clear();
+                if(cursor == null) {
+                    userPostAdapter.submitList(posts);
+                } else {
+                    userPostAdapter.appendAll(posts);
                 }
-                userPosts.addAll(posts);
-                userPostAdapter.notifyDataSetChanged();
+                scrollListener.setNextCursor(PageCursor.next(posts, DISPLAY_LIMIT));
             }
-        }, null);
+        });
     }
 
 
-    protected void queryEvents(final int page) {
-        Event.query(page, DISPLAY_LIMIT, user.getParseUser(), new FindCallback<Event>() {
+    protected void queryEvents(final PageCursor cursor) {
+        FeedCache.NetworkPage<Event> network = new FeedCache.NetworkPage<Event>() {
+            @Override
+            public ParseQuery<Event> find(FindCallback<Event> callback) {
+                return Event.query(cursor, DISPLAY_LIMIT, user.getParseUser(), callback);
+            }
+        };
+        String key = FeedCache.key(TAG + "Events", user.getParseUser(), cursor);
+        FeedCache.loadPage(Event.class, Event.KEY_HOST, key, cursor == null, network, new FindCallback<Event>() {
             @Override
             public void done(List<Event> events, ParseException e) {
                 if (e!=null){
@@ -468,12 +490,12 @@ public class ProfileFragment extends Fragment {
                 for (Event event: events){
                     Log.i(TAG, "Event" + event.getName() + "Host: " + event.getHost().getUsername());
                 }
-                if (page == 0) {
-                    userEventsAdapter.clear();
+                if (cursor == null) {
+                    userEventsAdapter.submitList(events);
+                } else {
+                    userEventsAdapter.appendAll(events);
                 }
-
-                userEvents.addAll(events);
-                userEventsAdapter.notifyDataSetChanged();
+                scrollListener.setNextCursor(PageCursor.next(events, DISPLAY_LIMIT));
             }
         });
     }
@@ -1,9 +1,9 @@
 package com.example.patrice_musicapp.models;
 
 import android.content.Context;
-import android.location.Address;
-import android.location.Geocoder;
 
+import com.example.patrice_musicapp.utils.GeocodingService;
+import com.example.patrice_musicapp.utils.ImageVariants;
 import com.google.android.gms.maps.MapFragment;
 import com.parse.FindCallback;
 import com.parse.ParseClassName;
@@ -16,17 +16,23 @@ import com.parse.ParseUser;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.List;
 import java.util.Locale;
 
 @ParseClassName("Event")
 public class Event extends ParseObject {
     public static final String KEY_HOST= "Host";
     public static final String KEY_IMAGE = "image";
+    //smaller copies of image, see ImageVariants
+    public static final String KEY_IMAGE_THUMB = "imageThumb";
+    public static final String KEY_IMAGE_FEED = "imageFeed";
     public static final String KEY_NAME = "name";
+    //lowercase copy of name, indexed for the prefix queries of SearchService
+    public static final String KEY_NAME_LOWER = "nameLower";
     public static final String KEY_DESCRIPTION = "description";
     public static final String KEY_LOCATION = "location";
     public static final String KEY_DATE = "date";
+    //the UploadQueue job that created the event, see Post.KEY_UPLOAD_ID
+    public static final String KEY_UPLOAD_ID = "uploadId";
 
 
     public ParseUser getHost() {
@@ -45,12 +51,28 @@ public class Event extends ParseObject {
         put(KEY_IMAGE, image);
     }
 
+    public ParseFile getImageThumb() {
+        return getParseFile(KEY_IMAGE_THUMB);
+    }
+
+    public ParseFile getImageFeed() {
+        return getParseFile(KEY_IMAGE_FEED);
+    }
+
+    //the full variant becomes image, so older clients keep showing it
+    public void setImageVariants(ImageVariants variants) {
+        put(KEY_IMAGE_THUMB, variants.getThumb());
+        put(KEY_IMAGE_FEED, variants.getFeed());
+        put(KEY_IMAGE, variants.getFull());
+    }
+
     public String getName() {
         return getString(KEY_NAME);
     }
 
     public void setName(String name){
         put(KEY_NAME, name);
+        put(KEY_NAME_LOWER, name.toLowerCase(Locale.ROOT));
     }
 
     public String getDescription() {
@@ -70,20 +92,16 @@ public class Event extends ParseObject {
 
     }
 
+    //blocks on a cache miss, so only call it off the UI thread
     public static String getStringFromLocation(ParseGeoPoint parseGeoPoint, Context context, String fromWhere) throws IOException {
-        Geocoder geocoder = new Geocoder(context, Locale.US);
-        List<Address> addresses = geocoder.getFromLocation(parseGeoPoint.getLatitude(), parseGeoPoint.getLongitude(), 5);
-        Address address = addresses.get(0); //get the first address for right now
-
-        if (fromWhere == MapFragment.class.getSimpleName()){
-            return address.getAddressLine(0);
-        }
+        return GeocodingService.get(context).resolve(parseGeoPoint, getLocationStyle(fromWhere));
+    }
 
-        if (!address.getFeatureName().matches("[0-9]+")){
-            return address.getFeatureName();
-        } else {
-            return address.getLocality();
+    public static GeocodingService.Style getLocationStyle(String fromWhere) {
+        if (MapFragment.class.getSimpleName().equals(fromWhere)){
+            return GeocodingService.Style.ADDRESS;
         }
+        return GeocodingService.Style.EVENT;
     }
 
     public String getDate() {
@@ -95,18 +113,26 @@ public class Event extends ParseObject {
         put(KEY_DATE, date);
     }
 
-    public static void query(int page, int limit, ParseUser filterForUser, FindCallback callback){
-        ParseQuery<Event> query = ParseQuery.getQuery(Event.class);
+    public void setUploadId(String uploadId) {
+        put(KEY_UPLOAD_ID, uploadId);
+    }
+
+    public static ParseQuery<Event> query(PageCursor cursor, int limit, ParseUser filterForUser, FindCallback<Event> callback){
+        ParseQuery<Event> query = PageCursor.apply(hostQuery(filterForUser), hostQuery(filterForUser), cursor);
         query.include(Event.KEY_HOST);
-        if(filterForUser != null) {
-            query.whereEqualTo(KEY_HOST, filterForUser);
-        }
         query.setLimit(limit);
-        query.setSkip(page * limit);
-        query.addDescendingOrder(Event.KEY_CREATED_AT);
+        PageCursor.order(query);
         query.findInBackground(callback);
+        return query;
     }
 
+    private static ParseQuery<Event> hostQuery(ParseUser filterForUser) {
+        ParseQuery<Event> query = ParseQuery.getQuery(Event.class);
+        if(filterForUser != null) {
+            query.whereEqualTo(KEY_HOST, filterForUser);
+        }
+        return query;
+    }
 
 
 
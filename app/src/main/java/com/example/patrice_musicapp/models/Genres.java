@@ -1,5 +1,9 @@
 package com.example.patrice_musicapp.models;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 public enum Genres {
     BLUES,
     CLASSICAL_MUSIC,
@@ -30,6 +34,49 @@ public enum Genres {
     SOCA,
     SOUL_MUSIC,
     SWING,
-    TECHNO
+    TECHNO;
+
+    //value -> label, built once so rows never format a label while binding
+    private static final Map<String, String> labels = new HashMap<>();
+    //value -> genre, for maskOf
+    private static final Map<String, Genres> byValue = new HashMap<>();
+
+    static {
+        for (Genres genre : values()) {
+            labels.put(genre.name(), genre.getLabel());
+            byValue.put(genre.name(), genre);
+        }
+    }
+
+    private final String label;
+
+    Genres() {
+        label = name().replace("_", " ");
+    }
+
+    //how the genre is shown, e.g. "HIP HOP"
+    public String getLabel() {
+        return label;
+    }
+
+    //label of a stored genre value, values that are not in the enum are formatted the same way
+    public static String labelOf(String value) {
+        String label = labels.get(value);
+        return label != null ? label : value.replace("_", " ");
+    }
 
+    //one bit per genre by ordinal, so two users' shared genres are Long.bitCount(a & b). values that are not in the
+    //enum are left out
+    public static long maskOf(List<String> values) {
+        long mask = 0;
+        if (values != null) {
+            for (String value : values) {
+                Genres genre = byValue.get(value);
+                if (genre != null) {
+                    mask |= 1L << genre.ordinal();
+                }
+            }
+        }
+        return mask;
     }
+}
@@ -0,0 +1,73 @@
+package com.example.patrice_musicapp.models;
+
+import com.parse.ParseQuery;
+import com.parse.ParseUser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//continuation token for the gig search, like PageCursor but for rows ordered cheapest first: the (hourRate, objectId)
+//of the last row of a page. the next page asks for rows strictly after it instead of skipping page * limit rows
+public class GigCursor {
+    private static final String KEY_OBJECT_ID = "objectId";
+    private final double hourRate;
+    private final String objectId;
+
+    public GigCursor(double hourRate, String objectId) {
+        this.hourRate = hourRate;
+        this.objectId = objectId;
+    }
+
+    //returns the cursor for the page after this one, or null if this was the last page
+    public static GigCursor next(List<ParseUser> page, int limit) {
+        if (page == null || page.isEmpty() || page.size() < limit) {
+            return null;
+        }
+        ParseUser last = page.get(page.size() - 1);
+        return new GigCursor(new User(last).getHourRate(), last.getObjectId());
+    }
+
+    //afterQuery and tieQuery must carry the same constraints; tieQuery breaks ties on hourRate by objectId.
+    //the caller adds selectKeys/limit/ordering on the returned query
+    public static ParseQuery<ParseUser> apply(ParseQuery<ParseUser> afterQuery, ParseQuery<ParseUser> tieQuery, GigCursor cursor) {
+        if (cursor == null) {
+            return afterQuery;
+        }
+        List<ParseQuery<ParseUser>> queries = new ArrayList<>();
+        addTo(queries, afterQuery, tieQuery, cursor);
+        return ParseQuery.or(queries);
+    }
+
+    //apply for a search that is already an or of several queries, e.g. one per geo box: adds the queries for the
+    //rows after the cursor to queries, so the caller ors them all at one level
+    public static void addTo(List<ParseQuery<ParseUser>> queries, ParseQuery<ParseUser> afterQuery, ParseQuery<ParseUser> tieQuery,
+                             GigCursor cursor) {
+        queries.add(afterQuery);
+        if (cursor == null) {
+            return;
+        }
+        afterQuery.whereGreaterThan(User.KEY_HOUR_RATE, cursor.hourRate);
+        tieQuery.whereEqualTo(User.KEY_HOUR_RATE, cursor.hourRate);
+        tieQuery.whereGreaterThan(KEY_OBJECT_ID, cursor.objectId);
+        queries.add(tieQuery);
+    }
+
+    //cheapest first, objectId breaks ties so the order matches the cursor comparison
+    public static void order(ParseQuery<ParseUser> query) {
+        query.addAscendingOrder(User.KEY_HOUR_RATE);
+        query.addAscendingOrder(KEY_OBJECT_ID);
+    }
+
+    public double getHourRate() {
+        return hourRate;
+    }
+
+    public String getObjectId() {
+        return objectId;
+    }
+
+    @Override
+    public String toString() {
+        return hourRate + ":" + objectId;
+    }
+}
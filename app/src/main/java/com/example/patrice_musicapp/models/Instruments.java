@@ -1,5 +1,9 @@
 package com.example.patrice_musicapp.models;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 public enum Instruments {
     ACCORDIAN,
     ACOUSTIC_GUITAR,
@@ -30,5 +34,28 @@ public enum Instruments {
     VIOLA,
     VIOLIN,
     VOCALS,
-    XYLOPHONE
+    XYLOPHONE;
+
+    //value -> instrument, for maskOf
+    private static final Map<String, Instruments> byValue = new HashMap<>();
+
+    static {
+        for (Instruments instrument : values()) {
+            byValue.put(instrument.name(), instrument);
+        }
+    }
+
+    //one bit per instrument by ordinal, like Genres.maskOf
+    public static long maskOf(List<String> values) {
+        long mask = 0;
+        if (values != null) {
+            for (String value : values) {
+                Instruments instrument = byValue.get(value);
+                if (instrument != null) {
+                    mask |= 1L << instrument.ordinal();
+                }
+            }
+        }
+        return mask;
+    }
 }
@@ -0,0 +1,46 @@
+package com.example.patrice_musicapp.models;
+
+import com.parse.ParseClassName;
+import com.parse.ParseException;
+import com.parse.ParseObject;
+import com.parse.ParseQuery;
+import com.parse.ParseUser;
+
+import java.util.Arrays;
+import java.util.List;
+
+//one row per (post, user) like, instead of every liker living in an array on the post. a beforeSave in cloud code
+//rejects a second row for the same pair. the row is saved next to the post's likesCount increment without a
+//transaction, so LikeStore still keeps one row per post on the device and LikeWriteCoalescer only writes a change
+//of state. a save is only rejected when the user liked the post on another device first
+@ParseClassName("Like")
+public class Like extends ParseObject {
+    public static final String KEY_POST = "post";
+    public static final String KEY_USER = "user";
+
+    public Post getPost() {
+        return (Post) getParseObject(KEY_POST);
+    }
+
+    public void setPost(Post post) {
+        put(KEY_POST, post);
+    }
+
+    public ParseUser getUser() {
+        return getParseUser(KEY_USER);
+    }
+
+    public void setUser(ParseUser user) {
+        put(KEY_USER, user);
+    }
+
+    //the likes a user left on any of the given posts, in one round trip
+    public static List<Like> findForPosts(List<Post> posts, ParseUser user) throws ParseException {
+        ParseQuery<Like> query = ParseQuery.getQuery(Like.class);
+        query.whereEqualTo(KEY_USER, user);
+        query.whereContainedIn(KEY_POST, posts);
+        query.selectKeys(Arrays.asList(KEY_POST));
+        query.setLimit(posts.size());
+        return query.find();
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.patrice_musicapp.models;
+
+import com.parse.ParseObject;
+import com.parse.ParseQuery;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+//continuation token for keyset pagination: the (createdAt, objectId) of the last row of a page.
+//the next page asks for rows strictly older than it instead of skipping page * limit rows.
+//syncs walk forward the same way on updatedAt or createdAt with after, see SearchIndex
+public class PageCursor {
+    public static final String KEY_UPDATED_AT = "updatedAt";
+    private static final String KEY_OBJECT_ID = "objectId";
+    //createdAt, or the date key the cursor walks with after
+    private final Date date;
+    private final String objectId;
+
+    public PageCursor(Date date, String objectId) {
+        this.date = date;
+        this.objectId = objectId;
+    }
+
+    //returns the cursor for the page after this one, or null if this was the last page
+    public static PageCursor next(List<? extends ParseObject> page, int limit) {
+        if (page == null || page.isEmpty() || page.size() < limit) {
+            return null;
+        }
+        ParseObject last = page.get(page.size() - 1);
+        return new PageCursor(last.getCreatedAt(), last.getObjectId());
+    }
+
+    //olderQuery and tieQuery must carry the same constraints; tieQuery breaks ties on createdAt by objectId.
+    //the caller adds include/limit/ordering on the returned query
+    public static <T extends ParseObject> ParseQuery<T> apply(ParseQuery<T> olderQuery, ParseQuery<T> tieQuery, PageCursor cursor) {
+        if (cursor == null) {
+            return olderQuery;
+        }
+        olderQuery.whereLessThan(ParseObject.KEY_CREATED_AT, cursor.date);
+        tieQuery.whereEqualTo(ParseObject.KEY_CREATED_AT, cursor.date);
+        tieQuery.whereLessThan(KEY_OBJECT_ID, cursor.objectId);
+
+        List<ParseQuery<T>> queries = new ArrayList<>();
+        queries.add(olderQuery);
+        queries.add(tieQuery);
+        return ParseQuery.or(queries);
+    }
+
+    //newest first, objectId breaks ties so the order matches the cursor comparison
+    public static <T extends ParseObject> void order(ParseQuery<T> query) {
+        query.addDescendingOrder(ParseObject.KEY_CREATED_AT);
+        query.addDescendingOrder(KEY_OBJECT_ID);
+    }
+
+    //apply going forward: rows strictly after the cursor on (key, objectId), key being updatedAt or createdAt.
+    //null cursor means from the start. order the returned query with orderAfter
+    public static <T extends ParseObject> ParseQuery<T> after(ParseQuery<T> newerQuery, ParseQuery<T> tieQuery, String key,
+                                                             PageCursor cursor) {
+        if (cursor == null) {
+            return newerQuery;
+        }
+        newerQuery.whereGreaterThan(key, cursor.date);
+        tieQuery.whereEqualTo(key, cursor.date);
+        tieQuery.whereGreaterThan(KEY_OBJECT_ID, cursor.objectId);
+
+        List<ParseQuery<T>> queries = new ArrayList<>();
+        queries.add(newerQuery);
+        queries.add(tieQuery);
+        return ParseQuery.or(queries);
+    }
+
+    //oldest first on key, then objectId
+    public static <T extends ParseObject> void orderAfter(ParseQuery<T> query, String key) {
+        query.addAscendingOrder(key);
+        query.addAscendingOrder(KEY_OBJECT_ID);
+    }
+
+    //where a page read with orderAfter ended, cursor if the page was empty
+    public static PageCursor last(List<? extends ParseObject> page, String key, PageCursor cursor) {
+        if (page == null || page.isEmpty()) {
+            return cursor;
+        }
+        ParseObject last = page.get(page.size() - 1);
+        Date date = KEY_UPDATED_AT.equals(key) ? last.getUpdatedAt() : last.getCreatedAt();
+        return new PageCursor(date, last.getObjectId());
+    }
+
+    //for the files syncs keep their cursors in, null is written too
+    public static void write(DataOutputStream out, PageCursor cursor) throws IOException {
+        out.writeBoolean(cursor != null);
+        if (cursor != null) {
+            out.writeLong(cursor.date.getTime());
+            out.writeUTF(cursor.objectId);
+        }
+    }
+
+    public static PageCursor read(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        long time = in.readLong();
+        return new PageCursor(new Date(time), in.readUTF());
+    }
+
+    //true if row comes after this cursor newest first, i.e. would be on a page apply(..., this) returns
+    public boolean isBefore(ParseObject row) {
+        int byDate = row.getCreatedAt().compareTo(date);
+        return byDate < 0 || byDate == 0 && row.getObjectId().compareTo(objectId) < 0;
+    }
+
+    public Date getDate() {
+        return date;
+    }
+
+    public String getObjectId() {
+        return objectId;
+    }
+
+    @Override
+    public String toString() {
+        return date.getTime() + ":" + objectId;
+    }
+}
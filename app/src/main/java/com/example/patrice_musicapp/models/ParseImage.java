@@ -0,0 +1,75 @@
+package com.example.patrice_musicapp.models;
+
+import com.example.patrice_musicapp.utils.ImageVariants;
+import com.parse.ParseFile;
+
+//the uploaded sizes of one post or event image, what glide loads instead of a url so ParseImageLoader can pick
+//the size. posts and events from before the variants only have the full image, which is then always used
+public class ParseImage {
+    private final ParseFile thumb;
+    private final ParseFile feed;
+    private final ParseFile full;
+
+    private ParseImage(ParseFile thumb, ParseFile feed, ParseFile full) {
+        this.thumb = thumb;
+        this.feed = feed;
+        this.full = full;
+    }
+
+    //null when the post has no image
+    public static ParseImage of(Post post) {
+        if (post.getImage() == null) {
+            return null;
+        }
+        return new ParseImage(post.getImageThumb(), post.getImageFeed(), post.getImage());
+    }
+
+    //null when the event has no image
+    public static ParseImage of(Event event) {
+        if (event.getImage() == null) {
+            return null;
+        }
+        return new ParseImage(event.getImageThumb(), event.getImageFeed(), event.getImage());
+    }
+
+    //url of the smallest variant whose longest edge covers a width x height view
+    public String urlFor(int width, int height) {
+        int edge = Math.max(width, height);
+        if (thumb != null && edge <= ImageVariants.THUMB_EDGE) {
+            return thumb.getUrl();
+        }
+        if (feed != null && edge <= ImageVariants.FEED_EDGE) {
+            return feed.getUrl();
+        }
+        return full.getUrl();
+    }
+
+    public String getFullUrl() {
+        return full.getUrl();
+    }
+
+    //the full image stands for all of its variants, so glide's memory cache keys on it
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ParseImage)) {
+            return false;
+        }
+        String url = getFullUrl();
+        String other = ((ParseImage) o).getFullUrl();
+        return url != null ? url.equals(other) : other == null;
+    }
+
+    @Override
+    public int hashCode() {
+        String url = getFullUrl();
+        return url != null ? url.hashCode() : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "ParseImage{" + getFullUrl() + "}";
+    }
+}
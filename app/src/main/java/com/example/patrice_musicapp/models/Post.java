@@ -2,24 +2,25 @@ package com.example.patrice_musicapp.models;
 
 
 import android.content.Context;
-import android.location.Address;
-import android.location.Geocoder;
 import android.text.format.DateUtils;
 
+import com.example.patrice_musicapp.utils.GeocodingService;
+import com.example.patrice_musicapp.utils.ImageVariants;
+import com.example.patrice_musicapp.utils.LikeStore;
 import com.parse.FindCallback;
 import com.parse.ParseClassName;
+import com.parse.ParseException;
 import com.parse.ParseFile;
 import com.parse.ParseGeoPoint;
 import com.parse.ParseObject;
 import com.parse.ParseQuery;
 import com.parse.ParseUser;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
 import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
@@ -28,14 +29,24 @@ import java.util.Locale;
 public class Post extends ParseObject {
     public static final String KEY_USER = "user";
     public static final String KEY_IMAGE = "image";
+    //smaller copies of image, see ImageVariants
+    public static final String KEY_IMAGE_THUMB = "imageThumb";
+    public static final String KEY_IMAGE_FEED = "imageFeed";
     public static final String KEY_VIDEO = "video";
     public static final String KEY_TITLE = "title";
     public static final String KEY_CAPTION = "caption";
     public static final String KEY_LOCATION = "location";
     public static final String KEY_LIKES_COUNT = "likesCount";
+    //who liked the post before likes became Like rows, see LikeStore.loadForPage
     public static final String KEY_LIKES_ARRAY = "likesUserArray";
     public static final String KEY_SOUND_CLOUD_URL = "soundCloudUrl";
     public static final String KEY_GENRE_FILTER= "genreFilter";
+    //the UploadQueue job that created the post, so a retried upload can find it instead of posting twice
+    public static final String KEY_UPLOAD_ID = "uploadId";
+    //what a feed row needs. leaves out likesUserArray, which older posts still carry
+    public static final List<String> FEED_KEYS = Collections.unmodifiableList(Arrays.asList(KEY_USER, KEY_IMAGE, KEY_IMAGE_THUMB,
+            KEY_IMAGE_FEED, KEY_VIDEO,
+            KEY_TITLE, KEY_CAPTION, KEY_LOCATION, KEY_LIKES_COUNT, KEY_SOUND_CLOUD_URL, KEY_GENRE_FILTER));
 
     public static final String TAG = Post.class.getSimpleName();
     public ParseUser getUser() {
@@ -54,6 +65,21 @@ public class Post extends ParseObject {
         put(KEY_IMAGE, image);
     }
 
+    public ParseFile getImageThumb() {
+        return getParseFile(KEY_IMAGE_THUMB);
+    }
+
+    public ParseFile getImageFeed() {
+        return getParseFile(KEY_IMAGE_FEED);
+    }
+
+    //the full variant becomes image, so older clients keep showing it
+    public void setImageVariants(ImageVariants variants) {
+        put(KEY_IMAGE_THUMB, variants.getThumb());
+        put(KEY_IMAGE_FEED, variants.getFeed());
+        put(KEY_IMAGE, variants.getFull());
+    }
+
 
     public ParseFile getVideo() {
         return getParseFile(KEY_VIDEO);
@@ -109,43 +135,41 @@ public class Post extends ParseObject {
         return (int) getNumber(KEY_LIKES_COUNT);
     }
 
-    public void addLike(ParseUser parseUser){
-        //increase like count
-        put(KEY_LIKES_COUNT, getLikesCount()+ 1);
-        addUnique(KEY_LIKES_ARRAY, parseUser);
+    //the count is incremented on the server, so likes from several devices at once all add up.
+    //returns the Like row to save along with the post
+    public Like addLike(ParseUser parseUser){
+        increment(KEY_LIKES_COUNT);
+        return LikeStore.add(this, parseUser);
+    }
+
+    //liked by the current user, as loaded by LikeStore for the page this post came in
+    public boolean isLiked() {
+        return LikeStore.isLiked(this);
     }
 
-    public boolean isLiked(ParseUser parseUser) throws JSONException {
-        JSONArray jsonArray = getJSONArray(KEY_LIKES_ARRAY);
-        if (jsonArray!= null) {
-            for (int i = 0; i < jsonArray.length(); i++) {
-                JSONObject jsonObject = (JSONObject) jsonArray.get(i);
-                String objectId = jsonObject.getString("objectId");
-                if (objectId.equals(parseUser.getObjectId())) {
-                    return true;
-                }
-            }
+    //returns the Like row to delete, null if it was never saved. a post with no Like row for the user is left as it
+    //is, including a like still in the old likes array, which only the migrateLikesUserArray cloud job writes
+    public Like destroyLike(ParseUser parseUser) {
+        if (LikeStore.rowFor(this) == null) {
+            return null;
         }
-        return false;
-    }
-
-
-    public void destroyLike(ParseUser parseUser) throws JSONException {
-        //reduce count
-        put(KEY_LIKES_COUNT, getLikesCount() - 1);
-        //loop through user like array and delete user object
-        JSONArray jsonArray = getJSONArray(KEY_LIKES_ARRAY);
-        if (jsonArray!= null) {
-            for (int i = 0; i < jsonArray.length(); i++) {
-                JSONObject jsonObject = (JSONObject) jsonArray.get(i);
-                String objectId = jsonObject.getString("objectId");
-                if (objectId.equals(parseUser.getObjectId())) {
-                    //delete that user object
-                    jsonArray.remove(i);
-                    put(KEY_LIKES_ARRAY, jsonArray);
-                }
-            }
+        increment(KEY_LIKES_COUNT, -1);
+        return LikeStore.remove(this);
+    }
+
+    //the posts of the list whose old likes array still has the user, only their ids come back. read only
+    public static List<Post> findLikedInArray(List<Post> posts, ParseUser user) throws ParseException {
+        List<String> ids = new ArrayList<>();
+        for (Post post : posts) {
+            ids.add(post.getObjectId());
         }
+        ParseQuery<Post> query = ParseQuery.getQuery(Post.class);
+        query.whereContainedIn("objectId", ids);
+        //matches arrays that contain the user
+        query.whereEqualTo(KEY_LIKES_ARRAY, user);
+        query.selectKeys(Arrays.asList(KEY_LIKES_COUNT));
+        query.setLimit(ids.size());
+        return query.find();
     }
 
 
@@ -157,11 +181,9 @@ public class Post extends ParseObject {
         put(KEY_LOCATION, parseGeoPoint);
     }
 
+    //blocks on a cache miss, so only call it off the UI thread
     public static String getStringFromLocation(ParseGeoPoint parseGeoPoint, Context context) throws IOException {
-        Geocoder geocoder = new Geocoder(context, Locale.US);
-        List<Address> addresses = geocoder.getFromLocation(parseGeoPoint.getLatitude(), parseGeoPoint.getLongitude(), 5);
-        Address address = addresses.get(0); //get the first address for right now
-        return address.getLocality();
+        return GeocodingService.get(context).resolve(parseGeoPoint, GeocodingService.Style.LOCALITY);
     }
 
     public String getSoundCloudUrl(){
@@ -180,18 +202,28 @@ public class Post extends ParseObject {
         put (KEY_GENRE_FILTER, genreFilters);
     }
 
-    public static void query(int page, int limit, ParseUser filterForUser, FindCallback callback, List<ParseUser> following){
-        ParseQuery<Post> query = ParseQuery.getQuery(Post.class);
+    public void setUploadId(String uploadId) {
+        put(KEY_UPLOAD_ID, uploadId);
+    }
+
+    public static ParseQuery<Post> query(PageCursor cursor, int limit, ParseUser filterForUser, FindCallback<Post> callback, List<ParseUser> following){
+        ParseQuery<Post> query = PageCursor.apply(feedQuery(filterForUser, following), feedQuery(filterForUser, following), cursor);
         query.include(Post.KEY_USER);
+        query.selectKeys(FEED_KEYS);
+        query.setLimit(limit);
+        PageCursor.order(query);
+        query.findInBackground(callback);
+        return query;
+    }
+
+    private static ParseQuery<Post> feedQuery(ParseUser filterForUser, List<ParseUser> following) {
+        ParseQuery<Post> query = ParseQuery.getQuery(Post.class);
         if(filterForUser != null) {
             query.whereEqualTo(Post.KEY_USER, filterForUser);
         } else{
             query.whereContainedIn(KEY_USER, following);
         }
-        query.setLimit(limit);
-        query.setSkip(page * limit);
-        query.addDescendingOrder(Post.KEY_CREATED_AT);
-        query.findInBackground(callback);
+        return query;
     }
 
 
@@ -0,0 +1,65 @@
+package com.example.patrice_musicapp.models;
+
+import com.parse.ParseQuery;
+import com.parse.ParseUser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//continuation token for users ordered most active first, like GigCursor but descending: the (postCount, objectId)
+//of the last row of a page. the next page asks for rows strictly after it instead of skipping page * limit rows.
+//users without a postCount never match a range, the backfillUserPostStats cloud job gives every user one
+public class PostCountCursor {
+    private static final String KEY_OBJECT_ID = "objectId";
+    private final int postCount;
+    private final String objectId;
+
+    public PostCountCursor(int postCount, String objectId) {
+        this.postCount = postCount;
+        this.objectId = objectId;
+    }
+
+    //returns the cursor for the page after this one, or null if this was the last page
+    public static PostCountCursor next(List<ParseUser> page, int limit) {
+        if (page == null || page.isEmpty() || page.size() < limit) {
+            return null;
+        }
+        ParseUser last = page.get(page.size() - 1);
+        return new PostCountCursor(new User(last).getPostCount(), last.getObjectId());
+    }
+
+    //afterQuery and tieQuery must carry the same constraints; tieQuery breaks ties on postCount by objectId.
+    //the caller adds selectKeys/limit/ordering on the returned query
+    public static ParseQuery<ParseUser> apply(ParseQuery<ParseUser> afterQuery, ParseQuery<ParseUser> tieQuery, PostCountCursor cursor) {
+        if (cursor == null) {
+            return afterQuery;
+        }
+        afterQuery.whereLessThan(User.KEY_POST_COUNT, cursor.postCount);
+        tieQuery.whereEqualTo(User.KEY_POST_COUNT, cursor.postCount);
+        tieQuery.whereGreaterThan(KEY_OBJECT_ID, cursor.objectId);
+
+        List<ParseQuery<ParseUser>> queries = new ArrayList<>();
+        queries.add(afterQuery);
+        queries.add(tieQuery);
+        return ParseQuery.or(queries);
+    }
+
+    //most posts first, objectId breaks ties so the order matches the cursor comparison
+    public static void order(ParseQuery<ParseUser> query) {
+        query.addDescendingOrder(User.KEY_POST_COUNT);
+        query.addAscendingOrder(KEY_OBJECT_ID);
+    }
+
+    public int getPostCount() {
+        return postCount;
+    }
+
+    public String getObjectId() {
+        return objectId;
+    }
+
+    @Override
+    public String toString() {
+        return postCount + ":" + objectId;
+    }
+}
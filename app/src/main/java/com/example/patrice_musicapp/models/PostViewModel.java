@@ -0,0 +1,182 @@
+package com.example.patrice_musicapp.models;
+
+import android.content.Context;
+import android.text.format.DateUtils;
+import android.widget.TextView;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import androidx.appcompat.widget.AppCompatTextView;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
+
+import com.example.patrice_musicapp.R;
+import com.example.patrice_musicapp.utils.GeocodingService;
+import com.example.patrice_musicapp.utils.LikeStore;
+import com.parse.ParseGeoPoint;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+//everything a post row shows that takes work to get (relative time, geocoded place, like state, genres and the
+//laid out caption), computed once off the UI thread when a page arrives so binding a row only assigns values
+public class PostViewModel {
+    private final long version;
+    private final String relativeTime;
+    private final String placeLabel;
+    private final boolean liked;
+    private final int likesCount;
+    private final String likeCountText;
+    private final List<String> genres;
+    private final String caption;
+    private final PrecomputedTextCompat precomputedCaption;
+
+    private PostViewModel(long version, String relativeTime, String placeLabel, boolean liked, int likesCount,
+                          List<String> genres, String caption, PrecomputedTextCompat precomputedCaption) {
+        this.version = version;
+        this.relativeTime = relativeTime;
+        this.placeLabel = placeLabel;
+        this.liked = liked;
+        this.likesCount = likesCount;
+        this.likeCountText = getLikeCountText(likesCount);
+        this.genres = genres;
+        this.caption = caption;
+        this.precomputedCaption = precomputedCaption;
+    }
+
+    //geocodes and lays out text, so keep it off the UI thread. without a context the place is left out,
+    //without params the caption is not precomputed
+    @WorkerThread
+    public static PostViewModel create(Post post, @Nullable Context context, @Nullable PrecomputedTextCompat.Params captionParams) {
+        Date createdAt = post.getCreatedAt();
+        String relativeTime = createdAt == null ? "" : DateUtils.getRelativeTimeSpanString(createdAt.getTime(),
+                System.currentTimeMillis(), DateUtils.SECOND_IN_MILLIS).toString();
+
+        String placeLabel = null;
+        if (context != null && post.getLocation() != null) {
+            try {
+                placeLabel = Post.getStringFromLocation(post.getLocation(), context);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        boolean liked = post.isLiked();
+
+        List<String> genres = post.getGenreFilters();
+        if (genres != null) {
+            genres = Collections.unmodifiableList(new ArrayList<>(genres));
+        }
+
+        String caption = post.getCaption() == null ? "" : post.getCaption();
+        PrecomputedTextCompat precomputedCaption = null;
+        if (captionParams != null) {
+            precomputedCaption = PrecomputedTextCompat.create(caption, captionParams);
+        }
+
+        return new PostViewModel(versionOf(post), relativeTime, placeLabel, liked, post.getLikesCount(),
+                genres, caption, precomputedCaption);
+    }
+
+    //computes models for the posts in items that have none yet or whose post changed since
+    @WorkerThread
+    public static void prepareAll(List<?> items, Map<String, PostViewModel> viewModels, Context context, PrecomputedTextCompat.Params captionParams) {
+        //start every place of the page at once, the models below then wait on lookups already running
+        List<ParseGeoPoint> points = new ArrayList<>();
+        for (Object item : items) {
+            if (item instanceof Post) {
+                points.add(((Post) item).getLocation());
+            }
+        }
+        GeocodingService.get(context).prefetch(points, GeocodingService.Style.LOCALITY);
+        //one query for which of the page's posts the user liked
+        LikeStore.loadForPage(items);
+
+        for (Object item : items) {
+            if (!(item instanceof Post)) {
+                continue;
+            }
+            Post post = (Post) item;
+            if (post.getObjectId() == null) {
+                continue;
+            }
+            PostViewModel viewModel = viewModels.get(post.getObjectId());
+            if (viewModel == null || !viewModel.isCurrent(post)) {
+                viewModels.put(post.getObjectId(), create(post, context, captionParams));
+            }
+        }
+    }
+
+    //layout params of the caption TextView in item_post, read from the same text appearance
+    public static PrecomputedTextCompat.Params captionParams(Context context) {
+        TextView probe = new AppCompatTextView(context);
+        TextViewCompat.setTextAppearance(probe, R.style.TextAppearance_PostCaption);
+        return TextViewCompat.getTextMetricsParams(probe);
+    }
+
+    //the same post after a like or unlike done on this device
+    public PostViewModel withLike(boolean liked, int likesCount) {
+        return new PostViewModel(version, relativeTime, placeLabel, liked, likesCount,
+                genres, caption, precomputedCaption);
+    }
+
+    public boolean isCurrent(Post post) {
+        return version == versionOf(post);
+    }
+
+    private static long versionOf(Post post) {
+        Date updatedAt = post.getUpdatedAt();
+        return updatedAt == null ? 0 : updatedAt.getTime();
+    }
+
+    public static String getLikeCountText(int likesCount) {
+        String addS = "";
+        if (likesCount != 1) {
+            addS = "s";
+        }
+        return String.valueOf(likesCount) + " Like" + addS;
+    }
+
+    //uses the precomputed layout when the TextView lays text out the same way, plain text otherwise
+    public void bindCaption(TextView tvCaption) {
+        if (precomputedCaption != null && precomputedCaption.getParams().equals(TextViewCompat.getTextMetricsParams(tvCaption))) {
+            TextViewCompat.setPrecomputedText(tvCaption, precomputedCaption);
+        } else {
+            tvCaption.setText(caption);
+        }
+    }
+
+    public String getRelativeTime() {
+        return relativeTime;
+    }
+
+    //null when the post has no location or it could not be resolved
+    public String getPlaceLabel() {
+        return placeLabel;
+    }
+
+    public boolean isLiked() {
+        return liked;
+    }
+
+    public int getLikesCount() {
+        return likesCount;
+    }
+
+    public String getLikeCountText() {
+        return likeCountText;
+    }
+
+    //raw genre values, labels come from Genres, null when the post has none
+    public List<String> getGenres() {
+        return genres;
+    }
+
+    public String getCaption() {
+        return caption;
+    }
+}
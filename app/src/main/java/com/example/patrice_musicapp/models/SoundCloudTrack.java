@@ -0,0 +1,47 @@
+package com.example.patrice_musicapp.models;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+//what the track card shows, read from SoundCloud's oEmbed response and kept as the same json on disk
+public class SoundCloudTrack {
+    public static final String KEY_TITLE = "title";
+    public static final String KEY_AUTHOR_NAME = "author_name";
+    public static final String KEY_THUMBNAIL_URL = "thumbnail_url";
+    private final String title;
+    private final String authorName;
+    private final String thumbnailUrl;
+
+    public SoundCloudTrack(String title, String authorName, String thumbnailUrl) {
+        this.title = title;
+        this.authorName = authorName;
+        this.thumbnailUrl = thumbnailUrl;
+    }
+
+    public static SoundCloudTrack fromJson(String json) throws JSONException {
+        JSONObject object = new JSONObject(json);
+        return new SoundCloudTrack(object.optString(KEY_TITLE, null), object.optString(KEY_AUTHOR_NAME, null),
+                object.optString(KEY_THUMBNAIL_URL, null));
+    }
+
+    public String toJson() throws JSONException {
+        JSONObject object = new JSONObject();
+        object.put(KEY_TITLE, title);
+        object.put(KEY_AUTHOR_NAME, authorName);
+        object.put(KEY_THUMBNAIL_URL, thumbnailUrl);
+        return object.toString();
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getAuthorName() {
+        return authorName;
+    }
+
+    //artwork of the track, null when it has none
+    public String getThumbnailUrl() {
+        return thumbnailUrl;
+    }
+}
@@ -11,6 +11,9 @@ import com.parse.ParseGeoPoint;
 import com.parse.ParseQuery;
 import com.parse.ParseUser;
 
+import com.example.patrice_musicapp.utils.FollowingCache;
+import com.example.patrice_musicapp.utils.GeocodingService;
+
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -18,6 +21,7 @@ import org.parceler.Parcel;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 
@@ -28,6 +32,8 @@ public class User {
     public static final String KEY_PROFILE_IMAGE = "profileImage";
     public static final String KEY_BIO = "bio";
     public static final String KEY_POST_COUNT = "postCount";
+    //when the user last posted, set by UploadWorker with the postCount increment
+    public static final String KEY_LAST_POST_AT = "lastPostAt";
     public static final String KEY_LOCATION = "location";
     public static final String KEY_FOLLOWING = "following";
     public static final String KEY_GENRE = "genre";
@@ -35,6 +41,9 @@ public class User {
     public static final String KEY_HOUR_RATE = "hourRate";
     public static final String KEY_SOLO_ARTIST = "soloArtist";
     public static final String KEY_NAME = "name";
+    //lowercase copies of username and name, indexed for the prefix queries of SearchService
+    public static final String KEY_USERNAME_LOWER = "usernameLower";
+    public static final String KEY_NAME_LOWER = "nameLower";
     public static final String KEY_USERNAME = "username";
     public static final String KEY_YOUTUBE = "youtube";
     public static final String KEY_IG_USERNAME = "igUsername";
@@ -56,7 +65,8 @@ public class User {
     public String getUsername() { return parseUser.getUsername(); }
 
     public void setUsername(String username) {
-        parseUser.setUsername(username);}
+        parseUser.setUsername(username);
+        parseUser.put(KEY_USERNAME_LOWER, username.toLowerCase(Locale.ROOT));}
 
     public String getEmail() { return parseUser.getEmail(); }
 
@@ -83,7 +93,22 @@ public class User {
         return parseUser.getString(KEY_NAME);
     }
 
-    public void setName(String name) { parseUser.put(KEY_NAME, name);}
+    public void setName(String name) {
+        parseUser.put(KEY_NAME, name);
+        parseUser.put(KEY_NAME_LOWER, name.toLowerCase(Locale.ROOT));}
+
+    //users from before the search fields get them the next time they open the app
+    public static void backfillSearchFields(ParseUser parseUser) {
+        if (parseUser == null || parseUser.getString(KEY_USERNAME_LOWER) != null) {
+            return;
+        }
+        User user = new User(parseUser);
+        user.setUsername(parseUser.getUsername());
+        if (user.getName() != null) {
+            user.setName(user.getName());
+        }
+        parseUser.saveEventually();
+    }
 
     public int getPostCount() {
         return (int) parseUser.getNumber(KEY_POST_COUNT);
@@ -93,6 +118,15 @@ public class User {
         parseUser.put(KEY_POST_COUNT, postCount);
     }
 
+    //null for users who have not posted since the field was added
+    public Date getLastPostAt() {
+        return parseUser.getDate(KEY_LAST_POST_AT);
+    }
+
+    public void setLastPostAt(Date lastPostAt) {
+        parseUser.put(KEY_LAST_POST_AT, lastPostAt);
+    }
+
     public ParseGeoPoint getLocation() {
         return parseUser.getParseGeoPoint(KEY_LOCATION);
     }
@@ -110,11 +144,9 @@ public class User {
 
     }
 
+    //blocks on a cache miss, so only call it off the UI thread
     public static String getStringFromLocation(ParseGeoPoint parseGeoPoint, Context context) throws IOException {
-        Geocoder geocoder = new Geocoder(context, Locale.US);
-        List<Address> addresses = geocoder.getFromLocation(parseGeoPoint.getLatitude(), parseGeoPoint.getLongitude(), 5);
-        Address address = addresses.get(0); //get the first address for right now
-        return address.getLocality();
+        return GeocodingService.get(context).resolve(parseGeoPoint, GeocodingService.Style.LOCALITY);
     }
 
 
@@ -128,6 +160,7 @@ public class User {
     //takes in parameters of the person who the current user just followed
     public void addFollowing(User user){
         ParseUser.getCurrentUser().addUnique(KEY_FOLLOWING, user.getParseUser());
+        FollowingCache.invalidate();
     }
 
     public void deleteFollowing(User user) throws JSONException {
@@ -144,6 +177,7 @@ public class User {
                 }
             }
         }
+        FollowingCache.invalidate();
 
     }
 
@@ -236,6 +270,32 @@ public class User {
 
     }
 
+    //what the musician asks per hour for a gig, 0 if they haven't said
+    public double getHourRate() {
+        return parseUser.getDouble(KEY_HOUR_RATE);
+    }
+
+    public void setHourRate(double hourRate) {
+        parseUser.put(KEY_HOUR_RATE, hourRate);
+    }
+
+    //takes the musician out of the gig search, which only returns users with a rate
+    public void clearHourRate() {
+        parseUser.remove(KEY_HOUR_RATE);
+    }
+
+    public boolean hasHourRate() {
+        return parseUser.has(KEY_HOUR_RATE);
+    }
+
+    public boolean isSoloArtist() {
+        return parseUser.getBoolean(KEY_SOLO_ARTIST);
+    }
+
+    public void setSoloArtist(boolean soloArtist) {
+        parseUser.put(KEY_SOLO_ARTIST, soloArtist);
+    }
+
 
     public static void queryUsers(int limit, ParseUser filterForUser, FindCallback callback){
         ParseQuery<ParseUser> query = ParseUser.getQuery();
@@ -0,0 +1,34 @@
+package com.example.patrice_musicapp.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+//shared threads for work that should stay off the UI thread, e.g. precomputing what a row shows
+public class AppExecutors {
+    private static final ExecutorService BACKGROUND = Executors.newFixedThreadPool(2);
+    //long-running syncs, e.g. SearchIndex pulling every user on first start, one at a time
+    private static final ExecutorService SYNC = Executors.newSingleThreadExecutor();
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+    private static final Executor MAIN = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            MAIN_HANDLER.post(command);
+        }
+    };
+
+    public static ExecutorService background() {
+        return BACKGROUND;
+    }
+
+    public static ExecutorService sync() {
+        return SYNC;
+    }
+
+    public static Executor mainThread() {
+        return MAIN;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.patrice_musicapp.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.patrice_musicapp.models.Genres;
+import com.example.patrice_musicapp.models.Instruments;
+import com.example.patrice_musicapp.models.User;
+import com.parse.FindCallback;
+import com.parse.ParseException;
+import com.parse.ParseGeoPoint;
+import com.parse.ParseQuery;
+import com.parse.ParseUser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//"build a band" for the current user: one query for the musicians near them who play any instrument of the lineup,
+//then BandMatcher in the background for the best lineups in the genre asked for. a member's affinity is how alike
+//their genres are to it, so a swing drummer still fits a jazz band
+public class BandFinder {
+    public static final String TAG = BandFinder.class.getSimpleName();
+    private static final int MAX_CANDIDATES = 1000;
+    private static final List<String> MEMBER_KEYS = Arrays.asList(User.KEY_USERNAME, User.KEY_NAME, User.KEY_PROFILE_IMAGE,
+            User.KEY_LOCATION, User.KEY_INSTRUMENT, User.KEY_GENRE);
+
+    public interface Callback {
+        //on the UI thread, best first. members holds the user behind every member id
+        void onBands(List<BandMatcher.Band> bands, Map<String, ParseUser> members);
+    }
+
+    public static ParseQuery<ParseUser> find(Context context, final List<Instruments> lineup, final Genres genre, final int count,
+                                             final Callback callback) {
+        final GenreAffinity genreAffinity = GenreAffinityStore.get(context).getAffinity();
+        List<String> instruments = new ArrayList<>();
+        for (Instruments instrument : lineup) {
+            instruments.add(instrument.name());
+        }
+        ParseUser currentUser = ParseUser.getCurrentUser();
+        ParseQuery<ParseUser> query = ParseUser.getQuery();
+        query.whereContainedIn(User.KEY_INSTRUMENT, instruments);
+        ParseGeoPoint location = new User(currentUser).getLocation();
+        if (location != null) {
+            query.whereWithinKilometers(User.KEY_LOCATION, location, NearbyUsers.MAX_KILOMETERS);
+        }
+        query.whereNotEqualTo("objectId", currentUser.getObjectId());
+        query.selectKeys(MEMBER_KEYS);
+        query.setLimit(MAX_CANDIDATES);
+        query.findInBackground(new FindCallback<ParseUser>() {
+            @Override
+            public void done(final List<ParseUser> users, ParseException e) {
+                if (e != null) {
+                    Log.e(TAG, "Issue with finding band members", e);
+                    return;
+                }
+                AppExecutors.background().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        final Map<String, ParseUser> byId = new HashMap<>();
+                        List<BandMatcher.Member> members = new ArrayList<>();
+                        long genreBit = 1L << genre.ordinal();
+                        for (ParseUser user : users) {
+                            User member = new User(user);
+                            double affinity = genreAffinity.similarity(genreBit, Genres.maskOf(member.getGenres()));
+                            members.add(new BandMatcher.Member(user.getObjectId(), Instruments.maskOf(member.getInstruments()), affinity));
+                            byId.put(user.getObjectId(), user);
+                        }
+                        int[] slots = new int[lineup.size()];
+                        for (int i = 0; i < slots.length; i++) {
+                            slots[i] = lineup.get(i).ordinal();
+                        }
+                        final List<BandMatcher.Band> bands = BandMatcher.match(slots, members, count);
+                        AppExecutors.mainThread().execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                callback.onBands(bands, byId);
+                            }
+                        });
+                    }
+                });
+            }
+        });
+        return query;
+    }
+}
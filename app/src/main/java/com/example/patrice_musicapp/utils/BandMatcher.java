@@ -0,0 +1,183 @@
+package com.example.patrice_musicapp.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+//"build a band": the best lineups of distinct musicians that fill every slot, e.g. drums, bass, keys and vocals,
+//scored by the sum of each member's genre affinity. plain java like RecommendationEngine.
+//each slot only keeps its slots - 1 + n best players, since a lineup using anyone below that could swap them for
+//one of at least n better unused players, so the pruning never loses one of the n best. the rest is a depth
+//first search, the slot with the fewest players first, that drops a branch once even the best players for the
+//slots still open can't beat the worst lineup kept
+public class BandMatcher {
+
+    //one musician. instruments is a mask from Instruments.maskOf, affinity how well they fit the genre asked for
+    public static class Member {
+        final String id;
+        final long instruments;
+        final double affinity;
+
+        public Member(String id, long instruments, double affinity) {
+            this.id = id;
+            this.instruments = instruments;
+            this.affinity = affinity;
+        }
+
+        public String getId() {
+            return id;
+        }
+    }
+
+    public static class Band {
+        private final String[] memberIds;
+        private final double score;
+
+        private Band(String[] memberIds, double score) {
+            this.memberIds = memberIds;
+            this.score = score;
+        }
+
+        //by slot, in the order of the lineup asked for
+        public List<String> getMemberIds() {
+            return Collections.unmodifiableList(Arrays.asList(memberIds));
+        }
+
+        public double getScore() {
+            return score;
+        }
+    }
+
+    private static final Comparator<Band> WORST_FIRST = new Comparator<Band>() {
+        @Override
+        public int compare(Band a, Band b) {
+            return Double.compare(a.score, b.score);
+        }
+    };
+
+    //the search state, one per call
+    private final int[] slots;
+    private final int n;
+    //players[slot] the members who play it, best affinity first
+    private final Member[][] players;
+    //the order the slots are filled in
+    private final int[] order;
+    //best[i] the most the slots from order[i] on can still add
+    private final double[] best;
+    private final Set<String> picked = new HashSet<>();
+    private final Member[] lineup;
+    private final PriorityQueue<Band> kept;
+    //sorted member ids of every kept lineup, the same musicians in other slots are the same band
+    private final Set<String> keys = new HashSet<>();
+
+    private BandMatcher(int[] slots, List<Member> members, int n) {
+        this.slots = slots;
+        this.n = n;
+        this.players = new Member[slots.length][];
+        this.lineup = new Member[slots.length];
+        this.kept = new PriorityQueue<>(n + 1, WORST_FIRST);
+        int keep = slots.length - 1 + n;
+        for (int s = 0; s < slots.length; s++) {
+            long bit = 1L << slots[s];
+            TopK<Member> top = new TopK<>(keep, new Comparator<Member>() {
+                @Override
+                public int compare(Member a, Member b) {
+                    int byAffinity = Double.compare(b.affinity, a.affinity);
+                    return byAffinity != 0 ? byAffinity : a.id.compareTo(b.id);
+                }
+            });
+            for (Member member : members) {
+                if ((member.instruments & bit) != 0) {
+                    top.offer(member);
+                }
+            }
+            players[s] = top.best().toArray(new Member[0]);
+        }
+
+        Integer[] bySize = new Integer[slots.length];
+        for (int s = 0; s < slots.length; s++) {
+            bySize[s] = s;
+        }
+        Arrays.sort(bySize, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return players[a].length - players[b].length;
+            }
+        });
+        order = new int[slots.length];
+        best = new double[slots.length + 1];
+        for (int i = slots.length - 1; i >= 0; i--) {
+            order[i] = bySize[i];
+            Member[] options = players[order[i]];
+            best[i] = best[i + 1] + (options.length > 0 ? options[0].affinity : 0);
+        }
+    }
+
+    //the n best lineups for slots, given as Instruments ordinals, best first. an instrument may be asked for more
+    //than once, and a musician who plays several still fills only one slot
+    public static List<Band> match(int[] slots, List<Member> members, int n) {
+        if (n <= 0 || slots.length == 0) {
+            return new ArrayList<>();
+        }
+        BandMatcher matcher = new BandMatcher(slots, members, n);
+        for (Member[] options : matcher.players) {
+            if (options.length == 0) {
+                //nobody plays one of the slots
+                return new ArrayList<>();
+            }
+        }
+        matcher.search(0, 0);
+        List<Band> bands = new ArrayList<>(matcher.kept);
+        Collections.sort(bands, Collections.reverseOrder(WORST_FIRST));
+        return bands;
+    }
+
+    private void search(int depth, double score) {
+        if (depth == slots.length) {
+            keep(score);
+            return;
+        }
+        int slot = order[depth];
+        for (Member member : players[slot]) {
+            //players are best first, so once one can't make it none after it can
+            if (kept.size() == n && score + member.affinity + best[depth + 1] <= kept.peek().score) {
+                return;
+            }
+            if (!picked.add(member.id)) {
+                continue;
+            }
+            lineup[slot] = member;
+            search(depth + 1, score + member.affinity);
+            picked.remove(member.id);
+        }
+    }
+
+    private void keep(double score) {
+        String[] ids = new String[slots.length];
+        for (int s = 0; s < slots.length; s++) {
+            ids[s] = lineup[s].id;
+        }
+        String[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        String key = Arrays.toString(sorted);
+        if (keys.contains(key)) {
+            return;
+        }
+        if (kept.size() == n) {
+            if (score <= kept.peek().score) {
+                return;
+            }
+            Band dropped = kept.poll();
+            String[] droppedIds = dropped.memberIds.clone();
+            Arrays.sort(droppedIds);
+            keys.remove(Arrays.toString(droppedIds));
+        }
+        kept.add(new Band(ids, score));
+        keys.add(key);
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.patrice_musicapp.utils;
+
+import com.example.patrice_musicapp.models.Genres;
+import com.example.patrice_musicapp.models.Instruments;
+import com.example.patrice_musicapp.models.User;
+import com.parse.ParseUser;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+//the users discover suggests, ranked by genre, instruments and post count in one background pass when they load so
+//switching the sort is instant. every user's genres and instruments are read once into bitmasks. shared instruments
+//are counted with bitCount, genres are weighted by GenreAffinity so related ones count too. the proximity sort
+//comes from its own geo query, see NearbyUsers
+public class DiscoverRanking {
+    //users shown per sort
+    public static final int TOP = 10;
+
+    //FOR_YOU, PROXIMITY and GIGS are not ranked here, see Recommendations, NearbyUsers and GigSearch
+    public enum Sort { FOR_YOU, GENRE, INSTRUMENTS, PROXIMITY, POST_COUNT, GIGS }
+
+    public interface Callback {
+        //on the UI thread
+        void onRanked(DiscoverRanking ranking);
+    }
+
+    //what the sorts compare, read from the user once
+    private static class Profile {
+        final ParseUser user;
+        //position in the loaded list, which comes by post count, so ties keep that order
+        final int index;
+        final double genreSimilarity;
+        final int sharedInstruments;
+        final int postCount;
+
+        Profile(ParseUser user, int index, double genreSimilarity, int sharedInstruments, int postCount) {
+            this.user = user;
+            this.index = index;
+            this.genreSimilarity = genreSimilarity;
+            this.sharedInstruments = sharedInstruments;
+            this.postCount = postCount;
+        }
+    }
+
+    private static final Comparator<Profile> BY_GENRE = new Comparator<Profile>() {
+        @Override
+        public int compare(Profile a, Profile b) {
+            int bySimilarity = Double.compare(b.genreSimilarity, a.genreSimilarity);
+            return bySimilarity != 0 ? bySimilarity : a.index - b.index;
+        }
+    };
+
+    private static final Comparator<Profile> BY_INSTRUMENTS = new Comparator<Profile>() {
+        @Override
+        public int compare(Profile a, Profile b) {
+            return a.sharedInstruments != b.sharedInstruments ? b.sharedInstruments - a.sharedInstruments : a.index - b.index;
+        }
+    };
+
+    private static final Comparator<Profile> BY_POST_COUNT = new Comparator<Profile>() {
+        @Override
+        public int compare(Profile a, Profile b) {
+            return a.postCount != b.postCount ? b.postCount - a.postCount : a.index - b.index;
+        }
+    };
+
+    private final Map<Sort, List<ParseUser>> tops;
+
+    private DiscoverRanking(Map<Sort, List<ParseUser>> tops) {
+        this.tops = tops;
+    }
+
+    //the TOP users for sort, best first, empty for FOR_YOU and PROXIMITY
+    public List<ParseUser> get(Sort sort) {
+        List<ParseUser> top = tops.get(sort);
+        return top != null ? new ArrayList<>(top) : new ArrayList<ParseUser>();
+    }
+
+    public static void rankInBackground(List<ParseUser> users, final ParseUser currentUser, final GenreAffinity genreAffinity,
+                                        final Callback callback) {
+        final List<ParseUser> snapshot = new ArrayList<>(users);
+        AppExecutors.background().execute(new Runnable() {
+            @Override
+            public void run() {
+                final DiscoverRanking ranking = rank(snapshot, currentUser, genreAffinity);
+                AppExecutors.mainThread().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onRanked(ranking);
+                    }
+                });
+            }
+        });
+    }
+
+    static DiscoverRanking rank(List<ParseUser> users, ParseUser currentUser, GenreAffinity genreAffinity) {
+        long genres = 0;
+        long instruments = 0;
+        if (currentUser != null) {
+            User me = new User(currentUser);
+            genres = Genres.maskOf(me.getGenres());
+            instruments = Instruments.maskOf(me.getInstruments());
+        }
+
+        TopK<Profile> byGenre = new TopK<>(TOP, BY_GENRE);
+        TopK<Profile> byInstruments = new TopK<>(TOP, BY_INSTRUMENTS);
+        TopK<Profile> byPostCount = new TopK<>(TOP, BY_POST_COUNT);
+        for (int i = 0; i < users.size(); i++) {
+            ParseUser parseUser = users.get(i);
+            User user = new User(parseUser);
+            Profile profile = new Profile(parseUser, i,
+                    genreAffinity.similarity(genres, Genres.maskOf(user.getGenres())),
+                    Long.bitCount(instruments & Instruments.maskOf(user.getInstruments())),
+                    parseUser.getInt(User.KEY_POST_COUNT));
+            byGenre.offer(profile);
+            byInstruments.offer(profile);
+            byPostCount.offer(profile);
+        }
+
+        Map<Sort, List<ParseUser>> tops = new EnumMap<>(Sort.class);
+        tops.put(Sort.GENRE, usersOf(byGenre.best()));
+        tops.put(Sort.INSTRUMENTS, usersOf(byInstruments.best()));
+        tops.put(Sort.POST_COUNT, usersOf(byPostCount.best()));
+        return new DiscoverRanking(tops);
+    }
+
+    private static List<ParseUser> usersOf(List<Profile> profiles) {
+        List<ParseUser> users = new ArrayList<>(profiles.size());
+        for (Profile profile : profiles) {
+            users.add(profile.user);
+        }
+        return users;
+    }
+}
@@ -1,22 +1,36 @@
 package com.example.patrice_musicapp.utils;
 
+import android.os.SystemClock;
+
 import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.recyclerview.widget.StaggeredGridLayoutManager;
 
+import com.example.patrice_musicapp.models.PageCursor;
+
 public abstract class EndlessRecyclerViewScrollListener extends RecyclerView.OnScrollListener {
     // The minimum amount of items to have below your current scroll position
     // before loading more.
     private int visibleThreshold = 5;
-    // The current offset index of data you have loaded
-    private int currentPage = 0;
+    // The continuation token of the next page, null when there is nothing more to load
+    private PageCursor nextCursor;
     // The total number of items in the dataset after the last load
     private int previousTotalItemCount = 0;
     // True if we are still waiting for the last set of data to load.
     private boolean loading = true;
-    // Sets the starting page index
-    private int startingPageIndex = 0;
+    // The cursor handed to the last onLoadMore, until its page arrives or the load is cancelled
+    private PageCursor requestedCursor;
+    // How far ahead of the scroll position the next page is asked for, in seconds of scrolling.
+    // Roughly one page round trip, so a fling reaches the end of the list about when the page lands.
+    private static final float LOOKAHEAD_SECONDS = 1.5f;
+    // Upper bound for the adaptive threshold, in multiples of visibleThreshold
+    private static final int MAX_THRESHOLD_FACTOR = 6;
+    // Scroll speed in items per second, smoothed over the last few onScrolled calls
+    private float itemsPerSecond = 0;
+    private int lastPosition = RecyclerView.NO_POSITION;
+    private long lastScrollTime = 0;
+    private int lastDirection = 0;
 
     RecyclerView.LayoutManager mLayoutManager;
 
@@ -68,39 +82,100 @@ public abstract class EndlessRecyclerViewScrollListener extends RecyclerView.OnS
         // If the total item count is zero and the previous isn't, assume the
         // list is invalidated and should be reset back to initial state
         if (totalItemCount < previousTotalItemCount) {
-            this.currentPage = this.startingPageIndex;
             this.previousTotalItemCount = totalItemCount;
             if (totalItemCount == 0) {
                 this.loading = true;
             }
         }
         // If it’s still loading, we check to see if the dataset count has
-        // changed, if so we conclude it has finished loading and update the current page
-        // number and total item count.
+        // changed, if so we conclude it has finished loading and update the total item count.
         if (loading && (totalItemCount > previousTotalItemCount)) {
             loading = false;
             previousTotalItemCount = totalItemCount;
         }
 
+        // A page asked for early is dropped when the user turns back, it is asked for again if they turn around once more
+        int direction = Integer.signum(dy != 0 ? dy : dx);
+        if (direction != 0) {
+            if (direction < 0 && lastDirection > 0) {
+                cancelLoad();
+            }
+            lastDirection = direction;
+        }
+        trackVelocity(lastVisibleItemPosition);
+
         // If it isn’t currently loading, we check to see if we have breached
         // the visibleThreshold and need to reload more data.
         // If we do need to reload some more data, we execute onLoadMore to fetch the data.
         // threshold should reflect how many total columns there are too
-        if (!loading && (lastVisibleItemPosition + visibleThreshold) > totalItemCount) {
-            currentPage++;
-            onLoadMore(currentPage, totalItemCount, view);
+        // There is nothing to ask for until the last page handed us a cursor.
+        // The faster the scroll, the earlier we ask.
+        if (!loading && nextCursor != null && lastDirection >= 0 && (lastVisibleItemPosition + getThreshold()) > totalItemCount) {
+            requestedCursor = nextCursor;
             loading = true;
+            onLoadMore(nextCursor, totalItemCount, view);
+        }
+    }
+
+    @Override
+    public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+        if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+            itemsPerSecond = 0;
+            lastScrollTime = 0;
+        }
+    }
+
+    private void trackVelocity(int lastVisibleItemPosition) {
+        long now = SystemClock.uptimeMillis();
+        if (lastScrollTime > 0 && lastPosition != RecyclerView.NO_POSITION && now > lastScrollTime) {
+            float instant = Math.abs(lastVisibleItemPosition - lastPosition) * 1000f / (now - lastScrollTime);
+            itemsPerSecond = 0.8f * itemsPerSecond + 0.2f * instant;
         }
+        lastPosition = lastVisibleItemPosition;
+        lastScrollTime = now;
+    }
+
+    // Items left below the viewport when the next page is requested
+    public int getThreshold() {
+        int adaptive = (int) Math.ceil(itemsPerSecond * LOOKAHEAD_SECONDS);
+        return Math.max(visibleThreshold, Math.min(adaptive, visibleThreshold * MAX_THRESHOLD_FACTOR));
+    }
+
+    // True while the page for this cursor is still wanted, so a late answer for a cancelled load can be ignored
+    public boolean isRequested(PageCursor cursor) {
+        return cursor != null && cursor == requestedCursor;
+    }
+
+    // Drops the page being loaded, e.g. when the user reverses direction or leaves the screen
+    public void cancelLoad() {
+        if (requestedCursor == null) {
+            return;
+        }
+        PageCursor cancelled = requestedCursor;
+        requestedCursor = null;
+        loading = false;
+        onCancelLoad(cancelled);
+    }
+
+    // Override to cancel the query started by onLoadMore
+    public void onCancelLoad(PageCursor cursor) {
+    }
+
+    // Call this with PageCursor.next(page, limit) every time a page arrives
+    public void setNextCursor(PageCursor nextCursor) {
+        this.nextCursor = nextCursor;
+        this.requestedCursor = null;
     }
 
     // Call this method whenever performing new searches
     public void resetState() {
-        this.currentPage = this.startingPageIndex;
+        this.nextCursor = null;
+        this.requestedCursor = null;
         this.previousTotalItemCount = 0;
         this.loading = true;
     }
 
-    // Defines the process for actually loading more data based on page
-    public abstract void onLoadMore(int page, int totalItemsCount, RecyclerView view);
+    // Defines the process for actually loading more data after the given cursor
+    public abstract void onLoadMore(PageCursor cursor, int totalItemsCount, RecyclerView view);
 
 }
\ No newline at end of file
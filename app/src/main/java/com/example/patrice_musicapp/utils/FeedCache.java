@@ -0,0 +1,164 @@
+package com.example.patrice_musicapp.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.example.patrice_musicapp.models.PageCursor;
+import com.parse.DeleteCallback;
+import com.parse.FindCallback;
+import com.parse.ParseException;
+import com.parse.ParseObject;
+import com.parse.ParseQuery;
+import com.parse.ParseUser;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+//disk-backed page cache on top of the parse local datastore. every page is pinned under its own label
+//(scope, user and page cursor) so the last known feed can be shown on a cold start before the network answers.
+//the labels are kept in LRU order in shared preferences together with the time they were saved
+public class FeedCache {
+    public static final String TAG = FeedCache.class.getSimpleName();
+    private static final String PREFS_NAME = "feed_cache";
+    private static final String KEY_INDEX = "index";
+    private static int maxPages = 30;
+    private static long staleAfterMillis = TimeUnit.MINUTES.toMillis(5);
+    private static SharedPreferences prefs;
+    //label -> time it was saved, in access order so the first entry is the least recently used
+    private static LinkedHashMap<String, Long> index = new LinkedHashMap<>(16, 0.75f, true);
+
+    //the network side of a page, e.g. Post.query with the same cursor the cache key was built from
+    public interface NetworkPage<T extends ParseObject> {
+        ParseQuery<T> find(FindCallback<T> callback);
+    }
+
+    public static synchronized void initialize(Context context) {
+        prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        index.clear();
+        try {
+            JSONArray entries = new JSONArray(prefs.getString(KEY_INDEX, "[]"));
+            for (int i = 0; i < entries.length(); i++) {
+                JSONArray entry = entries.getJSONArray(i);
+                index.put(entry.getString(0), entry.getLong(1));
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Issue with reading the feed cache index", e);
+        }
+    }
+
+    public static synchronized void setMaxPages(int pages) {
+        maxPages = pages;
+        evict();
+    }
+
+    public static synchronized void setStaleAfter(long duration, TimeUnit unit) {
+        staleAfterMillis = unit.toMillis(duration);
+    }
+
+    public static String key(String scope, ParseUser user, PageCursor cursor) {
+        String userId = user == null ? "all" : user.getObjectId();
+        String page = cursor == null ? "head" : cursor.toString();
+        return scope + ":" + userId + ":" + page;
+    }
+
+    //calls back with the cached page when there is one. a fresh page stops there; a stale page is refreshed over the
+    //network and the callback runs again with the new rows, but only if staleWhileRevalidate is set (the head of a list),
+    //otherwise a stale page is skipped so appended pages are never delivered twice
+    public static <T extends ParseObject> void loadPage(Class<T> clazz, String includeKey, final String key, final boolean staleWhileRevalidate,
+                                                        final NetworkPage<T> network, final FindCallback<T> callback) {
+        if (!isCached(key)) {
+            refresh(key, network, callback);
+            return;
+        }
+        ParseQuery<T> query = ParseQuery.getQuery(clazz);
+        query.fromPin(key);
+        query.include(includeKey);
+        PageCursor.order(query);
+        query.findInBackground(new FindCallback<T>() {
+            @Override
+            public void done(List<T> objects, ParseException e) {
+                if (e != null) {
+                    Log.e(TAG, "Issue with reading cached page " + key, e);
+                }
+                boolean hit = e == null && !objects.isEmpty();
+                boolean stale = isStale(key);
+                if (hit && (!stale || staleWhileRevalidate)) {
+                    callback.done(objects, null);
+                }
+                if (!hit || stale) {
+                    refresh(key, network, callback);
+                }
+            }
+        });
+    }
+
+    //skips the cache, e.g. for swipe to refresh, and stores what comes back
+    public static <T extends ParseObject> ParseQuery<T> refresh(final String key, NetworkPage<T> network, final FindCallback<T> callback) {
+        return network.find(new FindCallback<T>() {
+            @Override
+            public void done(List<T> objects, ParseException e) {
+                if (e == null) {
+                    save(key, objects);
+                }
+                callback.done(objects, e);
+            }
+        });
+    }
+
+    public static synchronized boolean isCached(String key) {
+        return index.containsKey(key);
+    }
+
+    public static synchronized boolean isStale(String key) {
+        Long savedAt = index.get(key);
+        return savedAt == null || System.currentTimeMillis() - savedAt > staleAfterMillis;
+    }
+
+    public static <T extends ParseObject> void save(final String key, final List<T> objects) {
+        synchronized (FeedCache.class) {
+            index.put(key, System.currentTimeMillis());
+            evict();
+        }
+        ParseObject.unpinAllInBackground(key, new DeleteCallback() {
+            @Override
+            public void done(ParseException e) {
+                ParseObject.pinAllInBackground(key, objects);
+            }
+        });
+    }
+
+    private static void evict() {
+        List<String> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, Long>> iterator = index.entrySet().iterator();
+        while (index.size() - evicted.size() > maxPages && iterator.hasNext()) {
+            evicted.add(iterator.next().getKey());
+        }
+        for (String label : evicted) {
+            index.remove(label);
+            ParseObject.unpinAllInBackground(label);
+        }
+        persist();
+    }
+
+    private static void persist() {
+        if (prefs == null) {
+            return;
+        }
+        JSONArray entries = new JSONArray();
+        for (Map.Entry<String, Long> entry : index.entrySet()) {
+            JSONArray pair = new JSONArray();
+            pair.put(entry.getKey());
+            pair.put(entry.getValue().longValue());
+            entries.put(pair);
+        }
+        prefs.edit().putString(KEY_INDEX, entries.toString()).apply();
+    }
+}
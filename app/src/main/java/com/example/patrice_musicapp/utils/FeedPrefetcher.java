@@ -0,0 +1,110 @@
+package com.example.patrice_musicapp.utils;
+
+import android.widget.ImageView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.fragment.app.Fragment;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.ListPreloader;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.integration.recyclerview.RecyclerViewPreloader;
+import com.bumptech.glide.util.ViewPreloadSizeProvider;
+import com.example.patrice_musicapp.R;
+import com.example.patrice_musicapp.models.ParseImage;
+import com.example.patrice_musicapp.models.Post;
+import com.parse.ParseFile;
+
+import java.util.Collections;
+import java.util.List;
+
+//warms glide's caches for the post images and avatars of the next few rows while the feed scrolls.
+//sizes are taken from the first bound row and the requests are built exactly like PostViewHolder.bind builds them,
+//so the row finds the bitmap in the memory cache. glide's preloader drops its pending requests when the
+//scroll direction reverses, and the requests belong to the fragment so they stop when it does
+public class FeedPrefetcher {
+    private static final int PRELOAD_POSTS = 6;
+    private final RequestManager glide;
+    private final List<Post> posts;
+    private final String defaultProfilePic;
+    private final ViewPreloadSizeProvider<Post> imageSizes = new ViewPreloadSizeProvider<>();
+    private final ViewPreloadSizeProvider<Post> avatarSizes = new ViewPreloadSizeProvider<>();
+    private final RecyclerViewPreloader<Post> imagePreloader;
+    private final RecyclerViewPreloader<Post> avatarPreloader;
+
+    //posts is the adapter's backing list, so preload positions line up with adapter positions
+    public FeedPrefetcher(Fragment fragment, List<Post> posts) {
+        this.glide = Glide.with(fragment);
+        this.posts = posts;
+        this.defaultProfilePic = fragment.getResources().getString(R.string.DEFAULT_PROFILE_PIC);
+        imagePreloader = new RecyclerViewPreloader<>(glide, new ImageModels(), imageSizes, PRELOAD_POSTS);
+        avatarPreloader = new RecyclerViewPreloader<>(glide, new AvatarModels(), avatarSizes, PRELOAD_POSTS);
+    }
+
+    public void attach(RecyclerView recyclerView) {
+        recyclerView.addOnScrollListener(imagePreloader);
+        recyclerView.addOnScrollListener(avatarPreloader);
+    }
+
+    public void detach(RecyclerView recyclerView) {
+        recyclerView.removeOnScrollListener(imagePreloader);
+        recyclerView.removeOnScrollListener(avatarPreloader);
+    }
+
+    //called for every new row, only the first one is measured. ivPostImage is null for rows without an image
+    public void watch(ImageView ivPostImage, ImageView ivProfilePic) {
+        if (ivPostImage != null) {
+            imageSizes.setView(ivPostImage);
+        }
+        avatarSizes.setView(ivProfilePic);
+    }
+
+    private Post postAt(int position) {
+        if (position < 0 || position >= posts.size()) {
+            return null;
+        }
+        return posts.get(position);
+    }
+
+    private class ImageModels implements ListPreloader.PreloadModelProvider<Post> {
+        @NonNull
+        @Override
+        public List<Post> getPreloadItems(int position) {
+            Post post = postAt(position);
+            if (post == null || post.getImage() == null) {
+                return Collections.emptyList();
+            }
+            return Collections.singletonList(post);
+        }
+
+        @Nullable
+        @Override
+        public RequestBuilder<?> getPreloadRequestBuilder(@NonNull Post post) {
+            //ivPostImage is centerCrop, which glide applies as an optional center crop when loading into it
+            return glide.load(ParseImage.of(post)).optionalCenterCrop();
+        }
+    }
+
+    private class AvatarModels implements ListPreloader.PreloadModelProvider<Post> {
+        @NonNull
+        @Override
+        public List<Post> getPreloadItems(int position) {
+            Post post = postAt(position);
+            if (post == null || post.getUser() == null) {
+                return Collections.emptyList();
+            }
+            return Collections.singletonList(post);
+        }
+
+        @Nullable
+        @Override
+        public RequestBuilder<?> getPreloadRequestBuilder(@NonNull Post post) {
+            ParseFile profileImage = post.getUser().getParseFile("profileImage");
+            String url = profileImage != null ? profileImage.getUrl() : defaultProfilePic;
+            return glide.load(url).circleCrop();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.patrice_musicapp.utils;
+
+import com.example.patrice_musicapp.models.User;
+import com.parse.ParseObject;
+import com.parse.ParseUser;
+
+import org.json.JSONException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+//pointer-only ParseUsers for the current user and everyone they follow, built from the locally held
+//following array so the feed query never has to fetch the followed accounts first.
+//kept for the session and rebuilt only after a follow or unfollow
+public class FollowingCache {
+    private static List<ParseUser> following;
+    private static String cachedForUserId;
+
+    public static synchronized List<ParseUser> get() throws JSONException {
+        ParseUser currentUser = ParseUser.getCurrentUser();
+        if (following == null || !currentUser.getObjectId().equals(cachedForUserId)) {
+            List<ParseUser> pointers = new ArrayList<>();
+            pointers.add(currentUser);
+            for (String objectId : new User(currentUser).getFollowingIds()) {
+                pointers.add(ParseObject.createWithoutData(ParseUser.class, objectId));
+            }
+            following = Collections.unmodifiableList(pointers);
+            cachedForUserId = currentUser.getObjectId();
+        }
+        return following;
+    }
+
+    public static synchronized void invalidate() {
+        following = null;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.patrice_musicapp.utils;
+
+import com.example.patrice_musicapp.models.Genres;
+
+//how alike two genres are, learned from which genres show up together on users and posts: a swing player is close
+//to a jazz fan even though they share no genre. counts are kept per pair so a user who changes their genres only
+//moves their own counts, and the similarities are a GENRES x GENRES float table rebuilt from them, so scoring reads
+//one array slot per genre pair. until there are counts a genre is only like itself, which is the plain overlap
+public class GenreAffinity {
+    public static final int GENRES = Genres.values().length;
+    //pairs seen fewer times than this count for little, so two rare genres don't look alike by chance
+    private static final double PRIOR = 5;
+
+    //counts[a * GENRES + b] lists carrying both a and b, counts[a * GENRES + a] lists carrying a
+    private final int[] counts = new int[GENRES * GENRES];
+    private volatile float[] table = identity();
+
+    //similarity of genres a and b by ordinal, 1 for the same genre
+    public float of(int a, int b) {
+        return table[a * GENRES + b];
+    }
+
+    //how well the genres of mask b cover those of mask a: every genre of a counts the most alike genre of b, and
+    //the result is the average over a. masks are from Genres.maskOf, 0 when either is empty
+    public double similarity(long a, long b) {
+        if (a == 0 || b == 0) {
+            return 0;
+        }
+        float[] similarities = table;
+        double sum = 0;
+        int genres = 0;
+        for (long rest = a; rest != 0; rest &= rest - 1) {
+            int row = Long.numberOfTrailingZeros(rest) * GENRES;
+            float best = 0;
+            for (long other = b; other != 0; other &= other - 1) {
+                best = Math.max(best, similarities[row + Long.numberOfTrailingZeros(other)]);
+            }
+            sum += best;
+            genres++;
+        }
+        return sum / genres;
+    }
+
+    //counts one user's or post's genres, see rebuild
+    public synchronized void add(long mask) {
+        count(mask, 1);
+    }
+
+    //takes back an earlier add, e.g. before adding a user's edited genres
+    public synchronized void remove(long mask) {
+        count(mask, -1);
+    }
+
+    //turns the counts into the table lookups read, after a batch of adds and removes
+    public synchronized void rebuild() {
+        float[] next = new float[GENRES * GENRES];
+        for (int a = 0; a < GENRES; a++) {
+            for (int b = 0; b < GENRES; b++) {
+                if (a == b) {
+                    next[a * GENRES + b] = 1;
+                    continue;
+                }
+                double together = counts[a * GENRES + b];
+                double apart = Math.sqrt((double) counts[a * GENRES + a] * counts[b * GENRES + b]);
+                next[a * GENRES + b] = (float) (together / (apart + PRIOR));
+            }
+        }
+        table = next;
+    }
+
+    //for saving, see GenreAffinityStore
+    synchronized int[] getCounts() {
+        return counts.clone();
+    }
+
+    synchronized void setCounts(int[] saved) {
+        System.arraycopy(saved, 0, counts, 0, counts.length);
+        rebuild();
+    }
+
+    private void count(long mask, int delta) {
+        for (long rest = mask; rest != 0; rest &= rest - 1) {
+            int a = Long.numberOfTrailingZeros(rest);
+            for (long other = mask; other != 0; other &= other - 1) {
+                counts[a * GENRES + Long.numberOfTrailingZeros(other)] += delta;
+            }
+        }
+    }
+
+    private static float[] identity() {
+        float[] identity = new float[GENRES * GENRES];
+        for (int a = 0; a < GENRES; a++) {
+            identity[a * GENRES + a] = 1;
+        }
+        return identity;
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.patrice_musicapp.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.patrice_musicapp.models.Genres;
+import com.example.patrice_musicapp.models.PageCursor;
+import com.example.patrice_musicapp.models.Post;
+import com.example.patrice_musicapp.models.User;
+import com.parse.ParseException;
+import com.parse.ParseObject;
+import com.parse.ParseQuery;
+import com.parse.ParseUser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+//keeps the app's GenreAffinity up to date. once a day WorkManager runs a refresh that pulls the users changed and
+//the posts created since the last one, by (updatedAt, objectId) and (createdAt, objectId) PageCursors like
+//SearchIndex, and adds their genres to the counts. each user's last genres are kept so an edit replaces them instead
+//of counting twice. the counts, cursors and user genres are saved to a small gzipped file, which is loaded before
+//the first refresh so a refresh that wins the race with the app start doesn't count everything again. after a load
+//or a refresh Recommendations rescores its genre signal, so "for you" never keeps an old table for the session
+public class GenreAffinityStore {
+    public static final String TAG = GenreAffinityStore.class.getSimpleName();
+    private static final String FILE_NAME = "genre_affinity.bin";
+    private static final int VERSION = 2;
+    private static final String WORK_NAME = "genreAffinity";
+    private static final long REFRESH_HOURS = 24;
+    private static final int PAGE_SIZE = 1000;
+    private static GenreAffinityStore instance;
+
+    private final File file;
+    private final GenreAffinity affinity = new GenreAffinity();
+    //objectId -> the genre mask counted for the user
+    private final Map<String, Long> userGenres = new HashMap<>();
+    private boolean loaded;
+    private PageCursor userCursor;
+    private PageCursor postCursor;
+
+    private GenreAffinityStore(Context context) {
+        file = new File(context.getApplicationContext().getFilesDir(), FILE_NAME);
+        AppExecutors.background().execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (GenreAffinityStore.this) {
+                    loadOnce();
+                }
+            }
+        });
+    }
+
+    public static synchronized GenreAffinityStore get(Context context) {
+        if (instance == null) {
+            instance = new GenreAffinityStore(context);
+        }
+        return instance;
+    }
+
+    //the same instance for the whole process, its table is replaced in place as refreshes come in
+    public GenreAffinity getAffinity() {
+        return affinity;
+    }
+
+    //refreshes once a day while there is a network, kept if already scheduled
+    public static void schedule(Context context) {
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(RefreshWorker.class, REFRESH_HOURS, TimeUnit.HOURS)
+                .setConstraints(new Constraints.Builder().setRequiredNetworkType(NetworkType.CONNECTED).build())
+                .build();
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    public static class RefreshWorker extends Worker {
+        public RefreshWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+            super(context, params);
+        }
+
+        @NonNull
+        @Override
+        public Result doWork() {
+            try {
+                GenreAffinityStore.get(getApplicationContext()).refresh();
+                return Result.success();
+            } catch (ParseException e) {
+                Log.e(TAG, "Issue with refreshing genre affinity", e);
+                return Result.retry();
+            }
+        }
+    }
+
+    //blocks on the network, so only off the UI thread
+    synchronized void refresh() throws ParseException {
+        loadOnce();
+        while (true) {
+            ParseQuery<ParseUser> query = PageCursor.after(ParseUser.getQuery(), ParseUser.getQuery(),
+                    PageCursor.KEY_UPDATED_AT, userCursor);
+            query.selectKeys(Arrays.asList(User.KEY_GENRE));
+            PageCursor.orderAfter(query, PageCursor.KEY_UPDATED_AT);
+            query.setLimit(PAGE_SIZE);
+            List<ParseUser> page = query.find();
+            for (ParseUser user : page) {
+                long genres = Genres.maskOf(user.<String>getList(User.KEY_GENRE));
+                Long counted = userGenres.put(user.getObjectId(), genres);
+                if (counted != null) {
+                    affinity.remove(counted);
+                }
+                affinity.add(genres);
+            }
+            userCursor = PageCursor.last(page, PageCursor.KEY_UPDATED_AT, userCursor);
+            if (page.size() < PAGE_SIZE) {
+                break;
+            }
+        }
+        while (true) {
+            ParseQuery<Post> query = PageCursor.after(ParseQuery.getQuery(Post.class), ParseQuery.getQuery(Post.class),
+                    ParseObject.KEY_CREATED_AT, postCursor);
+            query.selectKeys(Arrays.asList(Post.KEY_GENRE_FILTER));
+            PageCursor.orderAfter(query, ParseObject.KEY_CREATED_AT);
+            query.setLimit(PAGE_SIZE);
+            List<Post> page = query.find();
+            for (Post post : page) {
+                affinity.add(Genres.maskOf(post.getGenreFilters()));
+            }
+            postCursor = PageCursor.last(page, ParseObject.KEY_CREATED_AT, postCursor);
+            if (page.size() < PAGE_SIZE) {
+                break;
+            }
+        }
+        affinity.rebuild();
+        save();
+        Recommendations.get().onGenreAffinityChanged(affinity);
+    }
+
+    //whichever of the constructor's load and the first refresh gets the lock first loads the file
+    private void loadOnce() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        load();
+    }
+
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))));
+            try {
+                if (in.readInt() != VERSION || in.readInt() != GenreAffinity.GENRES) {
+                    //an old file or the genres changed, the next refresh starts over
+                    return;
+                }
+                userCursor = PageCursor.read(in);
+                postCursor = PageCursor.read(in);
+                int[] counts = new int[GenreAffinity.GENRES * GenreAffinity.GENRES];
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] = in.readInt();
+                }
+                int users = in.readInt();
+                for (int i = 0; i < users; i++) {
+                    userGenres.put(in.readUTF(), in.readLong());
+                }
+                affinity.setCounts(counts);
+                Recommendations.get().onGenreAffinityChanged(affinity);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Issue with loading genre affinity", e);
+            userGenres.clear();
+            userCursor = null;
+            postCursor = null;
+        }
+    }
+
+    private void save() {
+        File partial = new File(file.getParentFile(), FILE_NAME + ".part");
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(partial))));
+            try {
+                out.writeInt(VERSION);
+                out.writeInt(GenreAffinity.GENRES);
+                PageCursor.write(out, userCursor);
+                PageCursor.write(out, postCursor);
+                for (int count : affinity.getCounts()) {
+                    out.writeInt(count);
+                }
+                out.writeInt(userGenres.size());
+                for (Map.Entry<String, Long> entry : userGenres.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue());
+                }
+            } finally {
+                out.close();
+            }
+            if (!partial.renameTo(file)) {
+                Log.e(TAG, "Issue with replacing genre affinity");
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Issue with saving genre affinity", e);
+        }
+    }
+}
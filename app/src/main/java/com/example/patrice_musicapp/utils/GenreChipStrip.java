@@ -0,0 +1,72 @@
+package com.example.patrice_musicapp.utils;
+
+import android.view.View;
+import android.widget.HorizontalScrollView;
+
+import com.example.patrice_musicapp.models.Genres;
+import com.google.android.material.chip.Chip;
+import com.google.android.material.chip.ChipGroup;
+
+import java.util.List;
+
+//the genre row of a list item. chips stay in the group between binds and are only relabeled, extra ones are hidden,
+//so once a row has shown its longest genre list binding it creates no views. every chip shares one click listener
+//that reads the genre from the chip's tag, and labels come preformatted from Genres
+public class GenreChipStrip {
+    private final HorizontalScrollView hsvGenres;
+    private final ChipGroup chipGroupGenres;
+    private OnGenreClickListener listener;
+
+    public interface OnGenreClickListener {
+        //genre is the stored value, e.g. "HIP_HOP"
+        void onGenreClick(String genre);
+    }
+
+    private final View.OnClickListener chipClick = new View.OnClickListener() {
+        @Override
+        public void onClick(View view) {
+            if (listener != null) {
+                listener.onGenreClick((String) view.getTag());
+            }
+        }
+    };
+
+    public GenreChipStrip(HorizontalScrollView hsvGenres, ChipGroup chipGroupGenres) {
+        this.hsvGenres = hsvGenres;
+        this.chipGroupGenres = chipGroupGenres;
+    }
+
+    public void setOnGenreClickListener(OnGenreClickListener listener) {
+        this.listener = listener;
+    }
+
+    //genres is null or empty for items without genres, the strip is then hidden but keeps its space
+    public void bind(List<String> genres) {
+        if (genres == null || genres.isEmpty()) {
+            hsvGenres.setVisibility(View.INVISIBLE);
+            chipGroupGenres.setVisibility(View.INVISIBLE);
+            return;
+        }
+        hsvGenres.setVisibility(View.VISIBLE);
+        chipGroupGenres.setVisibility(View.VISIBLE);
+        for (int i = 0; i < genres.size(); i++) {
+            Chip chip;
+            if (i < chipGroupGenres.getChildCount()) {
+                chip = (Chip) chipGroupGenres.getChildAt(i);
+            } else {
+                chip = new Chip(chipGroupGenres.getContext());
+                chip.setOnClickListener(chipClick);
+                chipGroupGenres.addView(chip);
+            }
+            String genre = genres.get(i);
+            chip.setTag(genre);
+            chip.setText(Genres.labelOf(genre));
+            chip.setVisibility(View.VISIBLE);
+        }
+        for (int i = genres.size(); i < chipGroupGenres.getChildCount(); i++) {
+            chipGroupGenres.getChildAt(i).setVisibility(View.GONE);
+        }
+        //a recycled row starts at its first genre
+        hsvGenres.scrollTo(0, 0);
+    }
+}
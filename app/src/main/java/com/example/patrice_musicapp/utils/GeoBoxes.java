@@ -0,0 +1,45 @@
+package com.example.patrice_musicapp.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//turns a latitude/longitude rectangle that may run past a pole or the date line into boxes whereWithinGeoBox
+//takes: latitudes clamped to -90..90, longitudes wrapped into -180..180 and split at the date line, and no box
+//wider than 180 degrees. plain java, see GigSearch and NearbyUsers
+public class GeoBoxes {
+
+    //south, west, north, east of each box. west and east may be any longitude, a width of 360 or more is every
+    //longitude. empty when the latitudes don't overlap -90..90
+    public static List<double[]> split(double south, double west, double north, double east) {
+        List<double[]> boxes = new ArrayList<>();
+        south = Math.max(-90, south);
+        north = Math.min(90, north);
+        if (south > north || east < west) {
+            return boxes;
+        }
+        List<double[]> spans = new ArrayList<>();
+        double width = east - west;
+        if (width >= 360) {
+            spans.add(new double[]{-180, 180});
+        } else {
+            double start = ((west + 180) % 360 + 360) % 360 - 180;
+            double end = start + width;
+            if (end > 180) {
+                spans.add(new double[]{start, 180});
+                spans.add(new double[]{-180, end - 360});
+            } else {
+                spans.add(new double[]{start, end});
+            }
+        }
+        for (double[] span : spans) {
+            if (span[1] - span[0] > 180) {
+                double middle = (span[0] + span[1]) / 2;
+                boxes.add(new double[]{south, span[0], north, middle});
+                boxes.add(new double[]{south, middle, north, span[1]});
+            } else {
+                boxes.add(new double[]{south, span[0], north, span[1]});
+            }
+        }
+        return boxes;
+    }
+}
@@ -0,0 +1,258 @@
+package com.example.patrice_musicapp.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.location.Address;
+import android.location.Geocoder;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.TextView;
+
+import androidx.annotation.WorkerThread;
+
+import com.example.patrice_musicapp.R;
+import com.parse.ParseGeoPoint;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+//reverse geocoding with a memory and disk cache keyed by geohash cell, so every post from the same city costs one
+//geocoder call instead of one per row. lookups for a cell that is already being resolved wait for that lookup
+//instead of starting another, and all lookups run on a small pool of their own
+public class GeocodingService {
+    public static final String TAG = GeocodingService.class.getSimpleName();
+    private static final String PREFS_NAME = "geocoding";
+    private static final int MAX_DISK_ENTRIES = 2000;
+    private static final int MAX_MEMORY_ENTRIES = 256;
+    //stored for cells where the geocoder found nothing, so they are not asked again
+    private static final String NO_ADDRESS = "";
+    private static GeocodingService instance;
+
+    //what part of the address is shown, each with the cell size it is cached at by default
+    public enum Style {
+        //city, e.g. the location of a post or a user
+        LOCALITY(5),
+        //place name when the geocoder has one, otherwise the city, e.g. the venue of an event
+        EVENT(7),
+        //full first address line
+        ADDRESS(8);
+
+        private final int defaultPrecision;
+
+        Style(int defaultPrecision) {
+            this.defaultPrecision = defaultPrecision;
+        }
+    }
+
+    public interface Callback {
+        //label is null when the location could not be resolved
+        void onResolved(String label);
+    }
+
+    private final Geocoder geocoder;
+    private final SharedPreferences disk;
+    private final LruCache<String, String> memory = new LruCache<>(MAX_MEMORY_ENTRIES);
+    private final ExecutorService pool = Executors.newFixedThreadPool(2);
+    private final Map<String, List<Callback>> inFlight = new HashMap<>();
+    private final Map<Style, Integer> precision = new EnumMap<>(Style.class);
+
+    private GeocodingService(Context context) {
+        geocoder = new Geocoder(context.getApplicationContext(), Locale.US);
+        disk = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        if (disk.getAll().size() > MAX_DISK_ENTRIES) {
+            disk.edit().clear().apply();
+        }
+        for (Style style : Style.values()) {
+            precision.put(style, style.defaultPrecision);
+        }
+    }
+
+    public static synchronized GeocodingService get(Context context) {
+        if (instance == null) {
+            instance = new GeocodingService(context);
+        }
+        return instance;
+    }
+
+    //number of geohash characters a style is cached at, higher means smaller cells and more geocoder calls
+    public synchronized void setPrecision(Style style, int characters) {
+        precision.put(style, characters);
+    }
+
+    private synchronized String cellKey(ParseGeoPoint point, Style style) {
+        return style.name() + ":" + Geohash.encode(point.getLatitude(), point.getLongitude(), precision.get(style));
+    }
+
+    //the cached label, or null when the cell has not been resolved yet (or has no address)
+    public String getCached(ParseGeoPoint point, Style style) {
+        return fromCache(cellKey(point, style));
+    }
+
+    //true when the cell was resolved before, whatever the answer was
+    private boolean isCached(String key) {
+        return memory.get(key) != null || disk.contains(key);
+    }
+
+    private String fromCache(String key) {
+        String label = memory.get(key);
+        if (label == null) {
+            label = disk.getString(key, null);
+            if (label != null) {
+                memory.put(key, label);
+            }
+        }
+        return NO_ADDRESS.equals(label) ? null : label;
+    }
+
+    //blocks until the cell is resolved, for code that already runs in the background
+    @WorkerThread
+    public String resolve(ParseGeoPoint point, Style style) {
+        String key = cellKey(point, style);
+        if (isCached(key)) {
+            return fromCache(key);
+        }
+        final String[] result = new String[1];
+        final CountDownLatch done = new CountDownLatch(1);
+        lookup(key, point, style, new Callback() {
+            @Override
+            public void onResolved(String label) {
+                result[0] = label;
+                done.countDown();
+            }
+        });
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return result[0];
+    }
+
+    //calls back on the main thread, straight away when the cell is cached
+    public void resolve(ParseGeoPoint point, Style style, final Callback callback) {
+        String key = cellKey(point, style);
+        if (isCached(key)) {
+            callback.onResolved(fromCache(key));
+            return;
+        }
+        lookup(key, point, style, new Callback() {
+            @Override
+            public void onResolved(final String label) {
+                AppExecutors.mainThread().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onResolved(label);
+                    }
+                });
+            }
+        });
+    }
+
+    //sets the label on a view that may be recycled before the lookup returns, so the view remembers which cell it waits for
+    public void bind(final TextView textView, ParseGeoPoint point, Style style) {
+        if (point == null) {
+            textView.setTag(R.id.geocode_cell, null);
+            textView.setText(null);
+            return;
+        }
+        final String key = cellKey(point, style);
+        textView.setTag(R.id.geocode_cell, key);
+        if (isCached(key)) {
+            textView.setText(fromCache(key));
+            return;
+        }
+        textView.setText(null);
+        resolve(point, style, new Callback() {
+            @Override
+            public void onResolved(String label) {
+                if (key.equals(textView.getTag(R.id.geocode_cell))) {
+                    textView.setText(label);
+                }
+            }
+        });
+    }
+
+    //starts lookups for every cell of a page that is not cached yet, before its rows are shown
+    public void prefetch(List<ParseGeoPoint> points, Style style) {
+        for (ParseGeoPoint point : points) {
+            if (point == null) {
+                continue;
+            }
+            String key = cellKey(point, style);
+            if (!isCached(key)) {
+                lookup(key, point, style, null);
+            }
+        }
+    }
+
+    //joins the lookup already running for the cell, or starts one. callbacks run on the pool thread
+    private void lookup(final String key, final ParseGeoPoint point, final Style style, Callback callback) {
+        synchronized (inFlight) {
+            List<Callback> waiting = inFlight.get(key);
+            if (waiting != null) {
+                if (callback != null) {
+                    waiting.add(callback);
+                }
+                return;
+            }
+            waiting = new ArrayList<>();
+            if (callback != null) {
+                waiting.add(callback);
+            }
+            inFlight.put(key, waiting);
+        }
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                String label = null;
+                try {
+                    label = geocode(point, style);
+                    store(key, label == null ? NO_ADDRESS : label);
+                } catch (IOException e) {
+                    //not cached, the next bind asks again
+                    Log.e(TAG, "Issue with geocoding " + key, e);
+                }
+                List<Callback> waiting;
+                synchronized (inFlight) {
+                    waiting = inFlight.remove(key);
+                }
+                for (Callback waiter : waiting) {
+                    waiter.onResolved(label);
+                }
+            }
+        });
+    }
+
+    private String geocode(ParseGeoPoint point, Style style) throws IOException {
+        //only the first address is ever used
+        List<Address> addresses = geocoder.getFromLocation(point.getLatitude(), point.getLongitude(), 1);
+        if (addresses == null || addresses.isEmpty()) {
+            return null;
+        }
+        Address address = addresses.get(0);
+        switch (style) {
+            case ADDRESS:
+                return address.getAddressLine(0);
+            case EVENT:
+                if (address.getFeatureName() != null && !address.getFeatureName().matches("[0-9]+")) {
+                    return address.getFeatureName();
+                }
+                return address.getLocality();
+            default:
+                return address.getLocality();
+        }
+    }
+
+    private void store(String key, String label) {
+        memory.put(key, label);
+        disk.edit().putString(key, label).apply();
+    }
+}
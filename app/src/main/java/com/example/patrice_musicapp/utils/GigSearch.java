@@ -0,0 +1,165 @@
+package com.example.patrice_musicapp.utils;
+
+import android.util.Log;
+
+import com.example.patrice_musicapp.models.GigCursor;
+import com.example.patrice_musicapp.models.User;
+import com.parse.FindCallback;
+import com.parse.ParseException;
+import com.parse.ParseGeoPoint;
+import com.parse.ParseQuery;
+import com.parse.ParseUser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+//the gig marketplace search, e.g. bassists within 20 miles who play jazz for under $80 an hour as solo artists.
+//every filter goes into one server query: a range on hourRate, array matches on instrument and genre, and a box
+//around the radius that the geo index can answer. the box is trimmed to the circle when the page comes back.
+//a box is clamped at the poles and split in two where it crosses the date line. the radius is never sent as a
+//distance: whereWithinMiles is a $nearSphere, which the server can't run inside the $or every later page needs.
+//pages come cheapest first and continue from the last row through GigCursor, and only the fields a result card
+//shows are sent back
+public class GigSearch {
+    public static final String TAG = GigSearch.class.getSimpleName();
+    private static final double MILES_PER_DEGREE_LATITUDE = 69.0;
+    //what a result card shows
+    public static final List<String> CARD_KEYS = Collections.unmodifiableList(Arrays.asList(User.KEY_USERNAME, User.KEY_NAME,
+            User.KEY_PROFILE_IMAGE, User.KEY_LOCATION, User.KEY_INSTRUMENT, User.KEY_GENRE, User.KEY_HOUR_RATE,
+            User.KEY_SOLO_ARTIST));
+
+    public interface Callback {
+        //gigs is the page trimmed to the radius, so it can be shorter than the limit while next is still set.
+        //next is null after the last page
+        void onPage(List<ParseUser> gigs, GigCursor next);
+
+        //the page failed, asking for the same cursor again retries it
+        void onError(ParseException e);
+    }
+
+    private String instrument;
+    private String genre;
+    private double minHourRate;
+    private double maxHourRate = Double.NaN;
+    private boolean soloOnly;
+    private ParseGeoPoint center;
+    private double radiusMiles;
+
+    //a stored Instruments value, or null for any
+    public void setInstrument(String instrument) {
+        this.instrument = instrument;
+    }
+
+    //a stored Genres value, or null for any
+    public void setGenre(String genre) {
+        this.genre = genre;
+    }
+
+    //musicians without a rate are never returned, so 0 means any rate they have set
+    public void setMinHourRate(double minHourRate) {
+        this.minHourRate = minHourRate;
+    }
+
+    //NaN for no limit
+    public void setMaxHourRate(double maxHourRate) {
+        this.maxHourRate = maxHourRate;
+    }
+
+    public void setSoloOnly(boolean soloOnly) {
+        this.soloOnly = soloOnly;
+    }
+
+    //center null for anywhere
+    public void setNear(ParseGeoPoint center, double radiusMiles) {
+        this.center = center;
+        this.radiusMiles = radiusMiles;
+    }
+
+    public ParseQuery<ParseUser> query(GigCursor cursor, final int limit, final Callback callback) {
+        List<ParseQuery<ParseUser>> queries = new ArrayList<>();
+        for (double[] box : boxes()) {
+            GigCursor.addTo(queries, filtered(box), filtered(box), cursor);
+        }
+        ParseQuery<ParseUser> query = queries.size() == 1 ? queries.get(0) : ParseQuery.or(queries);
+        query.selectKeys(CARD_KEYS);
+        query.setLimit(limit);
+        GigCursor.order(query);
+        query.findInBackground(new FindCallback<ParseUser>() {
+            @Override
+            public void done(List<ParseUser> page, ParseException e) {
+                if (e != null) {
+                    Log.e(TAG, "Issue with searching gigs", e);
+                    callback.onError(e);
+                    return;
+                }
+                //the cursor comes from the untrimmed page, so the rows outside the circle are not asked for again
+                callback.onPage(withinRadius(page), GigCursor.next(page, limit));
+            }
+        });
+        return query;
+    }
+
+    //south, west, north, east of the boxes around the radius, see GeoBoxes. one null box when there is no center
+    private List<double[]> boxes() {
+        List<double[]> boxes = new ArrayList<>();
+        if (center == null) {
+            boxes.add(null);
+            return boxes;
+        }
+        double latDelta = radiusMiles / MILES_PER_DEGREE_LATITUDE;
+        double lngDelta = radiusMiles / (MILES_PER_DEGREE_LATITUDE * Math.max(0.01, Math.cos(Math.toRadians(center.getLatitude()))));
+        double south = center.getLatitude() - latDelta;
+        double north = center.getLatitude() + latDelta;
+        double west = center.getLongitude() - lngDelta;
+        double east = center.getLongitude() + lngDelta;
+        if (south <= -90 || north >= 90) {
+            //the circle takes in a pole, so it covers every longitude in its band
+            west = -180;
+            east = 180;
+        }
+        boxes.addAll(GeoBoxes.split(south, west, north, east));
+        return boxes;
+    }
+
+    private ParseQuery<ParseUser> filtered(double[] box) {
+        ParseQuery<ParseUser> query = ParseUser.getQuery();
+        query.whereGreaterThanOrEqualTo(User.KEY_HOUR_RATE, minHourRate);
+        if (!Double.isNaN(maxHourRate)) {
+            query.whereLessThanOrEqualTo(User.KEY_HOUR_RATE, maxHourRate);
+        }
+        //equality on an array key matches arrays that contain the value
+        if (instrument != null) {
+            query.whereEqualTo(User.KEY_INSTRUMENT, instrument);
+        }
+        if (genre != null) {
+            query.whereEqualTo(User.KEY_GENRE, genre);
+        }
+        if (soloOnly) {
+            query.whereEqualTo(User.KEY_SOLO_ARTIST, true);
+        }
+        if (box != null) {
+            query.whereWithinGeoBox(User.KEY_LOCATION, new ParseGeoPoint(box[0], box[1]), new ParseGeoPoint(box[2], box[3]));
+        }
+        ParseUser currentUser = ParseUser.getCurrentUser();
+        if (currentUser != null) {
+            query.whereNotEqualTo("objectId", currentUser.getObjectId());
+        }
+        return query;
+    }
+
+    private List<ParseUser> withinRadius(List<ParseUser> page) {
+        if (center == null) {
+            return page;
+        }
+        List<ParseUser> gigs = new ArrayList<>(page.size());
+        for (ParseUser user : page) {
+            ParseGeoPoint location = user.getParseGeoPoint(User.KEY_LOCATION);
+            if (location != null && location.distanceInMilesTo(center) <= radiusMiles) {
+                gigs.add(user);
+            }
+        }
+        return gigs;
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.patrice_musicapp.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.net.Uri;
+import android.util.Log;
+import android.view.View;
+
+import androidx.exifinterface.media.ExifInterface;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+//turns a picked or captured photo into the file that gets uploaded and a preview for the compose screen, on a
+//background thread. the photo is never decoded at full size: the bounds are read first and it is decoded with the
+//largest inSampleSize that still covers maxEdge, then scaled down the rest of the way and turned upright from
+//its EXIF orientation
+public class ImageIngest {
+    public static final String TAG = ImageIngest.class.getSimpleName();
+    //as big as the full variant of an upload, anything bigger would only be scaled down again
+    public static final int DEFAULT_MAX_EDGE = ImageVariants.FULL_EDGE;
+    public static final int DEFAULT_QUALITY = 90;
+    //for previews that are not laid out yet
+    private static final int DEFAULT_PREVIEW_EDGE = 512;
+
+    public interface Callback {
+        //preview is null when the photo could not be read, target is then left as it was
+        void onIngested(Bitmap preview);
+    }
+
+    private final Context context;
+    private int maxEdge = DEFAULT_MAX_EDGE;
+    private int quality = DEFAULT_QUALITY;
+    private Bitmap.CompressFormat format = Bitmap.CompressFormat.JPEG;
+
+    public ImageIngest(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    public ImageIngest setMaxEdge(int maxEdge) {
+        this.maxEdge = maxEdge;
+        return this;
+    }
+
+    public ImageIngest setQuality(int quality) {
+        this.quality = quality;
+        return this;
+    }
+
+    //e.g. WEBP for smaller files, JPEG by default
+    public ImageIngest setFormat(Bitmap.CompressFormat format) {
+        this.format = format;
+        return this;
+    }
+
+    //source may be the target itself, e.g. a camera photo. the preview is sized to previewView and the callback
+    //runs on the main thread
+    public void ingest(final Uri source, final File target, View previewView, final Callback callback) {
+        int previewEdge = Math.max(previewView.getWidth(), previewView.getHeight());
+        final int previewMaxEdge = previewEdge > 0 ? previewEdge : DEFAULT_PREVIEW_EDGE;
+        AppExecutors.background().execute(new Runnable() {
+            @Override
+            public void run() {
+                Bitmap preview = null;
+                try {
+                    preview = ingest(source, target, previewMaxEdge);
+                } catch (IOException e) {
+                    Log.e(TAG, "Issue with reading " + source, e);
+                } catch (OutOfMemoryError e) {
+                    Log.e(TAG, "Issue with decoding " + source, e);
+                }
+                final Bitmap result = preview;
+                AppExecutors.mainThread().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onIngested(result);
+                    }
+                });
+            }
+        });
+    }
+
+    private Bitmap ingest(Uri source, File target, int previewMaxEdge) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decode(source, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Not an image");
+        }
+        options.inSampleSize = sampleSize(options.outWidth, options.outHeight, maxEdge);
+        options.inJustDecodeBounds = false;
+        Bitmap decoded = decode(source, options);
+        if (decoded == null) {
+            throw new IOException("Not an image");
+        }
+
+        Bitmap scaled = scaleTo(decoded, maxEdge);
+        if (scaled != decoded) {
+            decoded.recycle();
+        }
+        Bitmap upright = orient(scaled, readOrientation(source));
+        //written next to target and then moved over it, so target is never half written
+        File partial = new File(target.getParentFile(), target.getName() + ".part");
+        OutputStream out = new FileOutputStream(partial);
+        try {
+            upright.compress(format, quality, out);
+        } finally {
+            out.close();
+        }
+        if (!partial.renameTo(target)) {
+            partial.delete();
+            throw new IOException("Could not write " + target);
+        }
+
+        Bitmap preview = scaleTo(upright, previewMaxEdge);
+        if (preview != upright) {
+            upright.recycle();
+        }
+        return preview;
+    }
+
+    //the largest power of two that keeps the longest edge at or above maxEdge, as BitmapFactory wants
+    static int sampleSize(int width, int height, int maxEdge) {
+        int edge = Math.max(width, height);
+        int sampleSize = 1;
+        while (edge / (sampleSize * 2) >= maxEdge) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private Bitmap decode(Uri source, BitmapFactory.Options options) throws IOException {
+        InputStream in = context.getContentResolver().openInputStream(source);
+        if (in == null) {
+            throw new IOException("Could not open " + source);
+        }
+        try {
+            return BitmapFactory.decodeStream(in, null, options);
+        } finally {
+            in.close();
+        }
+    }
+
+    private int readOrientation(Uri source) {
+        InputStream in = null;
+        try {
+            in = context.getContentResolver().openInputStream(source);
+            if (in == null) {
+                return ExifInterface.ORIENTATION_NORMAL;
+            }
+            return new ExifInterface(in).getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        } catch (IOException e) {
+            //no EXIF, e.g. a png
+            return ExifInterface.ORIENTATION_NORMAL;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private static Bitmap orient(Bitmap bitmap, int orientation) {
+        Matrix matrix = new Matrix();
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.setScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.setRotate(180);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.setScale(1, -1);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                matrix.setRotate(90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.setRotate(90);
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                matrix.setRotate(-90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.setRotate(-90);
+                break;
+            default:
+                return bitmap;
+        }
+        Bitmap oriented = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+        if (oriented != bitmap) {
+            bitmap.recycle();
+        }
+        return oriented;
+    }
+
+    //bitmap itself when it is already small enough
+    static Bitmap scaleTo(Bitmap bitmap, int maxEdge) {
+        int edge = Math.max(bitmap.getWidth(), bitmap.getHeight());
+        if (edge <= maxEdge) {
+            return bitmap;
+        }
+        float scale = (float) maxEdge / edge;
+        int width = Math.max(1, Math.round(bitmap.getWidth() * scale));
+        int height = Math.max(1, Math.round(bitmap.getHeight() * scale));
+        return Bitmap.createScaledBitmap(bitmap, width, height, true);
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.patrice_musicapp.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import com.parse.ParseFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+//the sizes a post or event image is uploaded in: a thumbnail for small list images, a feed size for cards and the
+//full image for the details screens. ParseImageLoader picks the smallest one that covers the view it loads into
+public class ImageVariants {
+    //longest edge of each variant in pixels
+    public static final int THUMB_EDGE = 240;
+    public static final int FEED_EDGE = 1080;
+    public static final int FULL_EDGE = 2048;
+    private static final int THUMB_QUALITY = 75;
+    private static final int FEED_QUALITY = 80;
+    private static final int FULL_QUALITY = 90;
+
+    private final ParseFile thumb;
+    private final ParseFile feed;
+    private final ParseFile full;
+
+    //also for files uploaded earlier, see UploadWorker
+    ImageVariants(ParseFile thumb, ParseFile feed, ParseFile full) {
+        this.thumb = thumb;
+        this.feed = feed;
+        this.full = full;
+    }
+
+    public ParseFile getThumb() {
+        return thumb;
+    }
+
+    public ParseFile getFeed() {
+        return feed;
+    }
+
+    public ParseFile getFull() {
+        return full;
+    }
+
+    //decodes and encodes on the calling thread, so only call it off the UI thread, e.g. from UploadWorker.
+    //the files are not saved yet
+    public static ImageVariants encode(File photoFile) throws IOException {
+        //decode no bigger than needed for the full variant
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(photoFile.getAbsolutePath(), options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Not an image");
+        }
+        options.inSampleSize = ImageIngest.sampleSize(options.outWidth, options.outHeight, FULL_EDGE);
+        options.inJustDecodeBounds = false;
+        Bitmap decoded = BitmapFactory.decodeFile(photoFile.getAbsolutePath(), options);
+        if (decoded == null) {
+            throw new IOException("Not an image");
+        }
+
+        //each variant is scaled from the one above it, which is cheaper and looks the same
+        Bitmap full = ImageIngest.scaleTo(decoded, FULL_EDGE);
+        Bitmap feed = ImageIngest.scaleTo(full, FEED_EDGE);
+        Bitmap thumb = ImageIngest.scaleTo(feed, THUMB_EDGE);
+        ImageVariants variants = new ImageVariants(
+                new ParseFile("thumb.jpg", compress(thumb, THUMB_QUALITY)),
+                new ParseFile("feed.jpg", compress(feed, FEED_QUALITY)),
+                new ParseFile("full.jpg", compress(full, FULL_QUALITY)));
+        recycle(thumb, feed);
+        recycle(feed, full);
+        recycle(full, decoded);
+        decoded.recycle();
+        return variants;
+    }
+
+    //recycles a scaled copy, but not when scaleTo handed back its source
+    private static void recycle(Bitmap scaled, Bitmap source) {
+        if (scaled != source) {
+            scaled.recycle();
+        }
+    }
+
+    private static byte[] compress(Bitmap bitmap, int quality) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.JPEG, quality, out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.patrice_musicapp.utils;
+
+import android.util.Log;
+
+import androidx.annotation.WorkerThread;
+
+import com.example.patrice_musicapp.models.Like;
+import com.example.patrice_musicapp.models.Post;
+import com.parse.ParseException;
+import com.parse.ParseUser;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+//which posts the current user liked, kept for the session. the like state of a page is loaded with one Like query
+//when the page arrives, after that isLiked is a set lookup and likes done on this device are recorded here directly.
+//likes from before the Like rows, still in the post's likesUserArray, are read too but never written: the
+//migrateLikesUserArray cloud job moves them to rows. until it has run such a like has no row, so it can't be undone
+public class LikeStore {
+    public static final String TAG = LikeStore.class.getSimpleName();
+    private static final Set<String> likedPostIds = new HashSet<>();
+    //posts whose like state has been loaded, liked or not
+    private static final Set<String> knownPostIds = new HashSet<>();
+    //post objectId -> the Like row, needed to delete it on unlike
+    private static final Map<String, Like> likes = new HashMap<>();
+    private static String loadedForUserId;
+
+    public static synchronized boolean isLiked(Post post) {
+        checkUser();
+        return likedPostIds.contains(post.getObjectId());
+    }
+
+    //loads the like state of every post in items that is not known yet, in a single query
+    @WorkerThread
+    public static void loadForPage(List<?> items) {
+        ParseUser currentUser = ParseUser.getCurrentUser();
+        List<Post> unknown = new ArrayList<>();
+        synchronized (LikeStore.class) {
+            checkUser();
+            for (Object item : items) {
+                if (item instanceof Post) {
+                    Post post = (Post) item;
+                    if (post.getObjectId() != null && !knownPostIds.contains(post.getObjectId())) {
+                        unknown.add(post);
+                    }
+                }
+            }
+        }
+        if (unknown.isEmpty() || currentUser == null) {
+            return;
+        }
+        try {
+            List<Like> found = Like.findForPosts(unknown, currentUser);
+            Set<String> likedInArray = new HashSet<>();
+            Set<String> withRow = new HashSet<>();
+            for (Like like : found) {
+                withRow.add(like.getPost().getObjectId());
+            }
+            List<Post> withoutRow = new ArrayList<>();
+            for (Post post : unknown) {
+                if (!withRow.contains(post.getObjectId())) {
+                    withoutRow.add(post);
+                }
+            }
+            if (!withoutRow.isEmpty()) {
+                for (Post post : Post.findLikedInArray(withoutRow, currentUser)) {
+                    likedInArray.add(post.getObjectId());
+                }
+            }
+            synchronized (LikeStore.class) {
+                for (Post post : unknown) {
+                    knownPostIds.add(post.getObjectId());
+                }
+                for (Like like : found) {
+                    String postId = like.getPost().getObjectId();
+                    likedPostIds.add(postId);
+                    likes.put(postId, like);
+                }
+                likedPostIds.addAll(likedInArray);
+            }
+        } catch (ParseException e) {
+            //left unknown, the next page load asks again
+            Log.e(TAG, "Issue with loading likes", e);
+        }
+    }
+
+    //records a like done on this device and returns the Like row to save
+    public static synchronized Like add(Post post, ParseUser user) {
+        checkUser();
+        Like like = likes.get(post.getObjectId());
+        if (like == null) {
+            like = new Like();
+            like.setPost(post);
+            like.setUser(user);
+            likes.put(post.getObjectId(), like);
+        }
+        likedPostIds.add(post.getObjectId());
+        knownPostIds.add(post.getObjectId());
+        return like;
+    }
+
+    //records an unlike done on this device and returns the Like row to delete, null if there is none.
+    //the row stays known until forget, so liking again before it is deleted reuses it
+    public static synchronized Like remove(Post post) {
+        checkUser();
+        likedPostIds.remove(post.getObjectId());
+        knownPostIds.add(post.getObjectId());
+        return likes.get(post.getObjectId());
+    }
+
+    //the Like row of a post, saved or not, null if there is none
+    public static synchronized Like rowFor(Post post) {
+        return likes.get(post.getObjectId());
+    }
+
+    //drops the row of a post that is no longer liked, once its delete is under way
+    public static synchronized void forget(Post post) {
+        if (!likedPostIds.contains(post.getObjectId())) {
+            likes.remove(post.getObjectId());
+        }
+    }
+
+    //the like state belongs to whoever is logged in
+    private static void checkUser() {
+        ParseUser currentUser = ParseUser.getCurrentUser();
+        String userId = currentUser == null ? null : currentUser.getObjectId();
+        if (userId == null ? loadedForUserId != null : !userId.equals(loadedForUserId)) {
+            likedPostIds.clear();
+            knownPostIds.clear();
+            likes.clear();
+            loadedForUserId = userId;
+        }
+    }
+}
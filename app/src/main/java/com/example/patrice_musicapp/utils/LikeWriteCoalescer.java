@@ -0,0 +1,203 @@
+package com.example.patrice_musicapp.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.patrice_musicapp.models.Like;
+import com.example.patrice_musicapp.models.Post;
+import com.parse.DeleteCallback;
+import com.parse.ParseException;
+import com.parse.ParseObject;
+import com.parse.ParseUser;
+import com.parse.SaveCallback;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+//collects like and unlike taps and writes only where each post ended up. the screen shows a tap straight away,
+//the writes wait for a short window so a burst of double taps on one post turns into at most one write, and
+//every post changed in the window goes to the server in one saveAll. the Like rows of unlikes are deleted in one
+//deleteAll once that save is through, and a delete that fails then is queued with deleteEventually so the row
+//follows the count. when the save fails the posts and their rows go back to their last saved state and the
+//listeners are told to redraw them
+public class LikeWriteCoalescer {
+    public static final String TAG = LikeWriteCoalescer.class.getSimpleName();
+    private static final long WINDOW_MILLIS = TimeUnit.SECONDS.toMillis(1);
+    private static final Handler handler = new Handler(Looper.getMainLooper());
+    //post objectId -> pending change, in the order the posts were first tapped
+    private static final Map<String, Pending> pending = new LinkedHashMap<>();
+    private static final List<Listener> listeners = new ArrayList<>();
+    private static int writesIssued;
+    private static int writesCoalesced;
+    private static int batches;
+
+    public interface Listener {
+        //the post's like state and count were rolled back after a failed write
+        void onLikeReverted(Post post);
+    }
+
+    private static class Pending {
+        final Post post;
+        //like state the server has, from before the first tap in this window
+        final boolean savedLiked;
+        int taps;
+
+        Pending(Post post, boolean savedLiked) {
+            this.post = post;
+            this.savedLiked = savedLiked;
+        }
+    }
+
+    private static final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    public static void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    //applies the like locally and queues the write, a tap that does not change anything is ignored
+    public static void setLiked(Post post, boolean liked) {
+        if (post.isLiked() == liked) {
+            return;
+        }
+        Pending change = pending.get(post.getObjectId());
+        if (change == null) {
+            change = new Pending(post, post.isLiked());
+            pending.put(post.getObjectId(), change);
+        }
+        change.taps++;
+        if (liked) {
+            post.addLike(ParseUser.getCurrentUser());
+        } else {
+            post.destroyLike(ParseUser.getCurrentUser());
+        }
+        //the window starts with the first tap, later taps ride along
+        if (pending.size() == 1 && change.taps == 1) {
+            handler.postDelayed(flushRunnable, WINDOW_MILLIS);
+        }
+    }
+
+    //writes whatever is queued now, e.g. when the screen goes away
+    public static void flush() {
+        handler.removeCallbacks(flushRunnable);
+        if (pending.isEmpty()) {
+            return;
+        }
+        final List<Pending> batch = new ArrayList<>(pending.values());
+        pending.clear();
+
+        final List<ParseObject> toSave = new ArrayList<>();
+        final List<Pending> written = new ArrayList<>();
+        for (Pending change : batch) {
+            Post post = change.post;
+            boolean liked = post.isLiked();
+            if (liked == change.savedLiked) {
+                //tapped back to where it started, nothing to write
+                writesCoalesced += change.taps;
+                continue;
+            }
+            writesIssued++;
+            writesCoalesced += change.taps - 1;
+            written.add(change);
+            toSave.add(post);
+            if (liked) {
+                toSave.add(LikeStore.rowFor(post));
+            }
+        }
+        Log.i(TAG, "Like writes issued: " + writesIssued + ", coalesced: " + writesCoalesced);
+        if (written.isEmpty()) {
+            return;
+        }
+
+        batches++;
+        ParseObject.saveAllInBackground(toSave, new SaveCallback() {
+            @Override
+            public void done(ParseException e) {
+                if (e != null) {
+                    Log.e(TAG, "Issue with saving likes", e);
+                    revert(written);
+                    return;
+                }
+                deleteUnliked(written);
+            }
+        });
+    }
+
+    //the counts of the unlikes are saved, now their rows go. a post liked again since keeps its row
+    private static void deleteUnliked(List<Pending> written) {
+        final List<Like> toDelete = new ArrayList<>();
+        for (Pending change : written) {
+            Post post = change.post;
+            if (!change.savedLiked || post.isLiked()) {
+                continue;
+            }
+            Like like = LikeStore.rowFor(post);
+            LikeStore.forget(post);
+            if (like != null && like.getObjectId() != null) {
+                toDelete.add(like);
+            }
+        }
+        if (toDelete.isEmpty()) {
+            return;
+        }
+        ParseObject.deleteAllInBackground(toDelete, new DeleteCallback() {
+            @Override
+            public void done(ParseException e) {
+                if (e != null) {
+                    Log.e(TAG, "Issue with deleting likes, queued to retry", e);
+                    for (Like like : toDelete) {
+                        like.deleteEventually();
+                    }
+                }
+            }
+        });
+    }
+
+    //puts the posts back to what the server has and lets the screens redraw them
+    private static void revert(List<Pending> written) {
+        for (Pending change : written) {
+            Post post = change.post;
+            if (post.isLiked() == change.savedLiked) {
+                continue;
+            }
+            //undoes the local state and cancels out the increment the failed save left queued on the post. an
+            //unlike's row is only forgotten once the count is saved, so liking again here finds it
+            if (change.savedLiked) {
+                post.addLike(ParseUser.getCurrentUser());
+            } else {
+                post.destroyLike(ParseUser.getCurrentUser());
+                LikeStore.forget(post);
+            }
+            for (Listener listener : new ArrayList<>(listeners)) {
+                listener.onLikeReverted(post);
+            }
+        }
+    }
+
+    //like changes that reached the server
+    public static int getWritesIssued() {
+        return writesIssued;
+    }
+
+    //taps that did not need a write of their own
+    public static int getWritesCoalesced() {
+        return writesCoalesced;
+    }
+
+    //saveAll round trips
+    public static int getBatches() {
+        return batches;
+    }
+}
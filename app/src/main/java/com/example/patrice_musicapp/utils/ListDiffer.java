@@ -0,0 +1,231 @@
+package com.example.patrice_musicapp.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.patrice_musicapp.models.User;
+import com.parse.ParseObject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+//shared list-diffing layer for the adapters. new lists are diffed against the current one on a background thread,
+//keyed on objectId with updatedAt as the version, and only the resulting inserts, removes and changes reach the adapter.
+//the adapter keeps reading from its own backing list, which is swapped on the main thread right before dispatching.
+//a preparer runs before the diff on threads of its own, so a preparer that waits on the network or the geocoder
+//never holds up another list's diff
+public class ListDiffer<T> {
+    //only ever computes diffs
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+    //preparers, one at a time per differ
+    private static final Executor PREPARE_POOL = Executors.newCachedThreadPool();
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+    private final RecyclerView.Adapter adapter;
+    private final List<T> items;
+    //keys and versions of the committed items, captured when they were submitted because parse objects are updated in place
+    private String[] keys = new String[0];
+    private long[] versions = new long[0];
+    //the newest list handed to submitList, which may still be diffing
+    private List<T> latest = Collections.emptyList();
+    private volatile int generation;
+    private final ArrayDeque<Runnable> prepareQueue = new ArrayDeque<>();
+    private boolean preparing;
+
+    //optional work off the UI thread before the list is diffed and committed, e.g. precomputing what the rows display
+    public interface Preparer<T> {
+        void prepare(List<T> items);
+    }
+
+    private Preparer<T> preparer;
+
+    public ListDiffer(RecyclerView.Adapter adapter, List<T> items) {
+        this.adapter = adapter;
+        this.items = items;
+        this.latest = new ArrayList<>(items);
+        this.keys = keysOf(latest);
+        this.versions = versionsOf(latest);
+    }
+
+    public void setPreparer(Preparer<T> preparer) {
+        this.preparer = preparer;
+    }
+
+    public List<T> getLatestList() {
+        return Collections.unmodifiableList(latest);
+    }
+
+    public void submitList(List<T> newItems) {
+        submitList(newItems, null);
+    }
+
+    //adds a page to the end of the newest submitted list
+    public void appendAll(List<T> page) {
+        List<T> updated = new ArrayList<>(latest);
+        updated.addAll(page);
+        submitList(updated, null);
+    }
+
+    public void submitList(List<T> newItems, final Runnable commitCallback) {
+        final int runGeneration = ++generation;
+        final List<T> newSnapshot = new ArrayList<>(newItems);
+        final String[] oldKeys = keys;
+        final long[] oldVersions = versions;
+        final String[] newKeys = keysOf(newSnapshot);
+        final long[] newVersions = versionsOf(newSnapshot);
+        latest = newSnapshot;
+
+        //nothing to compare against, so there is nothing worth a trip to the diff thread
+        if (preparer == null && (oldKeys.length == 0 || newKeys.length == 0)) {
+            int oldSize = items.size();
+            commit(newSnapshot, newKeys, newVersions);
+            if (oldSize > 0) {
+                adapter.notifyItemRangeRemoved(0, oldSize);
+            }
+            if (!newSnapshot.isEmpty()) {
+                adapter.notifyItemRangeInserted(0, newSnapshot.size());
+            }
+            if (commitCallback != null) {
+                commitCallback.run();
+            }
+            return;
+        }
+
+        final Runnable diff = new Runnable() {
+            @Override
+            public void run() {
+                final DiffUtil.DiffResult result = DiffUtil.calculateDiff(new DiffUtil.Callback() {
+                    @Override
+                    public int getOldListSize() {
+                        return oldKeys.length;
+                    }
+
+                    @Override
+                    public int getNewListSize() {
+                        return newKeys.length;
+                    }
+
+                    @Override
+                    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+                        return oldKeys[oldItemPosition].equals(newKeys[newItemPosition]);
+                    }
+
+                    @Override
+                    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+                        return oldVersions[oldItemPosition] == newVersions[newItemPosition];
+                    }
+                });
+                MAIN_HANDLER.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        //a newer list was submitted while this one was diffing
+                        if (runGeneration != generation) {
+                            return;
+                        }
+                        commit(newSnapshot, newKeys, newVersions);
+                        result.dispatchUpdatesTo(adapter);
+                        if (commitCallback != null) {
+                            commitCallback.run();
+                        }
+                    }
+                });
+            }
+        };
+        final Preparer<T> runPreparer = preparer;
+        if (runPreparer == null) {
+            DIFF_EXECUTOR.execute(diff);
+            return;
+        }
+        prepare(new Runnable() {
+            @Override
+            public void run() {
+                //a newer list was submitted before this one got its turn
+                if (runGeneration != generation) {
+                    return;
+                }
+                runPreparer.prepare(newSnapshot);
+                DIFF_EXECUTOR.execute(diff);
+            }
+        });
+    }
+
+    //runs task on the prepare pool after the ones queued before it for this differ
+    private void prepare(Runnable task) {
+        synchronized (prepareQueue) {
+            prepareQueue.add(task);
+            if (preparing) {
+                return;
+            }
+            preparing = true;
+        }
+        PREPARE_POOL.execute(new Runnable() {
+            @Override
+            public void run() {
+                while (true) {
+                    Runnable next;
+                    synchronized (prepareQueue) {
+                        next = prepareQueue.poll();
+                        if (next == null) {
+                            preparing = false;
+                            return;
+                        }
+                    }
+                    try {
+                        next.run();
+                    } catch (RuntimeException e) {
+                        //the list is dropped, the next submit gets its turn
+                        e.printStackTrace();
+                    }
+                }
+            }
+        });
+    }
+
+    private void commit(List<T> newSnapshot, String[] newKeys, long[] newVersions) {
+        items.clear();
+        items.addAll(newSnapshot);
+        keys = newKeys;
+        versions = newVersions;
+    }
+
+    private static String[] keysOf(List<?> list) {
+        String[] keys = new String[list.size()];
+        for (int i = 0; i < keys.length; i++) {
+            Object item = list.get(i);
+            String objectId = null;
+            if (item instanceof ParseObject) {
+                objectId = ((ParseObject) item).getObjectId();
+            } else if (item instanceof User) {
+                objectId = ((User) item).getParseUser().getObjectId();
+            }
+            //unsaved objects only match themselves
+            if (objectId == null) {
+                objectId = "@" + System.identityHashCode(item);
+            }
+            keys[i] = item.getClass().getSimpleName() + ":" + objectId;
+        }
+        return keys;
+    }
+
+    private static long[] versionsOf(List<?> list) {
+        long[] versions = new long[list.size()];
+        for (int i = 0; i < versions.length; i++) {
+            Object item = list.get(i);
+            Date updatedAt = null;
+            if (item instanceof ParseObject) {
+                updatedAt = ((ParseObject) item).getUpdatedAt();
+            } else if (item instanceof User) {
+                updatedAt = ((User) item).getParseUser().getUpdatedAt();
+            }
+            versions[i] = updatedAt == null ? 0 : updatedAt.getTime();
+        }
+        return versions;
+    }
+}
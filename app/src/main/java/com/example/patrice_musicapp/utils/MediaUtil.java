@@ -5,10 +5,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.pm.ActivityInfo;
 import android.content.pm.PackageManager;
-import android.graphics.Bitmap;
-import android.graphics.ImageDecoder;
 import android.net.Uri;
-import android.os.Build;
 import android.os.Environment;
 import android.provider.MediaStore;
 import android.util.Log;
@@ -23,7 +20,6 @@ import androidx.core.content.FileProvider;
 import com.example.patrice_musicapp.activities.ComposeActivity;
 
 import java.io.File;
-import java.io.IOException;
 
 public class MediaUtil {
     public static String photoFilename = "photo.jpg";
@@ -89,25 +85,6 @@ public class MediaUtil {
         }
     }
 
-    public static Bitmap loadFromUri(Uri photoUri, Context context) {
-        Bitmap image = null;
-        try {
-            // check version of Android on device
-            if(Build.VERSION.SDK_INT > 27){
-                // on newer versions of Android, use the new decodeBitmap method
-                ImageDecoder.Source source = ImageDecoder.createSource(context.getContentResolver(), photoUri);
-                image = ImageDecoder.decodeBitmap(source);
-            } else {
-                // support older versions of Android by using getBitmap
-                image = MediaStore.Images.Media.getBitmap(context.getContentResolver(), photoUri);
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return image;
-    }
-
-
     public static void startRecordingVideo(Context context) {
         if (context.getPackageManager().hasSystemFeature(PackageManager.FEATURE_CAMERA_FRONT)) {
             Intent intent = new Intent(MediaStore.ACTION_VIDEO_CAPTURE);
@@ -132,14 +109,7 @@ public class MediaUtil {
     }
 
     public static void showSoundCloudPlayer(WebView webviewSoundCloud, String soundCloudUrl) {
-        String SOUND_URL = soundCloudUrl;
-
-        //html for soundcloud embedded player
-        String html = "<!DOCTYPE html><html> <head> <meta charset=\"UTF-8\"><meta name=\"viewport\" content=\"target-densitydpi=high-dpi\" /> <meta name=\"viewport\" content=\"width=device-width, initial-scale=1\"> <link rel=\"stylesheet\" media=\"screen and (-webkit-device-pixel-ratio:1.5)\" href=\"hdpi.css\" /></head> <body style=\"background:black;margin:0 0 0 0; padding:0 0 0 0;\"> <iframe id=\"sc-widget " +
-                "\" width=\"100%\" height=\"166\"" + // Set Appropriate Width and Height that you want for SoundCloud Player
-                " src=\"https://w.soundcloud.com/player/?url=" + SOUND_URL + "&color=%23ff5500&auto_play=false&hide_related=true&show_comments=false&show_user=true&show_reposts=false&show_teaser=false"
-                + "\" frameborder=\"no\" scrolling=\"no\"></iframe>" +
-                "<script src=\"https://w.soundcloud.com/player/?\" type=\"text/javascript\"></script> </body> </html> ";
+        String html = soundCloudHtml(soundCloudUrl, false);
 
         webviewSoundCloud.setVisibility(View.VISIBLE);
         webviewSoundCloud.getSettings().setJavaScriptEnabled(true);
@@ -149,6 +119,15 @@ public class MediaUtil {
 
     }
 
+    //html for soundcloud embedded player
+    public static String soundCloudHtml(String soundCloudUrl, boolean autoPlay) {
+        return "<!DOCTYPE html><html> <head> <meta charset=\"UTF-8\"><meta name=\"viewport\" content=\"target-densitydpi=high-dpi\" /> <meta name=\"viewport\" content=\"width=device-width, initial-scale=1\"> <link rel=\"stylesheet\" media=\"screen and (-webkit-device-pixel-ratio:1.5)\" href=\"hdpi.css\" /></head> <body style=\"background:black;margin:0 0 0 0; padding:0 0 0 0;\"> <iframe id=\"sc-widget " +
+                "\" width=\"100%\" height=\"166\"" + // Set Appropriate Width and Height that you want for SoundCloud Player
+                " src=\"https://w.soundcloud.com/player/?url=" + soundCloudUrl + "&color=%23ff5500&auto_play=" + autoPlay + "&hide_related=true&show_comments=false&show_user=true&show_reposts=false&show_teaser=false"
+                + "\" frameborder=\"no\" scrolling=\"no\"></iframe>" +
+                "<script src=\"https://w.soundcloud.com/player/?\" type=\"text/javascript\"></script> </body> </html> ";
+    }
+
 
 
 
@@ -0,0 +1,27 @@
+package com.example.patrice_musicapp.utils;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.Registry;
+import com.bumptech.glide.annotation.GlideModule;
+import com.bumptech.glide.module.AppGlideModule;
+import com.example.patrice_musicapp.models.ParseImage;
+
+import java.io.InputStream;
+
+//lets glide load ParseImage models, see ParseImageLoader
+@GlideModule
+public class MusicAppGlideModule extends AppGlideModule {
+    @Override
+    public void registerComponents(@NonNull Context context, @NonNull Glide glide, @NonNull Registry registry) {
+        registry.prepend(ParseImage.class, InputStream.class, new ParseImageLoader.Factory());
+    }
+
+    @Override
+    public boolean isManifestParsingEnabled() {
+        return false;
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.patrice_musicapp.utils;
+
+import android.util.Log;
+
+import com.example.patrice_musicapp.models.User;
+import com.parse.FindCallback;
+import com.parse.ParseException;
+import com.parse.ParseGeoPoint;
+import com.parse.ParseQuery;
+import com.parse.ParseUser;
+
+import org.json.JSONException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+//musicians near the current user for discover, found by the server's geo index on the location field rather than by
+//sorting a sample on the phone. a geo query can't start past a distance, so the search walks out in square rings
+//around the current user, each one the boxes between two of RING_KILOMETERS, and pages through a ring by objectId.
+//the query then never grows with what was loaded. every ring is nearer than the next, and each page is sorted by
+//distance before it is shown. someone who moves or joins between pages is shown at most once. like
+//User.queryUsers it leaves out the current user and the users they follow
+public class NearbyUsers {
+    public static final String TAG = NearbyUsers.class.getSimpleName();
+    public static final double MAX_KILOMETERS = 200;
+    //outer edge of each ring, the last one is MAX_KILOMETERS
+    private static final double[] RING_KILOMETERS = {10, 25, 50, 100, MAX_KILOMETERS};
+    private static final double KILOMETERS_PER_DEGREE_LATITUDE = 111.0;
+
+    public interface Callback {
+        //page is nearest first and continues the pages before it
+        void onPage(List<ParseUser> page, boolean hasMore);
+    }
+
+    private final ParseUser currentUser;
+    private final ParseGeoPoint origin;
+    private final int pageSize;
+    //objectIds already handed out, a user on the edge between two rings is in both
+    private final Set<String> loaded = new HashSet<>();
+    //objectId -> miles from the current user, worked out once when the page comes back
+    private final Map<String, Double> miles = new HashMap<>();
+    private ParseQuery<ParseUser> running;
+    private boolean hasMore;
+    private int ring;
+    //objectId of the last row of the ring's last page, null at the start of a ring
+    private String afterId;
+
+    public NearbyUsers(ParseUser currentUser, int pageSize) {
+        this.currentUser = currentUser;
+        this.origin = currentUser != null ? new User(currentUser).getLocation() : null;
+        this.pageSize = pageSize;
+        this.hasMore = origin != null;
+    }
+
+    //false when the current user has no location to search around
+    public boolean hasLocation() {
+        return origin != null;
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    public Map<String, Double> getMiles() {
+        return Collections.unmodifiableMap(miles);
+    }
+
+    public void loadMore(final Callback callback) {
+        if (!hasMore || running != null) {
+            return;
+        }
+        List<ParseQuery<ParseUser>> boxes = ringQueries(ring);
+        while (boxes.isEmpty() && ++ring < RING_KILOMETERS.length) {
+            //a ring clamped away at a pole
+            boxes = ringQueries(ring);
+        }
+        if (boxes.isEmpty()) {
+            hasMore = false;
+            callback.onPage(new ArrayList<ParseUser>(), false);
+            return;
+        }
+        ParseQuery<ParseUser> query = boxes.size() == 1 ? boxes.get(0) : ParseQuery.or(boxes);
+        List<String> excluded = new ArrayList<>();
+        excluded.add(currentUser.getObjectId());
+        try {
+            excluded.addAll(new User(currentUser).getFollowingIds());
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+        query.whereNotContainedIn("objectId", excluded);
+        if (afterId != null) {
+            query.whereGreaterThan("objectId", afterId);
+        }
+        query.addAscendingOrder("objectId");
+        query.setLimit(pageSize);
+        running = query;
+        query.findInBackground(new FindCallback<ParseUser>() {
+            @Override
+            public void done(List<ParseUser> page, ParseException e) {
+                running = null;
+                if (e != null) {
+                    Log.e(TAG, "Issue with getting nearby users", e);
+                    return;
+                }
+                List<ParseUser> nearby = new ArrayList<>();
+                for (ParseUser user : page) {
+                    ParseGeoPoint location = user.getParseGeoPoint(User.KEY_LOCATION);
+                    //the corners of the outer ring reach past the circle
+                    if (location == null || location.distanceInKilometersTo(origin) > MAX_KILOMETERS
+                            || !loaded.add(user.getObjectId())) {
+                        continue;
+                    }
+                    miles.put(user.getObjectId(), location.distanceInMilesTo(origin));
+                    nearby.add(user);
+                }
+                Collections.sort(nearby, new Comparator<ParseUser>() {
+                    @Override
+                    public int compare(ParseUser a, ParseUser b) {
+                        return Double.compare(miles.get(a.getObjectId()), miles.get(b.getObjectId()));
+                    }
+                });
+                if (page.size() == pageSize) {
+                    afterId = page.get(page.size() - 1).getObjectId();
+                } else {
+                    ring++;
+                    afterId = null;
+                }
+                hasMore = ring < RING_KILOMETERS.length;
+                if (nearby.isEmpty() && hasMore) {
+                    //nothing new in this part of the ring, the grid needs rows to scroll on
+                    loadMore(callback);
+                    return;
+                }
+                callback.onPage(nearby, hasMore);
+            }
+        });
+    }
+
+    //drops a running page, e.g. when the view goes away
+    public void cancel() {
+        if (running != null) {
+            running.cancel();
+            running = null;
+        }
+    }
+
+    //one query per box of the ring: the whole square for the first ring, after that the strips above, below, left
+    //and right of the ring inside it
+    private List<ParseQuery<ParseUser>> ringQueries(int ring) {
+        double latitude = origin.getLatitude();
+        double longitude = origin.getLongitude();
+        double outerLat = RING_KILOMETERS[ring] / KILOMETERS_PER_DEGREE_LATITUDE;
+        double outerLng = longitudeDegrees(RING_KILOMETERS[ring]);
+        List<double[]> rects = new ArrayList<>();
+        if (ring == 0) {
+            rects.add(new double[]{latitude - outerLat, longitude - outerLng, latitude + outerLat, longitude + outerLng});
+        } else {
+            double innerLat = RING_KILOMETERS[ring - 1] / KILOMETERS_PER_DEGREE_LATITUDE;
+            double innerLng = longitudeDegrees(RING_KILOMETERS[ring - 1]);
+            rects.add(new double[]{latitude - outerLat, longitude - outerLng, latitude - innerLat, longitude + outerLng});
+            rects.add(new double[]{latitude + innerLat, longitude - outerLng, latitude + outerLat, longitude + outerLng});
+            rects.add(new double[]{latitude - innerLat, longitude - outerLng, latitude + innerLat, longitude - innerLng});
+            rects.add(new double[]{latitude - innerLat, longitude + innerLng, latitude + innerLat, longitude + outerLng});
+        }
+        List<ParseQuery<ParseUser>> queries = new ArrayList<>();
+        for (double[] rect : rects) {
+            for (double[] box : GeoBoxes.split(rect[0], rect[1], rect[2], rect[3])) {
+                ParseQuery<ParseUser> query = ParseUser.getQuery();
+                query.whereWithinGeoBox(User.KEY_LOCATION, new ParseGeoPoint(box[0], box[1]), new ParseGeoPoint(box[2], box[3]));
+                queries.add(query);
+            }
+        }
+        return queries;
+    }
+
+    //half the width of the square at the current user's latitude, at most every longitude
+    private double longitudeDegrees(double kilometers) {
+        double cos = Math.max(0.01, Math.cos(Math.toRadians(origin.getLatitude())));
+        return Math.min(180, kilometers / (KILOMETERS_PER_DEGREE_LATITUDE * cos));
+    }
+}
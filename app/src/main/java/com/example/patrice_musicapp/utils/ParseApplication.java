@@ -2,18 +2,24 @@ package com.example.patrice_musicapp.utils;
 
 import android.app.Application;
 
+import androidx.annotation.NonNull;
+import androidx.work.Configuration;
+
 import com.example.patrice_musicapp.R;
 import com.example.patrice_musicapp.models.Event;
 import com.example.patrice_musicapp.models.Followers;
+import com.example.patrice_musicapp.models.Like;
 import com.example.patrice_musicapp.models.Message;
 import com.example.patrice_musicapp.models.Post;
 import com.parse.Parse;
 import com.parse.ParseObject;
 
+import java.util.concurrent.Executors;
+
 import okhttp3.OkHttpClient;
 import okhttp3.logging.HttpLoggingInterceptor;
 
-public class ParseApplication extends Application {
+public class ParseApplication extends Application implements Configuration.Provider {
     @Override
     public void onCreate() {
         super.onCreate();
@@ -34,18 +40,32 @@ public class ParseApplication extends Application {
         ParseObject.registerSubclass(Event.class);
         ParseObject.registerSubclass(Followers.class);
         ParseObject.registerSubclass(Message.class);
+        ParseObject.registerSubclass(Like.class);
 
         // set applicationId, and server server based on the values in the Heroku settings.
         // clientKey is not needed unless explicitly configured
         // any network interceptors must be added with the Configuration Builder given this syntax
         Parse.initialize(new Parse.Configuration.Builder(this)
+                .enableLocalDataStore() // lets FeedCache pin the last known pages to disk
                 .applicationId("patrice-music-app") // should correspond to APP_ID env variable
                 .clientKey(getResources().getString(R.string.MASTER_KEY))  // set explicitly unless clientKey is explicitly configured on Parse server
                 .clientBuilder(builder)
                 .server("https://patrice-music-app.herokuapp.com/parse").build());
 
+        FeedCache.initialize(this);
+
 
 
 
+    }
+
+    //WorkManager is started on first use with this instead of its own initializer (removed in the manifest).
+    //its executor bounds how many uploads run at once, the daily GenreAffinityStore refresh shares it
+    @NonNull
+    @Override
+    public Configuration getWorkManagerConfiguration() {
+        return new Configuration.Builder()
+                .setExecutor(Executors.newFixedThreadPool(UploadQueue.MAX_PARALLEL_UPLOADS))
+                .build();
     }
 }
@@ -0,0 +1,52 @@
+package com.example.patrice_musicapp.utils;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.load.Options;
+import com.bumptech.glide.load.model.GlideUrl;
+import com.bumptech.glide.load.model.ModelCache;
+import com.bumptech.glide.load.model.ModelLoader;
+import com.bumptech.glide.load.model.ModelLoaderFactory;
+import com.bumptech.glide.load.model.MultiModelLoaderFactory;
+import com.bumptech.glide.load.model.stream.BaseGlideUrlLoader;
+import com.bumptech.glide.request.target.Target;
+import com.example.patrice_musicapp.models.ParseImage;
+
+import java.io.InputStream;
+
+//loads a ParseImage as the smallest uploaded variant that covers the size glide is loading it at, so a list
+//thumbnail downloads and decodes the thumbnail instead of the full photo. registered in MusicAppGlideModule
+public class ParseImageLoader extends BaseGlideUrlLoader<ParseImage> {
+    private static final int MODEL_CACHE_SIZE = 200;
+
+    private ParseImageLoader(ModelLoader<GlideUrl, InputStream> urlLoader, ModelCache<ParseImage, GlideUrl> modelCache) {
+        super(urlLoader, modelCache);
+    }
+
+    @Override
+    protected String getUrl(ParseImage model, int width, int height, Options options) {
+        if (width == Target.SIZE_ORIGINAL || height == Target.SIZE_ORIGINAL) {
+            return model.getFullUrl();
+        }
+        return model.urlFor(width, height);
+    }
+
+    @Override
+    public boolean handles(@NonNull ParseImage model) {
+        return true;
+    }
+
+    public static class Factory implements ModelLoaderFactory<ParseImage, InputStream> {
+        private final ModelCache<ParseImage, GlideUrl> modelCache = new ModelCache<>(MODEL_CACHE_SIZE);
+
+        @NonNull
+        @Override
+        public ModelLoader<ParseImage, InputStream> build(@NonNull MultiModelLoaderFactory multiFactory) {
+            return new ParseImageLoader(multiFactory.build(GlideUrl.class, InputStream.class), modelCache);
+        }
+
+        @Override
+        public void teardown() {
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.example.patrice_musicapp.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//scores musicians for the current user on several signals at once: shared genres and instruments, distance, how
+//much they post, how recently they posted and how many of the people the user follows follow them. plain java on
+//purpose, Recommendations feeds it from parse and the unit tests from synthetic users.
+//every signal is kept per candidate next to the score, so a change to the viewer's profile only recomputes the
+//signals it touches, and a candidate added to the pool is scored on its own
+public class RecommendationEngine {
+    private static final double EARTH_RADIUS_KM = 6371;
+    //distance at which the distance signal is halved
+    private static final double HALF_SCORE_KM = 25;
+    //posts at which the activity signal is halved
+    private static final double HALF_SCORE_POSTS = 10;
+    private static final double RECENCY_HALF_LIFE_DAYS = 14;
+    //followers among the people the viewer follows at which the social signal is halved
+    private static final double HALF_SCORE_MUTUALS = 2;
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+    private static final int INITIAL_CAPACITY = 64;
+
+    public static class Weights {
+        public final double genres;
+        public final double instruments;
+        public final double distance;
+        public final double activity;
+        public final double recency;
+        public final double social;
+
+        public Weights(double genres, double instruments, double distance, double activity, double recency, double social) {
+            this.genres = genres;
+            this.instruments = instruments;
+            this.distance = distance;
+            this.activity = activity;
+            this.recency = recency;
+            this.social = social;
+        }
+
+        public static Weights defaults() {
+            return new Weights(0.3, 0.2, 0.2, 0.1, 0.1, 0.1);
+        }
+    }
+
+    //what the score depends on from the current user. genres and instruments are masks from Genres.maskOf and
+    //Instruments.maskOf, latitude and longitude are NaN without a location
+    public static class Viewer {
+        final long genres;
+        final long instruments;
+        final double latitude;
+        final double longitude;
+
+        public Viewer(long genres, long instruments, double latitude, double longitude) {
+            this.genres = genres;
+            this.instruments = instruments;
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+
+        boolean sameLocation(Viewer other) {
+            return Double.compare(latitude, other.latitude) == 0 && Double.compare(longitude, other.longitude) == 0;
+        }
+    }
+
+    //one musician. lastPostMillis is 0 if they never posted, latitude and longitude are NaN without a location
+    public static class Candidate {
+        final String id;
+        final long genres;
+        final long instruments;
+        final double latitude;
+        final double longitude;
+        final int postCount;
+        final long lastPostMillis;
+        final int followedByFollowing;
+
+        public Candidate(String id, long genres, long instruments, double latitude, double longitude,
+                         int postCount, long lastPostMillis, int followedByFollowing) {
+            this.id = id;
+            this.genres = genres;
+            this.instruments = instruments;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.postCount = postCount;
+            this.lastPostMillis = lastPostMillis;
+            this.followedByFollowing = followedByFollowing;
+        }
+
+        public String getId() {
+            return id;
+        }
+    }
+
+    private final Weights weights;
+    private final long now;
+    private Viewer viewer = new Viewer(0, 0, Double.NaN, Double.NaN);
+    //null to count only the genres both have
+    private GenreAffinity genreAffinity;
+    private final Map<String, Integer> slots = new HashMap<>();
+    //candidate and signals by slot, so rescoring walks flat arrays
+    private Candidate[] candidates = new Candidate[INITIAL_CAPACITY];
+    private double[] genreSignal = new double[INITIAL_CAPACITY];
+    private double[] instrumentSignal = new double[INITIAL_CAPACITY];
+    private double[] distanceSignal = new double[INITIAL_CAPACITY];
+    //these don't depend on the viewer, so they are worked out once per candidate
+    private double[] fixedScore = new double[INITIAL_CAPACITY];
+    private double[] scores = new double[INITIAL_CAPACITY];
+    private int size;
+
+    //now is the time recency is measured from
+    public RecommendationEngine(Weights weights, long now) {
+        this.weights = weights;
+        this.now = now;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    //genres are then scored by how alike they are rather than only when they are the same, only that signal is rescored
+    public void setGenreAffinity(GenreAffinity genreAffinity) {
+        this.genreAffinity = genreAffinity;
+        for (int i = 0; i < size; i++) {
+            genreSignal[i] = genres(viewer.genres, candidates[i].genres);
+            scores[i] = combine(i);
+        }
+    }
+
+    //rescores only the signals whose part of the viewer changed
+    public void setViewer(Viewer next) {
+        boolean genresChanged = next.genres != viewer.genres;
+        boolean instrumentsChanged = next.instruments != viewer.instruments;
+        boolean locationChanged = !next.sameLocation(viewer);
+        viewer = next;
+        if (!genresChanged && !instrumentsChanged && !locationChanged) {
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            Candidate candidate = candidates[i];
+            if (genresChanged) {
+                genreSignal[i] = genres(next.genres, candidate.genres);
+            }
+            if (instrumentsChanged) {
+                instrumentSignal[i] = overlap(next.instruments, candidate.instruments);
+            }
+            if (locationChanged) {
+                distanceSignal[i] = distance(next, candidate);
+            }
+            scores[i] = combine(i);
+        }
+    }
+
+    //adds the candidate, or replaces the one with the same id, and scores it
+    public void upsert(Candidate candidate) {
+        Integer slot = slots.get(candidate.id);
+        int i;
+        if (slot != null) {
+            i = slot;
+        } else {
+            i = size++;
+            ensureCapacity(size);
+            slots.put(candidate.id, i);
+        }
+        candidates[i] = candidate;
+        genreSignal[i] = genres(viewer.genres, candidate.genres);
+        instrumentSignal[i] = overlap(viewer.instruments, candidate.instruments);
+        distanceSignal[i] = distance(viewer, candidate);
+        fixedScore[i] = weights.activity * activity(candidate) + weights.recency * recency(candidate)
+                + weights.social * social(candidate);
+        scores[i] = combine(i);
+    }
+
+    public void remove(String id) {
+        Integer slot = slots.remove(id);
+        if (slot == null) {
+            return;
+        }
+        //the last candidate moves into the hole
+        int last = --size;
+        if (slot != last) {
+            candidates[slot] = candidates[last];
+            genreSignal[slot] = genreSignal[last];
+            instrumentSignal[slot] = instrumentSignal[last];
+            distanceSignal[slot] = distanceSignal[last];
+            fixedScore[slot] = fixedScore[last];
+            scores[slot] = scores[last];
+            slots.put(candidates[slot].id, slot);
+        }
+        candidates[last] = null;
+    }
+
+    //NaN if id is not in the pool
+    public double scoreOf(String id) {
+        Integer slot = slots.get(id);
+        return slot == null ? Double.NaN : scores[slot];
+    }
+
+    //ids of the k best candidates, best first, ties by id
+    public List<String> top(int k) {
+        TopK<Integer> best = new TopK<>(k, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int byScore = Double.compare(scores[b], scores[a]);
+                return byScore != 0 ? byScore : candidates[a].id.compareTo(candidates[b].id);
+            }
+        });
+        for (int i = 0; i < size; i++) {
+            best.offer(i);
+        }
+        List<String> ids = new ArrayList<>(k);
+        for (Integer slot : best.best()) {
+            ids.add(candidates[slot].id);
+        }
+        return ids;
+    }
+
+    private double combine(int i) {
+        return weights.genres * genreSignal[i] + weights.instruments * instrumentSignal[i]
+                + weights.distance * distanceSignal[i] + fixedScore[i];
+    }
+
+    private double genres(long viewerMask, long candidateMask) {
+        return genreAffinity != null ? genreAffinity.similarity(viewerMask, candidateMask) : overlap(viewerMask, candidateMask);
+    }
+
+    //the share of the viewer's genres or instruments the candidate has too
+    static double overlap(long viewerMask, long candidateMask) {
+        int mine = Long.bitCount(viewerMask);
+        return mine == 0 ? 0 : Long.bitCount(viewerMask & candidateMask) / (double) mine;
+    }
+
+    //1 next door, 0.5 at HALF_SCORE_KM, 0 without a location on either side
+    static double distance(Viewer viewer, Candidate candidate) {
+        if (Double.isNaN(viewer.latitude) || Double.isNaN(candidate.latitude)) {
+            return 0;
+        }
+        double km = kilometers(viewer.latitude, viewer.longitude, candidate.latitude, candidate.longitude);
+        return HALF_SCORE_KM / (HALF_SCORE_KM + km);
+    }
+
+    static double kilometers(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private static double activity(Candidate candidate) {
+        return candidate.postCount / (candidate.postCount + HALF_SCORE_POSTS);
+    }
+
+    private double recency(Candidate candidate) {
+        if (candidate.lastPostMillis <= 0) {
+            return 0;
+        }
+        double ageDays = Math.max(0, now - candidate.lastPostMillis) / (double) DAY_MILLIS;
+        return Math.pow(0.5, ageDays / RECENCY_HALF_LIFE_DAYS);
+    }
+
+    private static double social(Candidate candidate) {
+        return candidate.followedByFollowing / (candidate.followedByFollowing + HALF_SCORE_MUTUALS);
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= candidates.length) {
+            return;
+        }
+        int capacity = Math.max(needed, candidates.length * 2);
+        candidates = Arrays.copyOf(candidates, capacity);
+        genreSignal = Arrays.copyOf(genreSignal, capacity);
+        instrumentSignal = Arrays.copyOf(instrumentSignal, capacity);
+        distanceSignal = Arrays.copyOf(distanceSignal, capacity);
+        fixedScore = Arrays.copyOf(fixedScore, capacity);
+        scores = Arrays.copyOf(scores, capacity);
+    }
+}
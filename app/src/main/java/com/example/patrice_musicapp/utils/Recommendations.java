@@ -0,0 +1,292 @@
+package com.example.patrice_musicapp.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.patrice_musicapp.models.Genres;
+import com.example.patrice_musicapp.models.Instruments;
+import com.example.patrice_musicapp.models.Post;
+import com.example.patrice_musicapp.models.PostCountCursor;
+import com.example.patrice_musicapp.models.User;
+import com.parse.ParseException;
+import com.parse.ParseGeoPoint;
+import com.parse.ParseObject;
+import com.parse.ParseQuery;
+import com.parse.ParseUser;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//the "for you" grid of discover. a pool of up to MAX_POOL musicians is built a page at a time in the background,
+//the nearest ones first and then the most active, paged by PostCountCursor, and scored by a RecommendationEngine.
+//the pool is kept for the session, so discover gets its grid back straight away when it is recreated, and a
+//profile edit only rescores it
+public class Recommendations {
+    public static final String TAG = Recommendations.class.getSimpleName();
+    private static final int PAGE_SIZE = 100;
+    private static final int MAX_POOL = 500;
+    //rows of the following array read for the social signal
+    private static final int MAX_FOLLOWING = 1000;
+    //posts read for the users of a page who have no lastPostAt
+    private static final int MAX_LATEST_POSTS = 1000;
+    private static Recommendations instance;
+
+    public interface Callback {
+        //on the UI thread, best first. called again as the pool grows or is rescored
+        void onRecommendations(List<ParseUser> users);
+    }
+
+    private RecommendationEngine engine;
+    //objectId -> the user behind each candidate
+    private final Map<String, ParseUser> users = new HashMap<>();
+    private String builtForUserId;
+    private boolean building;
+    private Callback callback;
+    private int count;
+
+    public static synchronized Recommendations get() {
+        if (instance == null) {
+            instance = new Recommendations();
+        }
+        return instance;
+    }
+
+    //calls back with the count best users now if the pool has any, and again after every page still to come
+    public synchronized void load(Context context, int count, Callback callback) {
+        this.count = count;
+        this.callback = callback;
+        ParseUser currentUser = ParseUser.getCurrentUser();
+        if (currentUser == null) {
+            return;
+        }
+        if (!currentUser.getObjectId().equals(builtForUserId)) {
+            //someone else logged in, their pool starts over
+            engine = new RecommendationEngine(RecommendationEngine.Weights.defaults(), System.currentTimeMillis());
+            engine.setGenreAffinity(GenreAffinityStore.get(context).getAffinity());
+            users.clear();
+            builtForUserId = currentUser.getObjectId();
+            building = false;
+        }
+        if (engine.size() > 0) {
+            deliver();
+        }
+        if (!building && engine.size() == 0) {
+            building = true;
+            build(currentUser);
+        }
+    }
+
+    //stops the calls to callback, e.g. when the view goes away
+    public synchronized void stopListening(Callback callback) {
+        if (this.callback == callback) {
+            this.callback = null;
+        }
+    }
+
+    //after the current user's genres, instruments or location changed, only what depends on them is rescored
+    public void onProfileEdited() {
+        AppExecutors.background().execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (Recommendations.this) {
+                    ParseUser currentUser = ParseUser.getCurrentUser();
+                    if (engine == null || currentUser == null || !currentUser.getObjectId().equals(builtForUserId)) {
+                        return;
+                    }
+                    engine.setViewer(viewerOf(currentUser));
+                    deliver();
+                }
+            }
+        });
+    }
+
+    //after the GenreAffinityStore loaded or refreshed the table, the genre signal cached per candidate is rescored
+    public void onGenreAffinityChanged(final GenreAffinity affinity) {
+        AppExecutors.background().execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (Recommendations.this) {
+                    if (engine == null) {
+                        return;
+                    }
+                    engine.setGenreAffinity(affinity);
+                    deliver();
+                }
+            }
+        });
+    }
+
+    private void build(final ParseUser currentUser) {
+        final RecommendationEngine pool = engine;
+        AppExecutors.background().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    synchronized (Recommendations.this) {
+                        pool.setViewer(viewerOf(currentUser));
+                    }
+                    List<String> excluded = new ArrayList<>(new User(currentUser).getFollowingIds());
+                    Map<String, Integer> mutuals = followedByFollowing(excluded);
+                    excluded.add(currentUser.getObjectId());
+
+                    ParseGeoPoint location = new User(currentUser).getLocation();
+                    if (location != null) {
+                        ParseQuery<ParseUser> nearest = ParseUser.getQuery();
+                        nearest.whereNotContainedIn("objectId", excluded);
+                        nearest.whereWithinKilometers(User.KEY_LOCATION, location, NearbyUsers.MAX_KILOMETERS);
+                        nearest.setLimit(PAGE_SIZE);
+                        addPage(pool, nearest.find(), mutuals);
+                    }
+                    PostCountCursor cursor = null;
+                    do {
+                        ParseQuery<ParseUser> active = PostCountCursor.apply(notIn(excluded), notIn(excluded), cursor);
+                        PostCountCursor.order(active);
+                        active.setLimit(PAGE_SIZE);
+                        List<ParseUser> page = active.find();
+                        addPage(pool, page, mutuals);
+                        cursor = PostCountCursor.next(page, PAGE_SIZE);
+                    } while (cursor != null && poolSize(pool) < MAX_POOL);
+                } catch (ParseException | JSONException e) {
+                    Log.e(TAG, "Issue with building recommendations", e);
+                } finally {
+                    synchronized (Recommendations.this) {
+                        if (engine == pool) {
+                            building = false;
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    private static ParseQuery<ParseUser> notIn(List<String> excluded) {
+        ParseQuery<ParseUser> query = ParseUser.getQuery();
+        query.whereNotContainedIn("objectId", excluded);
+        return query;
+    }
+
+    private synchronized int poolSize(RecommendationEngine pool) {
+        return pool.size();
+    }
+
+    private void addPage(RecommendationEngine pool, List<ParseUser> page, Map<String, Integer> mutuals) throws ParseException {
+        Map<String, Long> lastPosts = lastPostTimes(page);
+        synchronized (this) {
+            if (engine != pool) {
+                //a different user logged in meanwhile
+                return;
+            }
+            for (ParseUser user : page) {
+                if (engine.size() >= MAX_POOL && !users.containsKey(user.getObjectId())) {
+                    break;
+                }
+                Long lastPost = lastPosts.get(user.getObjectId());
+                Integer followers = mutuals.get(user.getObjectId());
+                engine.upsert(candidateOf(user, lastPost == null ? 0 : lastPost, followers == null ? 0 : followers));
+                users.put(user.getObjectId(), user);
+            }
+            deliver();
+        }
+    }
+
+    //how many of the followed users follow each user they follow
+    private static Map<String, Integer> followedByFollowing(List<String> followingIds) throws ParseException, JSONException {
+        Map<String, Integer> counts = new HashMap<>();
+        if (followingIds.isEmpty()) {
+            return counts;
+        }
+        ParseQuery<ParseUser> followed = ParseUser.getQuery();
+        followed.whereContainedIn("objectId", followingIds);
+        followed.selectKeys(Arrays.asList(User.KEY_FOLLOWING));
+        followed.setLimit(MAX_FOLLOWING);
+        for (ParseUser user : followed.find()) {
+            JSONArray following = user.getJSONArray(User.KEY_FOLLOWING);
+            if (following == null) {
+                continue;
+            }
+            for (int i = 0; i < following.length(); i++) {
+                String objectId = ((JSONObject) following.get(i)).getString("objectId");
+                Integer count = counts.get(objectId);
+                counts.put(objectId, count == null ? 1 : count + 1);
+            }
+        }
+        return counts;
+    }
+
+    //objectId -> when the user last posted, for the users of one page. it is read from lastPostAt, which the
+    //backfillUserPostStats cloud job fills in for users who only posted before it existed. any still without it are
+    //looked up together in one query, newest posts first, so the first post seen for a user is their latest. one
+    //who posted only before the MAX_LATEST_POSTS newest posts of the rest counts as not having posted
+    private static Map<String, Long> lastPostTimes(List<ParseUser> page) throws ParseException {
+        Map<String, Long> lastPosts = new HashMap<>();
+        List<ParseUser> missing = new ArrayList<>();
+        for (ParseUser parseUser : page) {
+            User user = new User(parseUser);
+            Date lastPostAt = user.getLastPostAt();
+            if (lastPostAt != null) {
+                lastPosts.put(parseUser.getObjectId(), lastPostAt.getTime());
+            } else if (user.getPostCount() > 0) {
+                missing.add(parseUser);
+            }
+        }
+        if (missing.isEmpty()) {
+            return lastPosts;
+        }
+        ParseQuery<Post> latest = ParseQuery.getQuery(Post.class);
+        latest.whereContainedIn(Post.KEY_USER, missing);
+        latest.selectKeys(Arrays.asList(Post.KEY_USER));
+        latest.addDescendingOrder(ParseObject.KEY_CREATED_AT);
+        latest.setLimit(MAX_LATEST_POSTS);
+        for (Post post : latest.find()) {
+            String objectId = post.getParseUser(Post.KEY_USER).getObjectId();
+            if (!lastPosts.containsKey(objectId)) {
+                lastPosts.put(objectId, post.getCreatedAt().getTime());
+            }
+        }
+        return lastPosts;
+    }
+
+    private static RecommendationEngine.Viewer viewerOf(ParseUser currentUser) {
+        User user = new User(currentUser);
+        ParseGeoPoint location = user.getLocation();
+        return new RecommendationEngine.Viewer(Genres.maskOf(user.getGenres()), Instruments.maskOf(user.getInstruments()),
+                location != null ? location.getLatitude() : Double.NaN,
+                location != null ? location.getLongitude() : Double.NaN);
+    }
+
+    private static RecommendationEngine.Candidate candidateOf(ParseUser parseUser, long lastPost, int followedByFollowing) {
+        User user = new User(parseUser);
+        ParseGeoPoint location = user.getLocation();
+        return new RecommendationEngine.Candidate(parseUser.getObjectId(),
+                Genres.maskOf(user.getGenres()), Instruments.maskOf(user.getInstruments()),
+                location != null ? location.getLatitude() : Double.NaN,
+                location != null ? location.getLongitude() : Double.NaN,
+                parseUser.getInt(User.KEY_POST_COUNT), lastPost, followedByFollowing);
+    }
+
+    //called holding the lock, hands the top users to the UI thread
+    private void deliver() {
+        final Callback target = callback;
+        if (target == null) {
+            return;
+        }
+        final List<ParseUser> top = new ArrayList<>();
+        for (String objectId : engine.top(count)) {
+            top.add(users.get(objectId));
+        }
+        AppExecutors.mainThread().execute(new Runnable() {
+            @Override
+            public void run() {
+                target.onRecommendations(top);
+            }
+        });
+    }
+}
@@ -0,0 +1,568 @@
+package com.example.patrice_musicapp.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.patrice_musicapp.models.Event;
+import com.example.patrice_musicapp.models.Genres;
+import com.example.patrice_musicapp.models.Instruments;
+import com.example.patrice_musicapp.models.PageCursor;
+import com.example.patrice_musicapp.models.User;
+import com.parse.ParseException;
+import com.parse.ParseObject;
+import com.parse.ParseQuery;
+import com.parse.ParseUser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+//on-device typeahead for discover: usernames and names of users, event names, and the genre and instrument tags
+//(on their own and on the users that play them). the terms are kept sorted so a prefix is a binary search and a
+//short scan, and a typo is found through the trigrams the query shares with a term, checked with a bounded edit
+//distance. sync pulls the users and events changed since the last sync by an (updatedAt, objectId) PageCursor, so
+//rows saved in the same millisecond across a page boundary are not skipped. the file is loaded before the first
+//sync can run, so an old file never overwrites what a sync brought. the terms are written to a
+//small gzipped file and the rows, cut down to the indexed fields and what a result row shows, are pinned in the
+//local datastore to show the results without the network. loading and syncing run on AppExecutors.sync so a
+//first sync of the whole user table doesn't hold up other background work. deleted users and events stay in the
+//index until the app data is cleared
+public class SearchIndex {
+    public static final String TAG = SearchIndex.class.getSimpleName();
+    private static final String FILE_NAME = "search_index.bin";
+    private static final int VERSION = 3;
+    private static final String PIN = "searchIndex";
+    private static final int PAGE_SIZE = 1000;
+    //prefix matches looked at per lookup, so a one letter query stays fast
+    private static final int MAX_PREFIX_SCAN = 256;
+    private static final int MIN_FUZZY_LENGTH = 3;
+    //the indexed fields, and the avatar the result row shows
+    private static final List<String> USER_KEYS = Collections.unmodifiableList(Arrays.asList(User.KEY_USERNAME,
+            User.KEY_NAME, User.KEY_USERNAME_LOWER, User.KEY_NAME_LOWER, User.KEY_GENRE, User.KEY_INSTRUMENT,
+            User.KEY_PROFILE_IMAGE));
+    //the indexed name, and what the event result row can't bind without
+    private static final List<String> EVENT_KEYS = Collections.unmodifiableList(Arrays.asList(Event.KEY_NAME,
+            Event.KEY_NAME_LOWER, Event.KEY_DATE, Event.KEY_LOCATION, Event.KEY_IMAGE, Event.KEY_IMAGE_THUMB,
+            Event.KEY_IMAGE_FEED, Event.KEY_HOST, Event.KEY_HOST + "." + User.KEY_USERNAME,
+            Event.KEY_HOST + "." + User.KEY_PROFILE_IMAGE));
+    private static SearchIndex instance;
+
+    public enum Kind { USER, EVENT, GENRE, INSTRUMENT }
+
+    //best first
+    public enum Match { EXACT, PREFIX, FUZZY }
+
+    public static class Hit {
+        public final Kind kind;
+        //objectId for users and events, the enum value for genres and instruments
+        public final String id;
+        public final String term;
+        public final Match match;
+        //edits between the query and the start of term, 0 unless fuzzy
+        public final int distance;
+        //found by a genre or instrument of a user rather than by its name
+        public final boolean tag;
+
+        private Hit(Kind kind, String id, String term, Match match, int distance, boolean tag) {
+            this.kind = kind;
+            this.id = id;
+            this.term = term;
+            this.match = match;
+            this.distance = distance;
+            this.tag = tag;
+        }
+    }
+
+    //one user, event or tag and the terms it is found by
+    private static class Entity {
+        final Kind kind;
+        final String id;
+        final String[] names;
+        final String[] tags;
+
+        Entity(Kind kind, String id, String[] names, String[] tags) {
+            this.kind = kind;
+            this.id = id;
+            this.names = names;
+            this.tags = tags;
+        }
+    }
+
+    //what lookups read, rebuilt whole after a sync and swapped in
+    private static class Snapshot {
+        final String[] terms;
+        final int[] owners;
+        final boolean[] tags;
+        final Entity[] entities;
+        final Map<String, int[]> grams;
+
+        Snapshot(String[] terms, int[] owners, boolean[] tags, Entity[] entities, Map<String, int[]> grams) {
+            this.terms = terms;
+            this.owners = owners;
+            this.tags = tags;
+            this.entities = entities;
+            this.grams = grams;
+        }
+    }
+
+    private static final Comparator<Hit> BEST_FIRST = new Comparator<Hit>() {
+        @Override
+        public int compare(Hit a, Hit b) {
+            if (a.match != b.match) {
+                return a.match.compareTo(b.match);
+            }
+            if (a.tag != b.tag) {
+                return a.tag ? 1 : -1;
+            }
+            if (a.distance != b.distance) {
+                return a.distance - b.distance;
+            }
+            if (a.term.length() != b.term.length()) {
+                return a.term.length() - b.term.length();
+            }
+            return a.term.compareTo(b.term);
+        }
+    };
+
+    private final File file;
+    //users and events by kind and objectId, only touched on the sync thread
+    private final Map<String, Entity> entities = new LinkedHashMap<>();
+    //objectId -> User or Event to show for a hit
+    private final Map<String, Object> rows = new ConcurrentHashMap<>();
+    private final List<Entity> tagEntities = new ArrayList<>();
+    private volatile Snapshot snapshot;
+    private volatile boolean warm;
+    private final AtomicBoolean syncing = new AtomicBoolean();
+    //guarded by the instance lock like the sync state
+    private boolean loaded;
+    private PageCursor userCursor;
+    private PageCursor eventCursor;
+
+    private SearchIndex(Context context) {
+        file = new File(context.getApplicationContext().getFilesDir(), FILE_NAME);
+        for (Genres genre : Genres.values()) {
+            tagEntities.add(new Entity(Kind.GENRE, genre.name(), new String[]{lower(genre.getLabel())}, new String[0]));
+        }
+        for (Instruments instrument : Instruments.values()) {
+            tagEntities.add(new Entity(Kind.INSTRUMENT, instrument.name(), new String[]{instrumentTerm(instrument.name())}, new String[0]));
+        }
+        snapshot = build(tagEntities);
+        AppExecutors.sync().execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (SearchIndex.this) {
+                    loadOnce();
+                }
+            }
+        });
+    }
+
+    public static synchronized SearchIndex get(Context context) {
+        if (instance == null) {
+            instance = new SearchIndex(context);
+        }
+        return instance;
+    }
+
+    //false until the index has users and events from at least one sync, search the server until then
+    public boolean isWarm() {
+        return warm;
+    }
+
+    //pulls what changed since the last sync in the background, e.g. whenever discover opens
+    public void sync() {
+        if (!syncing.compareAndSet(false, true)) {
+            return;
+        }
+        AppExecutors.sync().execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (SearchIndex.this) {
+                    loadOnce();
+                    try {
+                        boolean changed = syncUsers();
+                        changed |= syncEvents();
+                        if (changed) {
+                            save();
+                            snapshot = build(allEntities());
+                        }
+                        warm = userCursor != null || eventCursor != null;
+                    } catch (ParseException e) {
+                        Log.e(TAG, "Issue with syncing the search index", e);
+                    } finally {
+                        syncing.set(false);
+                    }
+                }
+            }
+        });
+    }
+
+    //the k best hits for query, one per user, event or tag. safe to call on the UI thread
+    public List<Hit> search(String query, int k) {
+        String q = SearchService.normalize(query);
+        if (q.isEmpty() || k <= 0) {
+            return Collections.emptyList();
+        }
+        Snapshot s = snapshot;
+        Map<Integer, Hit> best = new HashMap<>();
+
+        int start = lowerBound(s.terms, q);
+        for (int i = start; i < s.terms.length && i - start < MAX_PREFIX_SCAN && s.terms[i].startsWith(q); i++) {
+            Match match = s.terms[i].length() == q.length() ? Match.EXACT : Match.PREFIX;
+            offer(best, s, i, match, 0);
+        }
+
+        if (best.size() < k && q.length() >= MIN_FUZZY_LENGTH) {
+            int maxEdits = q.length() >= 6 ? 2 : 1;
+            List<String> queryGrams = grams(q);
+            //an edit changes at most three trigrams
+            int minShared = Math.max(1, queryGrams.size() - 3 * maxEdits);
+            Map<Integer, Integer> shared = new HashMap<>();
+            for (String gram : queryGrams) {
+                int[] postings = s.grams.get(gram);
+                if (postings == null) {
+                    continue;
+                }
+                for (int term : postings) {
+                    Integer count = shared.get(term);
+                    shared.put(term, count == null ? 1 : count + 1);
+                }
+            }
+            for (Map.Entry<Integer, Integer> candidate : shared.entrySet()) {
+                if (candidate.getValue() < minShared) {
+                    continue;
+                }
+                int term = candidate.getKey();
+                int distance = prefixDistance(q, s.terms[term], maxEdits);
+                if (distance > 0 && distance <= maxEdits) {
+                    offer(best, s, term, Match.FUZZY, distance);
+                }
+            }
+        }
+
+        List<Hit> hits = new ArrayList<>(best.values());
+        Collections.sort(hits, BEST_FIRST);
+        return hits.size() > k ? new ArrayList<>(hits.subList(0, k)) : hits;
+    }
+
+    //the User or Event a hit stands for, null for tags and for rows the local datastore no longer has
+    public Object rowFor(Hit hit) {
+        if (hit.kind != Kind.USER && hit.kind != Kind.EVENT) {
+            return null;
+        }
+        return rows.get(hit.id);
+    }
+
+    private static void offer(Map<Integer, Hit> best, Snapshot s, int term, Match match, int distance) {
+        Entity entity = s.entities[s.owners[term]];
+        Hit hit = new Hit(entity.kind, entity.id, s.terms[term], match, distance, s.tags[term]);
+        Hit current = best.get(s.owners[term]);
+        if (current == null || BEST_FIRST.compare(hit, current) < 0) {
+            best.put(s.owners[term], hit);
+        }
+    }
+
+    private List<Entity> allEntities() {
+        List<Entity> all = new ArrayList<>(tagEntities);
+        all.addAll(entities.values());
+        return all;
+    }
+
+    private boolean syncUsers() throws ParseException {
+        boolean changed = false;
+        while (true) {
+            ParseQuery<ParseUser> query = PageCursor.after(ParseUser.getQuery(), ParseUser.getQuery(),
+                    PageCursor.KEY_UPDATED_AT, userCursor);
+            query.selectKeys(USER_KEYS);
+            PageCursor.orderAfter(query, PageCursor.KEY_UPDATED_AT);
+            query.setLimit(PAGE_SIZE);
+            List<ParseUser> page = query.find();
+            for (ParseUser parseUser : page) {
+                User user = new User(parseUser);
+                List<String> tags = new ArrayList<>();
+                if (user.getGenres() != null) {
+                    for (String genre : user.getGenres()) {
+                        tags.add(lower(Genres.labelOf(genre)));
+                    }
+                }
+                if (user.getInstruments() != null) {
+                    for (String instrument : user.getInstruments()) {
+                        tags.add(instrumentTerm(instrument));
+                    }
+                }
+                List<String> names = new ArrayList<>();
+                if (parseUser.getUsername() != null) {
+                    names.add(lower(parseUser.getUsername()));
+                }
+                if (user.getName() != null) {
+                    names.add(lower(user.getName()));
+                }
+                put(new Entity(Kind.USER, parseUser.getObjectId(), names.toArray(new String[0]), tags.toArray(new String[0])));
+                rows.put(parseUser.getObjectId(), user);
+                changed = true;
+            }
+            ParseObject.pinAll(PIN, page);
+            userCursor = PageCursor.last(page, PageCursor.KEY_UPDATED_AT, userCursor);
+            if (page.size() < PAGE_SIZE) {
+                return changed;
+            }
+        }
+    }
+
+    private boolean syncEvents() throws ParseException {
+        boolean changed = false;
+        while (true) {
+            ParseQuery<Event> query = PageCursor.after(ParseQuery.getQuery(Event.class), ParseQuery.getQuery(Event.class),
+                    PageCursor.KEY_UPDATED_AT, eventCursor);
+            query.include(Event.KEY_HOST);
+            query.selectKeys(EVENT_KEYS);
+            PageCursor.orderAfter(query, PageCursor.KEY_UPDATED_AT);
+            query.setLimit(PAGE_SIZE);
+            List<Event> page = query.find();
+            for (Event event : page) {
+                String[] names = event.getName() != null ? new String[]{lower(event.getName())} : new String[0];
+                put(new Entity(Kind.EVENT, event.getObjectId(), names, new String[0]));
+                rows.put(event.getObjectId(), event);
+                changed = true;
+            }
+            ParseObject.pinAll(PIN, page);
+            eventCursor = PageCursor.last(page, PageCursor.KEY_UPDATED_AT, eventCursor);
+            if (page.size() < PAGE_SIZE) {
+                return changed;
+            }
+        }
+    }
+
+    private void put(Entity entity) {
+        entities.put(entity.kind.name() + ":" + entity.id, entity);
+    }
+
+    //whichever of the constructor's load and the first sync gets the lock first loads the file
+    private void loadOnce() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        load();
+    }
+
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))));
+            try {
+                if (in.readInt() != VERSION) {
+                    //an older index, its pinned rows may be whole users and events. the next sync pins them again
+                    ParseObject.unpinAll(PIN);
+                    return;
+                }
+                userCursor = PageCursor.read(in);
+                eventCursor = PageCursor.read(in);
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    Kind kind = Kind.values()[in.readByte()];
+                    String id = in.readUTF();
+                    put(new Entity(kind, id, readTerms(in), readTerms(in)));
+                }
+            } finally {
+                in.close();
+            }
+            //the rows to show, pinned by earlier syncs
+            for (ParseUser parseUser : ParseUser.getQuery().fromPin(PIN).find()) {
+                rows.put(parseUser.getObjectId(), new User(parseUser));
+            }
+            for (Event event : ParseQuery.getQuery(Event.class).fromPin(PIN).include(Event.KEY_HOST).find()) {
+                rows.put(event.getObjectId(), event);
+            }
+            snapshot = build(allEntities());
+            warm = userCursor != null || eventCursor != null;
+        } catch (IOException | ParseException | RuntimeException e) {
+            //a corrupt or old index starts over with a full sync
+            Log.e(TAG, "Issue with loading the search index", e);
+            entities.clear();
+            rows.clear();
+            userCursor = null;
+            eventCursor = null;
+        }
+    }
+
+    private void save() {
+        File partial = new File(file.getParentFile(), FILE_NAME + ".part");
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(partial))));
+            try {
+                out.writeInt(VERSION);
+                PageCursor.write(out, userCursor);
+                PageCursor.write(out, eventCursor);
+                out.writeInt(entities.size());
+                for (Entity entity : entities.values()) {
+                    out.writeByte(entity.kind.ordinal());
+                    out.writeUTF(entity.id);
+                    writeTerms(out, entity.names);
+                    writeTerms(out, entity.tags);
+                }
+            } finally {
+                out.close();
+            }
+            if (!partial.renameTo(file)) {
+                Log.e(TAG, "Issue with replacing the search index");
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Issue with saving the search index", e);
+        }
+    }
+
+    private static String[] readTerms(DataInputStream in) throws IOException {
+        String[] terms = new String[in.readUnsignedShort()];
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = in.readUTF();
+        }
+        return terms;
+    }
+
+    private static void writeTerms(DataOutputStream out, String[] terms) throws IOException {
+        out.writeShort(terms.length);
+        for (String term : terms) {
+            out.writeUTF(term);
+        }
+    }
+
+    private static Snapshot build(List<Entity> entities) {
+        final List<String> terms = new ArrayList<>();
+        List<Integer> owners = new ArrayList<>();
+        List<Boolean> tags = new ArrayList<>();
+        for (int e = 0; e < entities.size(); e++) {
+            for (String name : entities.get(e).names) {
+                terms.add(name);
+                owners.add(e);
+                tags.add(false);
+            }
+            for (String tag : entities.get(e).tags) {
+                terms.add(tag);
+                owners.add(e);
+                tags.add(true);
+            }
+        }
+        Integer[] order = new Integer[terms.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return terms.get(a).compareTo(terms.get(b));
+            }
+        });
+
+        String[] sortedTerms = new String[order.length];
+        int[] sortedOwners = new int[order.length];
+        boolean[] sortedTags = new boolean[order.length];
+        Map<String, List<Integer>> postings = new HashMap<>();
+        for (int i = 0; i < order.length; i++) {
+            sortedTerms[i] = terms.get(order[i]);
+            sortedOwners[i] = owners.get(order[i]);
+            sortedTags[i] = tags.get(order[i]);
+            for (String gram : grams(sortedTerms[i])) {
+                List<Integer> list = postings.get(gram);
+                if (list == null) {
+                    list = new ArrayList<>();
+                    postings.put(gram, list);
+                }
+                list.add(i);
+            }
+        }
+        Map<String, int[]> grams = new HashMap<>(postings.size() * 2);
+        for (Map.Entry<String, List<Integer>> entry : postings.entrySet()) {
+            int[] list = new int[entry.getValue().size()];
+            for (int i = 0; i < list.length; i++) {
+                list[i] = entry.getValue().get(i);
+            }
+            grams.put(entry.getKey(), list);
+        }
+        return new Snapshot(sortedTerms, sortedOwners, sortedTags, entities.toArray(new Entity[0]), grams);
+    }
+
+    //distinct trigrams of the term with a start marker, so the first letters count as well
+    static List<String> grams(String term) {
+        String padded = "$" + term;
+        List<String> grams = new ArrayList<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            String gram = padded.substring(i, i + 3);
+            if (!grams.contains(gram)) {
+                grams.add(gram);
+            }
+        }
+        return grams;
+    }
+
+    //fewest edits turning query into some prefix of term, anything above maxEdits is reported as maxEdits + 1
+    static int prefixDistance(String query, String term, int maxEdits) {
+        int[] previous = new int[term.length() + 1];
+        int[] row = new int[term.length() + 1];
+        for (int j = 0; j <= term.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= query.length(); i++) {
+            row[0] = i;
+            int rowMin = row[0];
+            for (int j = 1; j <= term.length(); j++) {
+                int substitute = previous[j - 1] + (query.charAt(i - 1) == term.charAt(j - 1) ? 0 : 1);
+                row[j] = Math.min(substitute, Math.min(previous[j], row[j - 1]) + 1);
+                rowMin = Math.min(rowMin, row[j]);
+            }
+            if (rowMin > maxEdits) {
+                return maxEdits + 1;
+            }
+            int[] swap = previous;
+            previous = row;
+            row = swap;
+        }
+        int distance = maxEdits + 1;
+        for (int value : previous) {
+            distance = Math.min(distance, value);
+        }
+        return distance;
+    }
+
+    private static int lowerBound(String[] terms, String key) {
+        int low = 0;
+        int high = terms.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (terms[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static String lower(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    private static String instrumentTerm(String instrument) {
+        return lower(instrument.replace("_", " "));
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.patrice_musicapp.utils;
+
+import com.example.patrice_musicapp.models.Event;
+import com.example.patrice_musicapp.models.Genres;
+import com.example.patrice_musicapp.models.Post;
+import com.example.patrice_musicapp.models.User;
+import com.parse.ParseObject;
+import com.parse.ParseUser;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+//puts the users, events and posts SearchService finds for one query into one ranked list. each row is scored on how
+//well it matches the query, its kind, how recent it is and whether the current user follows it or its author, and
+//a row that comes back from more than one source is kept once. results that come in late are ranked in below the
+//rows already on screen, which keep their places
+public class SearchResultMerger {
+    private static final double EXACT = 1.0;
+    private static final double PREFIX = 0.7;
+    private static final double FUZZY = 0.4;
+    //e.g. a post found by a genre the text only loosely matches
+    private static final double NO_MATCH = 0.2;
+    private static final double USER_WEIGHT = 1.0;
+    private static final double EVENT_WEIGHT = 0.9;
+    private static final double POST_WEIGHT = 0.8;
+    private static final double RECENCY_WEIGHT = 0.2;
+    private static final double SOCIAL_WEIGHT = 0.3;
+    private static final double RECENCY_HALF_LIFE_DAYS = 30;
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    private String query = "";
+    private Set<String> following = Collections.emptySet();
+    private String currentUserId;
+    //the list handed out last, best first apart from the rows that were kept in place
+    private final List<Object> rows = new ArrayList<>();
+    private final Map<String, Double> scores = new HashMap<>();
+    //key -> when the row first came in, breaks ties so equal rows keep their order
+    private final Map<String, Integer> arrivals = new HashMap<>();
+
+    //starts over for a new query. following holds the objectIds of the users the current user follows
+    public void reset(String query, Collection<String> following, ParseUser currentUser) {
+        this.query = SearchService.normalize(query);
+        this.following = new HashSet<>(following);
+        this.currentUserId = currentUser != null ? currentUser.getObjectId() : null;
+        rows.clear();
+        scores.clear();
+        arrivals.clear();
+    }
+
+    //adds matches to the rows of the current query and returns the whole list to show. the first stableCount rows
+    //of the last list, e.g. the ones on screen, stay where they are
+    public List<Object> merge(List<Object> matches, int stableCount) {
+        int stable = Math.max(0, Math.min(stableCount, rows.size()));
+        List<Object> tail = new ArrayList<>(rows.subList(stable, rows.size()));
+
+        for (Object match : matches) {
+            String key = keyOf(match);
+            if (key == null) {
+                continue;
+            }
+            double score = score(match);
+            Double known = scores.get(key);
+            if (known == null) {
+                arrivals.put(key, arrivals.size());
+                scores.put(key, score);
+                tail.add(match);
+            } else if (score > known) {
+                //the same row from a source that matched it better, only moves if it's not on screen yet
+                scores.put(key, score);
+            }
+        }
+
+        Collections.sort(tail, new Comparator<Object>() {
+            @Override
+            public int compare(Object a, Object b) {
+                String keyA = keyOf(a);
+                String keyB = keyOf(b);
+                int byScore = Double.compare(scores.get(keyB), scores.get(keyA));
+                return byScore != 0 ? byScore : arrivals.get(keyA) - arrivals.get(keyB);
+            }
+        });
+        List<Object> merged = new ArrayList<>(rows.subList(0, stable));
+        merged.addAll(tail);
+        rows.clear();
+        rows.addAll(merged);
+        return new ArrayList<>(merged);
+    }
+
+    private double score(Object row) {
+        double match;
+        double weight;
+        Date date;
+        boolean followed;
+        if (row instanceof User) {
+            User user = (User) row;
+            match = Math.max(matchOf(user.getUsername()), matchOf(user.getName()));
+            weight = USER_WEIGHT;
+            date = user.getParseUser().getUpdatedAt();
+            followed = isFollowed(user.getParseUser());
+        } else if (row instanceof Event) {
+            Event event = (Event) row;
+            match = matchOf(event.getName());
+            weight = EVENT_WEIGHT;
+            date = event.getUpdatedAt();
+            followed = isFollowed(event.getHost());
+        } else {
+            Post post = (Post) row;
+            match = NO_MATCH;
+            List<String> genres = post.getGenreFilters();
+            if (genres != null) {
+                for (String genre : genres) {
+                    match = Math.max(match, matchOf(Genres.labelOf(genre)));
+                }
+            }
+            weight = POST_WEIGHT;
+            date = post.getCreatedAt();
+            followed = isFollowed(post.getUser());
+        }
+        return match * weight + RECENCY_WEIGHT * recency(date) + (followed ? SOCIAL_WEIGHT : 0);
+    }
+
+    //how text matches the query as a whole or at the start of one of its words
+    private double matchOf(String text) {
+        if (text == null || query.isEmpty()) {
+            return NO_MATCH;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        if (lower.equals(query)) {
+            return EXACT;
+        }
+        if (lower.startsWith(query) || lower.contains(" " + query)) {
+            return PREFIX;
+        }
+        int maxEdits = query.length() >= 6 ? 2 : 1;
+        if (query.length() >= 3 && SearchIndex.prefixDistance(query, lower, maxEdits) <= maxEdits) {
+            return FUZZY;
+        }
+        return NO_MATCH;
+    }
+
+    private static double recency(Date date) {
+        if (date == null) {
+            return 0;
+        }
+        double ageDays = Math.max(0, System.currentTimeMillis() - date.getTime()) / (double) DAY_MILLIS;
+        return Math.pow(0.5, ageDays / RECENCY_HALF_LIFE_DAYS);
+    }
+
+    //the user is followed, or is the current user
+    private boolean isFollowed(ParseUser user) {
+        if (user == null || user.getObjectId() == null) {
+            return false;
+        }
+        return following.contains(user.getObjectId()) || user.getObjectId().equals(currentUserId);
+    }
+
+    //same key as ListDiffer uses for the row
+    private static String keyOf(Object row) {
+        if (row instanceof User) {
+            return "User:" + ((User) row).getParseUser().getObjectId();
+        }
+        if (row instanceof ParseObject) {
+            return row.getClass().getSimpleName() + ":" + ((ParseObject) row).getObjectId();
+        }
+        return null;
+    }
+}
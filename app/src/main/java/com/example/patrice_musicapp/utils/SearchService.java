@@ -0,0 +1,260 @@
+package com.example.patrice_musicapp.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.patrice_musicapp.models.Event;
+import com.example.patrice_musicapp.models.Genres;
+import com.example.patrice_musicapp.models.Post;
+import com.example.patrice_musicapp.models.User;
+import com.parse.FindCallback;
+import com.parse.ParseException;
+import com.parse.ParseQuery;
+import com.parse.ParseUser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+//the discover search. once SearchIndex is warm users and events come straight from it on every keystroke, with
+//typos forgiven, and only posts still go to the server. before that, typing only sends a query once it pauses for
+//DEBOUNCE_MILLIS, and a new query cancels the ones still running for the text before it, whose results are dropped
+//if they come back anyway. users and events are matched on their indexed lowercase fields with a prefix
+//constraint, posts on the genres whose label starts with the text and the genres most like them, and every query
+//is limited
+public class SearchService {
+    public static final String TAG = SearchService.class.getSimpleName();
+    private static final long DEBOUNCE_MILLIS = 250;
+    //results per kind
+    private static final int LIMIT = 20;
+    //how alike a genre must be to one the text matched for its posts to be searched too
+    private static final float RELATED_GENRE = 0.3f;
+
+    public interface Listener {
+        //a new query went out, nothing more comes for the one before it
+        void onSearchStarted(String query);
+        //called once per kind of result, only for the latest query
+        void onResults(String query, List<Object> matches);
+    }
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final SearchIndex index;
+    private final GenreAffinity genreAffinity;
+    private final Listener listener;
+    private final List<ParseQuery<?>> running = new ArrayList<>();
+    private String pending;
+    //genres to find posts for once the typing pauses, null to send the whole search
+    private List<String> pendingGenres;
+    private String current;
+
+    private final Runnable send = new Runnable() {
+        @Override
+        public void run() {
+            if (pendingGenres != null) {
+                queryPosts(pending, pendingGenres);
+            } else {
+                sendQuery(pending);
+            }
+        }
+    };
+
+    //index may be null to always search the server
+    public SearchService(SearchIndex index, GenreAffinity genreAffinity, Listener listener) {
+        this.index = index;
+        this.genreAffinity = genreAffinity;
+        this.listener = listener;
+    }
+
+    //from the UI thread, e.g. on every text change
+    public void search(String text) {
+        String query = normalize(text);
+        handler.removeCallbacks(send);
+        if (query.isEmpty()) {
+            cancel();
+            return;
+        }
+        if (query.equals(current)) {
+            //e.g. a character typed and deleted again before the pause
+            pending = null;
+            return;
+        }
+        pending = query;
+        pendingGenres = null;
+        if (index != null && index.isWarm()) {
+            start(query);
+            pendingGenres = searchIndex(query);
+            if (pendingGenres.isEmpty()) {
+                return;
+            }
+        }
+        handler.postDelayed(send, DEBOUNCE_MILLIS);
+    }
+
+    //drops the pending and running queries, e.g. when the view goes away
+    public void cancel() {
+        handler.removeCallbacks(send);
+        pending = null;
+        pendingGenres = null;
+        current = null;
+        cancelRunning();
+    }
+
+    public static String normalize(String text) {
+        return text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private void start(String query) {
+        cancelRunning();
+        current = query;
+        listener.onSearchStarted(query);
+    }
+
+    private void cancelRunning() {
+        for (ParseQuery<?> query : running) {
+            query.cancel();
+        }
+        running.clear();
+    }
+
+    private void sendQuery(String query) {
+        start(query);
+        queryUsers(query);
+        queryEvents(query);
+        queryPosts(query, genresStartingWith(query));
+    }
+
+    //delivers the users and events the index has for query right away and returns the genres it matched
+    private List<String> searchIndex(String query) {
+        List<Object> matches = new ArrayList<>();
+        List<String> genres = new ArrayList<>();
+        for (SearchIndex.Hit hit : index.search(query, 2 * LIMIT)) {
+            if (hit.kind == SearchIndex.Kind.GENRE) {
+                genres.add(hit.id);
+                continue;
+            }
+            Object row = index.rowFor(hit);
+            if (row != null) {
+                matches.add(row);
+            }
+        }
+        listener.onResults(query, matches);
+        return genres;
+    }
+
+    private void queryUsers(final String query) {
+        ParseQuery<ParseUser> byUsername = ParseUser.getQuery().whereStartsWith(User.KEY_USERNAME_LOWER, query);
+        ParseQuery<ParseUser> byName = ParseUser.getQuery().whereStartsWith(User.KEY_NAME_LOWER, query);
+        ParseQuery<ParseUser> users = ParseQuery.or(Arrays.asList(byUsername, byName));
+        users.setLimit(LIMIT);
+        users.addAscendingOrder(User.KEY_USERNAME_LOWER);
+        running.add(users);
+        users.findInBackground(new FindCallback<ParseUser>() {
+            @Override
+            public void done(List<ParseUser> found, ParseException e) {
+                if (!isCurrent(query, e)) {
+                    return;
+                }
+                List<Object> matches = new ArrayList<>();
+                for (ParseUser parseUser : found) {
+                    matches.add(new User(parseUser));
+                }
+                listener.onResults(query, matches);
+            }
+        });
+    }
+
+    private void queryEvents(final String query) {
+        ParseQuery<Event> events = ParseQuery.getQuery(Event.class);
+        events.whereStartsWith(Event.KEY_NAME_LOWER, query);
+        events.include(Event.KEY_HOST);
+        events.setLimit(LIMIT);
+        events.addAscendingOrder(Event.KEY_NAME_LOWER);
+        running.add(events);
+        events.findInBackground(new FindCallback<Event>() {
+            @Override
+            public void done(List<Event> found, ParseException e) {
+                if (!isCurrent(query, e)) {
+                    return;
+                }
+                listener.onResults(query, new ArrayList<Object>(found));
+            }
+        });
+    }
+
+    private void queryPosts(final String query, List<String> matched) {
+        if (matched.isEmpty()) {
+            return;
+        }
+        List<String> genres = withRelated(matched);
+        //matches posts whose genre array holds any of them, each post comes back once
+        ParseQuery<Post> posts = ParseQuery.getQuery(Post.class);
+        posts.whereContainedIn(Post.KEY_GENRE_FILTER, genres);
+        posts.include(Post.KEY_USER);
+        posts.selectKeys(Post.FEED_KEYS);
+        posts.setLimit(LIMIT);
+        posts.addDescendingOrder("createdAt");
+        running.add(posts);
+        posts.findInBackground(new FindCallback<Post>() {
+            @Override
+            public void done(List<Post> found, ParseException e) {
+                if (!isCurrent(query, e)) {
+                    return;
+                }
+                listener.onResults(query, new ArrayList<Object>(found));
+            }
+        });
+    }
+
+    //genres plus the ones at least RELATED_GENRE alike to any of them, e.g. swing for jazz
+    private List<String> withRelated(List<String> genres) {
+        List<String> all = new ArrayList<>(genres);
+        for (Genres other : Genres.values()) {
+            if (all.contains(other.name())) {
+                continue;
+            }
+            for (String genre : genres) {
+                Genres matched = genreOf(genre);
+                if (matched != null && genreAffinity.of(matched.ordinal(), other.ordinal()) >= RELATED_GENRE) {
+                    all.add(other.name());
+                    break;
+                }
+            }
+        }
+        return all;
+    }
+
+    private static Genres genreOf(String value) {
+        for (Genres genre : Genres.values()) {
+            if (genre.name().equals(value)) {
+                return genre;
+            }
+        }
+        return null;
+    }
+
+    //stored genre values whose label or value starts with query, e.g. "hip" and "hip hop" both give HIP_HOP
+    static List<String> genresStartingWith(String query) {
+        List<String> genres = new ArrayList<>();
+        for (Genres genre : Genres.values()) {
+            if (genre.getLabel().toLowerCase(Locale.ROOT).startsWith(query)
+                    || genre.name().toLowerCase(Locale.ROOT).startsWith(query)) {
+                genres.add(genre.name());
+            }
+        }
+        return genres;
+    }
+
+    private boolean isCurrent(String query, ParseException e) {
+        if (!query.equals(current)) {
+            //superseded, or cancelled after it had already come back
+            return false;
+        }
+        if (e != null) {
+            Log.e(TAG, "Issue with searching for " + query, e);
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.patrice_musicapp.utils;
+
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import com.bumptech.glide.Glide;
+import com.example.patrice_musicapp.R;
+import com.example.patrice_musicapp.models.SoundCloudTrack;
+
+//binds an item_soundcloud card: title, author and artwork from the cached oEmbed metadata, and the shared
+//player only once play is tapped
+public class SoundCloudCard {
+    private final View root;
+    private final ImageView ivTrackArtwork;
+    private final ImageView ivTrackPlay;
+    private final TextView tvTrackTitle;
+    private final TextView tvTrackAuthor;
+    private final ViewGroup flSoundCloudPlayer;
+    private String soundCloudUrl;
+
+    public SoundCloudCard(View root) {
+        this.root = root;
+        ivTrackArtwork = root.findViewById(R.id.ivTrackArtwork);
+        ivTrackPlay = root.findViewById(R.id.ivTrackPlay);
+        tvTrackTitle = root.findViewById(R.id.tvTrackTitle);
+        tvTrackAuthor = root.findViewById(R.id.tvTrackAuthor);
+        flSoundCloudPlayer = root.findViewById(R.id.flSoundCloudPlayer);
+        ivTrackPlay.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                if (soundCloudUrl != null) {
+                    SoundCloudPlayer.play(SoundCloudCard.this, flSoundCloudPlayer, soundCloudUrl);
+                }
+            }
+        });
+    }
+
+    public void bind(final String soundCloudUrl) {
+        if (!soundCloudUrl.equals(this.soundCloudUrl)) {
+            SoundCloudPlayer.stop(this);
+        }
+        this.soundCloudUrl = soundCloudUrl;
+        root.setVisibility(View.VISIBLE);
+
+        //a cached track is shown straight away, before this returns
+        showTrack(null);
+        SoundCloudService.get(root.getContext()).load(soundCloudUrl, new SoundCloudService.Callback() {
+            @Override
+            public void onLoaded(SoundCloudTrack track) {
+                //the card may show another track by now
+                if (soundCloudUrl.equals(SoundCloudCard.this.soundCloudUrl)) {
+                    showTrack(track);
+                }
+            }
+        });
+    }
+
+    //for rows without a track, also stops the player if it was in this card
+    public void hide() {
+        SoundCloudPlayer.stop(this);
+        soundCloudUrl = null;
+        root.setVisibility(View.GONE);
+    }
+
+    //the shared player moved to another card or was released
+    void onPlayerRemoved() {
+        flSoundCloudPlayer.setVisibility(View.GONE);
+    }
+
+    private void showTrack(SoundCloudTrack track) {
+        if (track == null) {
+            //until the metadata arrives, or for tracks that have none
+            tvTrackTitle.setText(soundCloudUrl);
+            tvTrackAuthor.setText(null);
+            Glide.with(root.getContext()).clear(ivTrackArtwork);
+            return;
+        }
+        tvTrackTitle.setText(track.getTitle());
+        tvTrackAuthor.setText(track.getAuthorName());
+        if (track.getThumbnailUrl() != null) {
+            Glide.with(root.getContext()).load(track.getThumbnailUrl()).centerCrop().into(ivTrackArtwork);
+        } else {
+            Glide.with(root.getContext()).clear(ivTrackArtwork);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.patrice_musicapp.utils;
+
+import android.annotation.SuppressLint;
+import android.view.View;
+import android.view.ViewGroup;
+import android.webkit.WebView;
+
+//the one WebView that plays SoundCloud tracks. it is created on the first tap of play and moved into whichever
+//track card was tapped last, every other card stays a static view. release destroys it, e.g. when the screen stops
+public class SoundCloudPlayer {
+    private static WebView webView;
+    private static SoundCloudCard owner;
+
+    @SuppressLint("SetJavaScriptEnabled")
+    public static void play(SoundCloudCard card, ViewGroup container, String soundCloudUrl) {
+        if (owner != null && owner != card) {
+            owner.onPlayerRemoved();
+        }
+        if (webView == null) {
+            //the application context, so the static player never holds on to an activity
+            webView = new WebView(container.getContext().getApplicationContext());
+            webView.getSettings().setJavaScriptEnabled(true);
+            webView.getSettings().setLoadWithOverviewMode(true);
+            webView.getSettings().setUseWideViewPort(true);
+        }
+        ViewGroup parent = (ViewGroup) webView.getParent();
+        if (parent != container) {
+            if (parent != null) {
+                parent.removeView(webView);
+            }
+            container.addView(webView, new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        }
+        container.setVisibility(View.VISIBLE);
+        webView.onResume();
+        webView.loadDataWithBaseURL("", MediaUtil.soundCloudHtml(soundCloudUrl, true), "text/html", "UTF-8", "");
+        owner = card;
+    }
+
+    //takes the player out of card and stops the track, if card has it
+    public static void stop(SoundCloudCard card) {
+        if (webView == null || owner == null || owner != card) {
+            return;
+        }
+        ViewGroup parent = (ViewGroup) webView.getParent();
+        if (parent != null) {
+            parent.removeView(webView);
+        }
+        webView.loadUrl("about:blank");
+        webView.onPause();
+        owner.onPlayerRemoved();
+        owner = null;
+    }
+
+    public static void release() {
+        if (webView == null) {
+            return;
+        }
+        stop(owner);
+        webView.destroy();
+        webView = null;
+    }
+}
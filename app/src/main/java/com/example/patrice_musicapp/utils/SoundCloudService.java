@@ -0,0 +1,146 @@
+package com.example.patrice_musicapp.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.example.patrice_musicapp.models.SoundCloudTrack;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+//title, author and artwork of SoundCloud tracks from their oEmbed endpoint, cached in memory and on disk so a
+//track card is drawn without a WebView and without asking SoundCloud again. lookups for a url that is already
+//being fetched wait for that request instead of starting another
+public class SoundCloudService {
+    public static final String TAG = SoundCloudService.class.getSimpleName();
+    private static final String PREFS_NAME = "soundcloud_oembed";
+    private static final String OEMBED_URL = "https://soundcloud.com/oembed";
+    private static final int MAX_DISK_ENTRIES = 500;
+    private static final int MAX_MEMORY_ENTRIES = 64;
+    //stored for urls SoundCloud has no track for, so they are not asked again
+    private static final String NO_TRACK = "";
+    private static SoundCloudService instance;
+
+    public interface Callback {
+        //track is null when there is no metadata for the url
+        void onLoaded(SoundCloudTrack track);
+    }
+
+    private final OkHttpClient client = new OkHttpClient();
+    private final SharedPreferences disk;
+    private final LruCache<String, SoundCloudTrack> memory = new LruCache<>(MAX_MEMORY_ENTRIES);
+    private final Map<String, List<Callback>> inFlight = new HashMap<>();
+
+    private SoundCloudService(Context context) {
+        disk = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        if (disk.getAll().size() > MAX_DISK_ENTRIES) {
+            disk.edit().clear().apply();
+        }
+    }
+
+    public static synchronized SoundCloudService get(Context context) {
+        if (instance == null) {
+            instance = new SoundCloudService(context);
+        }
+        return instance;
+    }
+
+    //the cached track, or null when it is not cached (or has no metadata)
+    public SoundCloudTrack getCached(String url) {
+        SoundCloudTrack track = memory.get(url);
+        if (track != null) {
+            return track;
+        }
+        String json = disk.getString(url, null);
+        if (json == null || NO_TRACK.equals(json)) {
+            return null;
+        }
+        try {
+            track = SoundCloudTrack.fromJson(json);
+            memory.put(url, track);
+        } catch (JSONException e) {
+            Log.e(TAG, "Issue with reading cached track " + url, e);
+        }
+        return track;
+    }
+
+    //calls back on the main thread, straight away when the track is cached
+    public void load(final String url, Callback callback) {
+        SoundCloudTrack cached = getCached(url);
+        if (cached != null || NO_TRACK.equals(disk.getString(url, null))) {
+            callback.onLoaded(cached);
+            return;
+        }
+        synchronized (inFlight) {
+            List<Callback> waiting = inFlight.get(url);
+            if (waiting != null) {
+                waiting.add(callback);
+                return;
+            }
+            waiting = new ArrayList<>();
+            waiting.add(callback);
+            inFlight.put(url, waiting);
+        }
+        String oembedUrl = Uri.parse(OEMBED_URL).buildUpon()
+                .appendQueryParameter("format", "json")
+                .appendQueryParameter("url", url)
+                .build().toString();
+        client.newCall(new Request.Builder().url(oembedUrl).build()).enqueue(new okhttp3.Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                //not cached, the next bind asks again
+                Log.e(TAG, "Issue with loading track " + url, e);
+                deliver(url, null);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                SoundCloudTrack track = null;
+                try {
+                    if (response.isSuccessful()) {
+                        String json = response.body().string();
+                        track = SoundCloudTrack.fromJson(json);
+                        memory.put(url, track);
+                        disk.edit().putString(url, track.toJson()).apply();
+                    } else if (response.code() == 404 || response.code() == 403) {
+                        //removed or private track
+                        disk.edit().putString(url, NO_TRACK).apply();
+                    }
+                } catch (JSONException e) {
+                    Log.e(TAG, "Issue with parsing track " + url, e);
+                } finally {
+                    response.close();
+                }
+                deliver(url, track);
+            }
+        });
+    }
+
+    private void deliver(String url, final SoundCloudTrack track) {
+        final List<Callback> waiting;
+        synchronized (inFlight) {
+            waiting = inFlight.remove(url);
+        }
+        AppExecutors.mainThread().execute(new Runnable() {
+            @Override
+            public void run() {
+                for (Callback waiter : waiting) {
+                    waiter.onLoaded(track);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.patrice_musicapp.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+//the k best of a stream of items without sorting all of them. the heap only ever holds k items with the worst of
+//them on top, so an item that can't make it is turned away with one comparison
+public class TopK<T> {
+    private final int k;
+    private final Comparator<? super T> betterFirst;
+    private final PriorityQueue<T> heap;
+
+    //betterFirst orders the best item first, like the list that comes out of best()
+    public TopK(int k, final Comparator<? super T> betterFirst) {
+        this.k = k;
+        this.betterFirst = betterFirst;
+        this.heap = new PriorityQueue<>(Math.max(1, k), new Comparator<T>() {
+            @Override
+            public int compare(T a, T b) {
+                return betterFirst.compare(b, a);
+            }
+        });
+    }
+
+    public void offer(T item) {
+        if (k <= 0) {
+            return;
+        }
+        if (heap.size() < k) {
+            heap.add(item);
+        } else if (betterFirst.compare(item, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(item);
+        }
+    }
+
+    //best first
+    public List<T> best() {
+        List<T> best = new ArrayList<>(heap);
+        Collections.sort(best, betterFirst);
+        return best;
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.patrice_musicapp.utils;
+
+import android.content.Context;
+import android.util.Log;
+import android.widget.Toast;
+
+import androidx.lifecycle.LiveData;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+
+import com.example.patrice_musicapp.R;
+import com.parse.ParseGeoPoint;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+//new posts, events and profile pictures are uploaded by UploadWorker through WorkManager, so an upload outlives
+//the screen and the process that started it and is retried with backoff when it fails. every job gets a copy of
+//its media in its own directory, the compose screens can reuse MediaUtil.photoFile and videoFile straight away
+public class UploadQueue {
+    public static final String TAG = UploadQueue.class.getSimpleName();
+    //tags every upload, e.g. for getUploads
+    public static final String WORK_TAG = "upload";
+    //uploads running at once, the size of WorkManager's executor in ParseApplication
+    public static final int MAX_PARALLEL_UPLOADS = 2;
+    private static final long BACKOFF_SECONDS = 30;
+    private static final String UPLOADS_DIR = "uploads";
+
+    static final String KEY_KIND = "kind";
+    static final String KEY_DIR = "dir";
+    static final String KEY_CAPTION = "caption";
+    static final String KEY_GENRES = "genres";
+    static final String KEY_SOUND_CLOUD_URL = "soundCloudUrl";
+    static final String KEY_LATITUDE = "latitude";
+    static final String KEY_LONGITUDE = "longitude";
+    static final String KEY_NAME = "name";
+    static final String KEY_DESCRIPTION = "description";
+    static final String KEY_DATE = "date";
+    //0 to 100, in the progress of a running upload
+    public static final String KEY_PROGRESS = "progress";
+
+    static final String KIND_POST = "post";
+    static final String KIND_EVENT = "event";
+    static final String KIND_AVATAR = "avatar";
+    static final String PHOTO = "photo.jpg";
+    static final String VIDEO = "video.mp4";
+
+    //any of photoFile, videoFile, soundCloudUrl, location and genres may be null
+    public static void enqueuePost(Context context, String caption, File photoFile, File videoFile, String soundCloudUrl,
+                                   ParseGeoPoint location, List<String> genres) {
+        Data.Builder data = new Data.Builder()
+                .putString(KEY_KIND, KIND_POST)
+                .putString(KEY_CAPTION, caption)
+                .putString(KEY_SOUND_CLOUD_URL, soundCloudUrl);
+        if (genres != null) {
+            data.putStringArray(KEY_GENRES, genres.toArray(new String[0]));
+        }
+        putLocation(data, location);
+        enqueue(context, data, photoFile, videoFile);
+    }
+
+    //any of date, location and photoFile may be null
+    public static void enqueueEvent(Context context, String name, String description, Date date, ParseGeoPoint location, File photoFile) {
+        Data.Builder data = new Data.Builder()
+                .putString(KEY_KIND, KIND_EVENT)
+                .putString(KEY_NAME, name)
+                .putString(KEY_DESCRIPTION, description);
+        if (date != null) {
+            data.putLong(KEY_DATE, date.getTime());
+        }
+        putLocation(data, location);
+        enqueue(context, data, photoFile, null);
+    }
+
+    //the current user's profile picture
+    public static void enqueueAvatar(Context context, File photoFile) {
+        Data.Builder data = new Data.Builder().putString(KEY_KIND, KIND_AVATAR);
+        enqueue(context, data, photoFile, null);
+    }
+
+    //every upload WorkManager still knows of, running ones carry KEY_PROGRESS
+    public static LiveData<List<WorkInfo>> getUploads(Context context) {
+        return WorkManager.getInstance(context).getWorkInfosByTagLiveData(WORK_TAG);
+    }
+
+    //drops finished uploads from getUploads, once they have been reported
+    public static void forgetFinished(Context context) {
+        WorkManager.getInstance(context).pruneWork();
+    }
+
+    static void deleteJob(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private static void putLocation(Data.Builder data, ParseGeoPoint location) {
+        if (location != null) {
+            data.putDouble(KEY_LATITUDE, location.getLatitude());
+            data.putDouble(KEY_LONGITUDE, location.getLongitude());
+        }
+    }
+
+    //copying a video takes a while, so the copies are made and the job enqueued in the background
+    private static void enqueue(Context context, final Data.Builder data, final File photoFile, final File videoFile) {
+        final Context appContext = context.getApplicationContext();
+        AppExecutors.background().execute(new Runnable() {
+            @Override
+            public void run() {
+                File dir = new File(new File(appContext.getFilesDir(), UPLOADS_DIR), UUID.randomUUID().toString());
+                try {
+                    if (!dir.mkdirs()) {
+                        throw new IOException("Could not create " + dir);
+                    }
+                    if (photoFile != null) {
+                        copy(photoFile, new File(dir, PHOTO));
+                    }
+                    if (videoFile != null) {
+                        copy(videoFile, new File(dir, VIDEO));
+                    }
+                } catch (IOException e) {
+                    //there is no job for MainActivity to report, so the toast is shown from here
+                    Log.e(TAG, "Issue with copying upload media", e);
+                    deleteJob(dir);
+                    AppExecutors.mainThread().execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            Toast.makeText(appContext, R.string.upload_failed, Toast.LENGTH_LONG).show();
+                        }
+                    });
+                    return;
+                }
+                data.putString(KEY_DIR, dir.getAbsolutePath());
+                OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(UploadWorker.class)
+                        .setInputData(data.build())
+                        .setConstraints(new Constraints.Builder().setRequiredNetworkType(NetworkType.CONNECTED).build())
+                        .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, BACKOFF_SECONDS, TimeUnit.SECONDS)
+                        .addTag(WORK_TAG)
+                        .build();
+                WorkManager.getInstance(appContext).enqueue(request);
+            }
+        });
+    }
+
+    private static void copy(File from, File to) throws IOException {
+        InputStream in = new FileInputStream(from);
+        try {
+            OutputStream out = new FileOutputStream(to);
+            try {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+}
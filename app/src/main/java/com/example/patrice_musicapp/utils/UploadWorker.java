@@ -0,0 +1,358 @@
+package com.example.patrice_musicapp.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Data;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.patrice_musicapp.models.Event;
+import com.example.patrice_musicapp.models.Post;
+import com.example.patrice_musicapp.models.User;
+import com.parse.ParseDecoder;
+import com.parse.ParseException;
+import com.parse.ParseFile;
+import com.parse.ParseGeoPoint;
+import com.parse.ParseObject;
+import com.parse.ParseQuery;
+import com.parse.ParseUser;
+import com.parse.ProgressCallback;
+import com.parse.SaveCallback;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+
+//runs one job of UploadQueue: uploads its files first and only then saves the row that points at them, so a
+//failed upload never leaves a post without its image. a failed attempt is retried with WorkManager's backoff
+//while the error looks like the network's, the job's files are deleted once it succeeds or gives up.
+//every step that reached the server is written to a state file in the job's directory, so a retry picks up where
+//the last attempt stopped: uploaded files are not encoded or sent again, a row that was created is not created
+//twice, and the author's postCount goes up once
+public class UploadWorker extends Worker {
+    public static final String TAG = UploadWorker.class.getSimpleName();
+    private static final int MAX_ATTEMPTS = 5;
+    private static final String STATE = "state.properties";
+    private static final String STATE_OBJECT_ID = "objectId";
+    private static final String STATE_COUNTED = "counted";
+    private static final String SLOT_THUMB = "thumb";
+    private static final String SLOT_FEED = "feed";
+    private static final String SLOT_FULL = "full";
+    private static final String SLOT_VIDEO = "video";
+    private static final String SLOT_AVATAR = "avatar";
+    private final Properties state = new Properties();
+    private File stateFile;
+    private int filesUploaded;
+    private int fileCount;
+
+    public UploadWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Data input = getInputData();
+        File dir = new File(input.getString(UploadQueue.KEY_DIR));
+        String kind = input.getString(UploadQueue.KEY_KIND);
+        stateFile = new File(dir, STATE);
+        loadState();
+        try {
+            ParseUser user = ParseUser.getCurrentUser();
+            if (user == null) {
+                throw new ParseException(ParseException.INVALID_SESSION_TOKEN, "Logged out before the upload");
+            }
+            if (UploadQueue.KIND_POST.equals(kind)) {
+                uploadPost(input, dir, user);
+            } else if (UploadQueue.KIND_EVENT.equals(kind)) {
+                uploadEvent(input, dir, user);
+            } else {
+                uploadAvatar(dir, user);
+            }
+        } catch (ParseException e) {
+            Log.e(TAG, "Issue with uploading " + kind + ", attempt " + (getRunAttemptCount() + 1), e);
+            if (isTemporary(e) && getRunAttemptCount() + 1 < MAX_ATTEMPTS) {
+                return Result.retry();
+            }
+            UploadQueue.deleteJob(dir);
+            return Result.failure();
+        } catch (IOException e) {
+            //the media can't be read, trying again won't help
+            Log.e(TAG, "Issue with reading " + kind + " media", e);
+            UploadQueue.deleteJob(dir);
+            return Result.failure();
+        }
+        UploadQueue.deleteJob(dir);
+        return Result.success();
+    }
+
+    private void uploadPost(Data input, File dir, ParseUser user) throws ParseException, IOException {
+        if (created(Post.class, Post.KEY_UPLOAD_ID, dir.getName()) == null) {
+            Post post = new Post();
+            post.setUser(user);
+            post.setUploadId(dir.getName());
+            post.setCaption(input.getString(UploadQueue.KEY_CAPTION));
+            String soundCloudUrl = input.getString(UploadQueue.KEY_SOUND_CLOUD_URL);
+            if (soundCloudUrl != null) {
+                post.setSoundCloudUrl(soundCloudUrl);
+            }
+            String[] genres = input.getStringArray(UploadQueue.KEY_GENRES);
+            if (genres != null) {
+                post.setGenreFilter(Arrays.asList(genres));
+            }
+            ParseGeoPoint location = location(input);
+            if (location != null) {
+                post.setLocation(location);
+            }
+
+            File photo = new File(dir, UploadQueue.PHOTO);
+            File video = new File(dir, UploadQueue.VIDEO);
+            Map<String, ParseFile> toUpload = new LinkedHashMap<>();
+            ImageVariants variants = photo.exists() ? variants(photo, toUpload) : null;
+            ParseFile videoFile = video.exists() ? file(SLOT_VIDEO, video, toUpload) : null;
+            uploadAll(toUpload);
+            if (variants != null) {
+                post.setImageVariants(variants);
+            }
+            if (videoFile != null) {
+                post.setVideo(videoFile);
+            }
+            post.save();
+            remember(STATE_OBJECT_ID, post.getObjectId());
+        }
+
+        if (state.getProperty(STATE_COUNTED) == null) {
+            user.increment(User.KEY_POST_COUNT);
+            new User(user).setLastPostAt(new Date());
+            try {
+                user.save();
+            } catch (ParseException e) {
+                //a failed save keeps the increment queued on the cached user, the next attempt would add another
+                user.revert(User.KEY_POST_COUNT);
+                user.revert(User.KEY_LAST_POST_AT);
+                throw e;
+            }
+            remember(STATE_COUNTED, Boolean.TRUE.toString());
+        }
+    }
+
+    private void uploadEvent(Data input, File dir, ParseUser user) throws ParseException, IOException {
+        if (created(Event.class, Event.KEY_UPLOAD_ID, dir.getName()) != null) {
+            return;
+        }
+        Event event = new Event();
+        event.setHost(user);
+        event.setUploadId(dir.getName());
+        event.setName(input.getString(UploadQueue.KEY_NAME));
+        event.setDescription(input.getString(UploadQueue.KEY_DESCRIPTION));
+        if (input.getKeyValueMap().containsKey(UploadQueue.KEY_DATE)) {
+            event.setDate(new Date(input.getLong(UploadQueue.KEY_DATE, 0)));
+        }
+        ParseGeoPoint location = location(input);
+        if (location != null) {
+            event.setLocation(location);
+        }
+
+        File photo = new File(dir, UploadQueue.PHOTO);
+        if (photo.exists()) {
+            Map<String, ParseFile> toUpload = new LinkedHashMap<>();
+            ImageVariants variants = variants(photo, toUpload);
+            uploadAll(toUpload);
+            event.setImageVariants(variants);
+        }
+        event.save();
+        remember(STATE_OBJECT_ID, event.getObjectId());
+    }
+
+    //setting the picture again is harmless, only the file upload is remembered
+    private void uploadAvatar(File dir, ParseUser user) throws ParseException {
+        Map<String, ParseFile> toUpload = new LinkedHashMap<>();
+        ParseFile image = file(SLOT_AVATAR, new File(dir, UploadQueue.PHOTO), toUpload);
+        uploadAll(toUpload);
+        new User(user).setImage(image);
+        user.save();
+    }
+
+    //the objectId of the row an earlier attempt created, null if there is none. a save whose answer was lost is
+    //found by the job's id on the row
+    private <T extends ParseObject> String created(Class<T> type, String uploadKey, String uploadId) throws ParseException {
+        String objectId = state.getProperty(STATE_OBJECT_ID);
+        if (objectId != null || getRunAttemptCount() == 0) {
+            return objectId;
+        }
+        ParseQuery<T> query = ParseQuery.getQuery(type);
+        query.whereEqualTo(uploadKey, uploadId);
+        query.selectKeys(Arrays.asList(uploadKey));
+        query.setLimit(1);
+        List<T> found = query.find();
+        if (found.isEmpty()) {
+            return null;
+        }
+        remember(STATE_OBJECT_ID, found.get(0).getObjectId());
+        return found.get(0).getObjectId();
+    }
+
+    //the image's variants, encoded only if one of them is not uploaded yet. the missing ones go into toUpload
+    private ImageVariants variants(File photo, Map<String, ParseFile> toUpload) throws IOException {
+        ParseFile thumb = uploaded(SLOT_THUMB);
+        ParseFile feed = uploaded(SLOT_FEED);
+        ParseFile full = uploaded(SLOT_FULL);
+        if (thumb != null && feed != null && full != null) {
+            return new ImageVariants(thumb, feed, full);
+        }
+        ImageVariants encoded = ImageVariants.encode(photo);
+        if (thumb == null) {
+            thumb = encoded.getThumb();
+            toUpload.put(SLOT_THUMB, thumb);
+        }
+        if (feed == null) {
+            feed = encoded.getFeed();
+            toUpload.put(SLOT_FEED, feed);
+        }
+        if (full == null) {
+            full = encoded.getFull();
+            toUpload.put(SLOT_FULL, full);
+        }
+        return new ImageVariants(thumb, feed, full);
+    }
+
+    //the file uploaded earlier for slot, or a new one for file that goes into toUpload
+    private ParseFile file(String slot, File file, Map<String, ParseFile> toUpload) {
+        ParseFile uploaded = uploaded(slot);
+        if (uploaded != null) {
+            return uploaded;
+        }
+        ParseFile parseFile = new ParseFile(file);
+        toUpload.put(slot, parseFile);
+        return parseFile;
+    }
+
+    //a saved file is only a name and a url, which is what the state keeps of it
+    private ParseFile uploaded(String slot) {
+        String name = state.getProperty(slot + ".name");
+        String url = state.getProperty(slot + ".url");
+        if (name == null || url == null) {
+            return null;
+        }
+        try {
+            JSONObject json = new JSONObject();
+            json.put("__type", "File");
+            json.put("name", name);
+            json.put("url", url);
+            return (ParseFile) ParseDecoder.get().decode(json);
+        } catch (JSONException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private void loadState() {
+        if (!stateFile.exists()) {
+            return;
+        }
+        try {
+            InputStream in = new FileInputStream(stateFile);
+            try {
+                state.load(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            //the attempt starts over, which is what happened before there was a state file
+            Log.e(TAG, "Issue with reading upload state", e);
+            state.clear();
+        }
+    }
+
+    private void remember(String key, String value) {
+        state.setProperty(key, value);
+        File partial = new File(stateFile.getParentFile(), STATE + ".part");
+        try {
+            OutputStream out = new FileOutputStream(partial);
+            try {
+                state.store(out, null);
+            } finally {
+                out.close();
+            }
+            if (!partial.renameTo(stateFile)) {
+                Log.e(TAG, "Issue with replacing upload state");
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Issue with writing upload state", e);
+        }
+    }
+
+    private static ParseGeoPoint location(Data input) {
+        if (!input.getKeyValueMap().containsKey(UploadQueue.KEY_LATITUDE)) {
+            return null;
+        }
+        return new ParseGeoPoint(input.getDouble(UploadQueue.KEY_LATITUDE, 0), input.getDouble(UploadQueue.KEY_LONGITUDE, 0));
+    }
+
+    //one after the other, progress counts every file the same. each one is remembered by its slot once it is up
+    private void uploadAll(Map<String, ParseFile> files) throws ParseException {
+        filesUploaded = 0;
+        fileCount = files.size();
+        for (Map.Entry<String, ParseFile> entry : files.entrySet()) {
+            ParseFile file = entry.getValue();
+            upload(file);
+            remember(entry.getKey() + ".name", file.getName());
+            remember(entry.getKey() + ".url", file.getUrl());
+            filesUploaded++;
+        }
+        reportProgress(100);
+    }
+
+    private void upload(ParseFile file) throws ParseException {
+        final CountDownLatch done = new CountDownLatch(1);
+        final ParseException[] error = new ParseException[1];
+        file.saveInBackground(new SaveCallback() {
+            @Override
+            public void done(ParseException e) {
+                error[0] = e;
+                done.countDown();
+            }
+        }, new ProgressCallback() {
+            @Override
+            public void done(Integer percentDone) {
+                reportProgress((filesUploaded * 100 + percentDone) / fileCount);
+            }
+        });
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            //the job was stopped, WorkManager runs it again later
+            Thread.currentThread().interrupt();
+            throw new ParseException(ParseException.CONNECTION_FAILED, "Upload interrupted");
+        }
+        if (error[0] != null) {
+            throw error[0];
+        }
+    }
+
+    private void reportProgress(int percent) {
+        setProgressAsync(new Data.Builder().putInt(UploadQueue.KEY_PROGRESS, percent).build());
+    }
+
+    //errors that may be gone on the next attempt
+    private static boolean isTemporary(ParseException e) {
+        int code = e.getCode();
+        return code == ParseException.CONNECTION_FAILED || code == ParseException.TIMEOUT
+                || code == ParseException.INTERNAL_SERVER_ERROR || code == ParseException.OTHER_CAUSE;
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.patrice_musicapp.utils;
+
+import android.graphics.Rect;
+import android.view.View;
+import android.widget.ImageView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.google.android.exoplayer2.ui.PlayerView;
+
+//plays the video of the row that is most on screen with the shared player, every other video row shows its poster.
+//the pick is made when scrolling stops, a playing row that scrolls mostly out of view is paused right away
+public class VideoAutoplay extends RecyclerView.OnScrollListener implements RecyclerView.OnChildAttachStateChangeListener {
+    //share of a video that has to be on screen for it to play
+    private static final float MIN_VISIBLE = 0.6f;
+    private final VideoPlayerPool pool;
+    private final Rect visible = new Rect();
+    private RecyclerView recyclerView;
+    private boolean updatePosted;
+
+    //implemented by view holders that can show a video
+    public interface VideoRow {
+        PlayerView getPlayerView();
+        ImageView getPosterView();
+        //null when the row has no video
+        String getVideoUrl();
+    }
+
+    public VideoAutoplay(VideoPlayerPool pool) {
+        this.pool = pool;
+    }
+
+    public void attach(RecyclerView recyclerView) {
+        this.recyclerView = recyclerView;
+        recyclerView.addOnScrollListener(this);
+        recyclerView.addOnChildAttachStateChangeListener(this);
+        postUpdate();
+    }
+
+    //stops this list's video and leaves the list alone
+    public void detach() {
+        if (recyclerView == null) {
+            return;
+        }
+        stop();
+        recyclerView.removeOnScrollListener(this);
+        recyclerView.removeOnChildAttachStateChangeListener(this);
+        recyclerView = null;
+    }
+
+    //pauses whichever row of this list is playing
+    public void stop() {
+        if (recyclerView == null) {
+            return;
+        }
+        for (int i = 0; i < recyclerView.getChildCount(); i++) {
+            RecyclerView.ViewHolder holder = recyclerView.getChildViewHolder(recyclerView.getChildAt(i));
+            if (holder instanceof VideoRow) {
+                pool.stop(((VideoRow) holder).getPlayerView());
+            }
+        }
+    }
+
+    @Override
+    public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+        if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+            update();
+        }
+    }
+
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        for (int i = 0; i < recyclerView.getChildCount(); i++) {
+            RecyclerView.ViewHolder holder = recyclerView.getChildViewHolder(recyclerView.getChildAt(i));
+            if (holder instanceof VideoRow) {
+                PlayerView view = ((VideoRow) holder).getPlayerView();
+                if (pool.isPlayingIn(view) && visibleFraction(view) < MIN_VISIBLE) {
+                    pool.stop(view);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onChildViewAttachedToWindow(@NonNull View view) {
+        //rows of a new page or a refresh, checked once they are laid out
+        postUpdate();
+    }
+
+    @Override
+    public void onChildViewDetachedFromWindow(@NonNull View view) {
+        RecyclerView.ViewHolder holder = recyclerView.getChildViewHolder(view);
+        if (holder instanceof VideoRow) {
+            pool.stop(((VideoRow) holder).getPlayerView());
+        }
+    }
+
+    private void postUpdate() {
+        if (updatePosted || recyclerView == null) {
+            return;
+        }
+        updatePosted = true;
+        recyclerView.post(new Runnable() {
+            @Override
+            public void run() {
+                updatePosted = false;
+                update();
+            }
+        });
+    }
+
+    //plays the most visible video row, if any is visible enough
+    public void update() {
+        if (recyclerView == null || recyclerView.getScrollState() != RecyclerView.SCROLL_STATE_IDLE) {
+            return;
+        }
+        VideoRow best = null;
+        float bestFraction = MIN_VISIBLE;
+        for (int i = 0; i < recyclerView.getChildCount(); i++) {
+            RecyclerView.ViewHolder holder = recyclerView.getChildViewHolder(recyclerView.getChildAt(i));
+            if (!(holder instanceof VideoRow) || ((VideoRow) holder).getVideoUrl() == null) {
+                continue;
+            }
+            float fraction = visibleFraction(((VideoRow) holder).getPlayerView());
+            if (fraction >= bestFraction) {
+                best = (VideoRow) holder;
+                bestFraction = fraction;
+            }
+        }
+        if (best != null) {
+            pool.play(best.getPlayerView(), best.getPosterView(), best.getVideoUrl());
+        } else {
+            stop();
+        }
+    }
+
+    private float visibleFraction(View view) {
+        if (view.getVisibility() != View.VISIBLE || view.getHeight() == 0 || !view.getGlobalVisibleRect(visible)) {
+            return 0;
+        }
+        return (float) visible.height() / view.getHeight();
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.patrice_musicapp.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.util.LruCache;
+import android.view.TextureView;
+import android.view.View;
+import android.widget.ImageView;
+
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.database.ExoDatabaseProvider;
+import com.google.android.exoplayer2.source.MediaSource;
+import com.google.android.exoplayer2.source.ProgressiveMediaSource;
+import com.google.android.exoplayer2.ui.PlayerView;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DefaultHttpDataSourceFactory;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSourceFactory;
+import com.google.android.exoplayer2.upstream.cache.LeastRecentlyUsedCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.Util;
+import com.google.android.exoplayer2.video.VideoListener;
+
+import java.io.File;
+
+//one video player for the whole app. it streams the ParseFile url with range requests through a disk cache
+//of bounded size, so a video is only fetched as far as it is watched and replays come from disk.
+//the player moves between PlayerViews instead of every row getting its own, and rows that are not playing
+//show the last frame they played as a poster. taking the player off a view stops it, which frees the decoders
+//while the player itself is kept, and the same video picks up where it was stopped when it plays again.
+//release frees the rest, the next play builds a new player
+public class VideoPlayerPool {
+    public static final String TAG = VideoPlayerPool.class.getSimpleName();
+    private static final long MAX_CACHE_BYTES = 100 * 1024 * 1024;
+    private static final int MAX_POSTERS = 16;
+    private static VideoPlayerPool instance;
+
+    private final Context context;
+    private final SimpleCache cache;
+    private final DataSource.Factory dataSourceFactory;
+    //url -> last frame shown for it
+    private final LruCache<String, Bitmap> posters = new LruCache<>(MAX_POSTERS);
+    private SimpleExoPlayer player;
+    private PlayerView currentView;
+    private ImageView currentPoster;
+    private String currentUrl;
+    //where the last stopped video was left, so playing it again resumes there
+    private String stoppedUrl;
+    private long stoppedPosition;
+
+    private VideoPlayerPool(Context context) {
+        this.context = context.getApplicationContext();
+        //there can only be one SimpleCache per folder, so it lives as long as the app
+        cache = new SimpleCache(new File(this.context.getCacheDir(), "video"),
+                new LeastRecentlyUsedCacheEvictor(MAX_CACHE_BYTES), new ExoDatabaseProvider(this.context));
+        DefaultHttpDataSourceFactory http = new DefaultHttpDataSourceFactory(Util.getUserAgent(this.context, "MusicApp"));
+        dataSourceFactory = new CacheDataSourceFactory(cache, http);
+    }
+
+    public static synchronized VideoPlayerPool get(Context context) {
+        if (instance == null) {
+            instance = new VideoPlayerPool(context);
+        }
+        return instance;
+    }
+
+    private SimpleExoPlayer player() {
+        if (player == null) {
+            player = new SimpleExoPlayer.Builder(context).build();
+            player.setRepeatMode(Player.REPEAT_MODE_ONE);
+            player.addVideoListener(new VideoListener() {
+                @Override
+                public void onRenderedFirstFrame() {
+                    //the video covers the poster now
+                    if (currentPoster != null) {
+                        currentPoster.setVisibility(View.GONE);
+                    }
+                }
+            });
+        }
+        return player;
+    }
+
+    //shows the frame a video was left at, or nothing until it has played once
+    public void bindPoster(ImageView poster, String url) {
+        Bitmap frame = posters.get(url);
+        poster.setImageBitmap(frame);
+        poster.setVisibility(View.VISIBLE);
+    }
+
+    //moves the player to view and plays url there, picking up where it was when it is the same video
+    public void play(PlayerView view, ImageView poster, String url) {
+        SimpleExoPlayer player = player();
+        if (view != currentView) {
+            keepPoster();
+            PlayerView.switchTargetView(player, currentView, view);
+            currentView = view;
+            currentPoster = poster;
+        }
+        if (!url.equals(currentUrl)) {
+            poster.setVisibility(View.VISIBLE);
+            player.prepare(mediaSource(url));
+            if (url.equals(stoppedUrl)) {
+                player.seekTo(stoppedPosition);
+            }
+            currentUrl = url;
+        }
+        player.setPlayWhenReady(true);
+    }
+
+    //stops the player and takes it off view, if it is on it. stopping disables the renderers, so the decoders are
+    //released when a row scrolls away rather than when the screen stops
+    public void stop(PlayerView view) {
+        if (view == null || view != currentView) {
+            return;
+        }
+        keepPoster();
+        if (player != null) {
+            player.setPlayWhenReady(false);
+            stoppedUrl = currentUrl;
+            stoppedPosition = player.getCurrentPosition();
+            player.stop(true);
+            currentUrl = null;
+        }
+        if (currentPoster != null) {
+            currentPoster.setVisibility(View.VISIBLE);
+        }
+        view.setPlayer(null);
+        currentView = null;
+        currentPoster = null;
+    }
+
+    public boolean isPlayingIn(PlayerView view) {
+        return view != null && view == currentView;
+    }
+
+    //frees the player and its decoders once no view uses it
+    public void releaseIfIdle() {
+        if (currentView == null && player != null) {
+            player.release();
+            player = null;
+            currentUrl = null;
+        }
+    }
+
+    private MediaSource mediaSource(String url) {
+        return new ProgressiveMediaSource.Factory(dataSourceFactory).createMediaSource(Uri.parse(url));
+    }
+
+    //copies the frame on screen into the poster of the view the player is leaving
+    private void keepPoster() {
+        if (currentView == null || currentPoster == null || currentUrl == null) {
+            return;
+        }
+        View surface = currentView.getVideoSurfaceView();
+        if (surface instanceof TextureView && ((TextureView) surface).isAvailable()) {
+            Bitmap frame = ((TextureView) surface).getBitmap(surface.getWidth() / 2, surface.getHeight() / 2);
+            if (frame != null) {
+                posters.put(currentUrl, frame);
+                currentPoster.setImageBitmap(frame);
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.patrice_musicapp.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class BandMatcherTest {
+    private static final int DRUMS = 0;
+    private static final int BASS = 1;
+    private static final int KEYS = 2;
+    private static final int VOCALS = 3;
+    private static final int POOL_MEMBERS = 5_000;
+
+    private static BandMatcher.Member member(String id, double affinity, int... instruments) {
+        long mask = 0;
+        for (int instrument : instruments) {
+            mask |= 1L << instrument;
+        }
+        return new BandMatcher.Member(id, mask, affinity);
+    }
+
+    @Test
+    public void fillsEverySlotWithDistinctMusicians() {
+        List<BandMatcher.Member> members = Arrays.asList(
+                member("ana", 0.9, DRUMS, BASS),
+                member("ben", 0.8, BASS),
+                member("cal", 0.7, KEYS, VOCALS),
+                member("dee", 0.6, VOCALS),
+                member("eli", 0.1, DRUMS));
+
+        List<BandMatcher.Band> bands = BandMatcher.match(new int[]{DRUMS, BASS, KEYS, VOCALS}, members, 3);
+
+        assertEquals(Arrays.asList("ana", "ben", "cal", "dee"), bands.get(0).getMemberIds());
+        assertEquals(3.0, bands.get(0).getScore(), 1e-9);
+        for (BandMatcher.Band band : bands) {
+            assertEquals(4, new HashSet<>(band.getMemberIds()).size());
+        }
+        assertEquals(3, bands.size());
+    }
+
+    @Test
+    public void emptyWhenNobodyPlaysASlot() {
+        List<BandMatcher.Member> members = Arrays.asList(member("ana", 1, DRUMS), member("ben", 1, BASS));
+        assertTrue(BandMatcher.match(new int[]{DRUMS, BASS, KEYS}, members, 5).isEmpty());
+    }
+
+    @Test
+    public void sameInstrumentTwiceNeedsTwoMusicians() {
+        List<BandMatcher.Member> members = Arrays.asList(member("ana", 1, VOCALS), member("ben", 0.5, VOCALS));
+        List<BandMatcher.Band> bands = BandMatcher.match(new int[]{VOCALS, VOCALS}, members, 5);
+        assertEquals(1, bands.size());
+        assertEquals(1.5, bands.get(0).getScore(), 1e-9);
+    }
+
+    @Test
+    public void matchesBruteForceScores() {
+        Random random = new Random(3);
+        for (int round = 0; round < 50; round++) {
+            List<BandMatcher.Member> members = randomMembers(random, 12, 5);
+            int[] slots = {random.nextInt(5), random.nextInt(5), random.nextInt(5)};
+            int n = 1 + random.nextInt(5);
+
+            List<Double> expected = bruteForce(slots, members, n);
+            List<BandMatcher.Band> bands = BandMatcher.match(slots, members, n);
+            assertEquals(expected.size(), bands.size());
+            for (int i = 0; i < bands.size(); i++) {
+                assertEquals(expected.get(i), bands.get(i).getScore(), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void matchesThousandsOfCandidates() {
+        Random random = new Random(11);
+        List<BandMatcher.Member> members = randomMembers(random, POOL_MEMBERS, 34);
+        Map<String, BandMatcher.Member> byId = new HashMap<>();
+        for (BandMatcher.Member member : members) {
+            byId.put(member.getId(), member);
+        }
+        int[] lineup = {DRUMS, BASS, KEYS, VOCALS, 4};
+
+        List<BandMatcher.Band> bands = BandMatcher.match(lineup, members, 10);
+
+        assertEquals(10, bands.size());
+        //no band beats the best player of every slot
+        double bound = 0;
+        for (int slot : lineup) {
+            double best = 0;
+            for (BandMatcher.Member member : members) {
+                if ((member.instruments & (1L << slot)) != 0) {
+                    best = Math.max(best, member.affinity);
+                }
+            }
+            bound += best;
+        }
+        assertTrue(bands.get(0).getScore() <= bound + 1e-9);
+        Set<Set<String>> seen = new HashSet<>();
+        for (int i = 0; i < bands.size(); i++) {
+            BandMatcher.Band band = bands.get(i);
+            if (i > 0) {
+                assertTrue(band.getScore() <= bands.get(i - 1).getScore() + 1e-9);
+            }
+            List<String> ids = band.getMemberIds();
+            assertEquals(lineup.length, new HashSet<>(ids).size());
+            assertTrue(seen.add(new HashSet<>(ids)));
+            double score = 0;
+            for (int slot = 0; slot < lineup.length; slot++) {
+                BandMatcher.Member member = byId.get(ids.get(slot));
+                assertTrue((member.instruments & (1L << lineup[slot])) != 0);
+                score += member.affinity;
+            }
+            assertEquals(score, band.getScore(), 1e-9);
+        }
+    }
+
+    private static List<BandMatcher.Member> randomMembers(Random random, int count, int instruments) {
+        List<BandMatcher.Member> members = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            long mask = 0;
+            int plays = 1 + random.nextInt(3);
+            for (int j = 0; j < plays; j++) {
+                mask |= 1L << random.nextInt(instruments);
+            }
+            members.add(new BandMatcher.Member("m" + i, mask, Math.round(random.nextDouble() * 100) / 100.0));
+        }
+        return members;
+    }
+
+    //scores of the n best distinct member sets, best first
+    private static List<Double> bruteForce(int[] slots, List<BandMatcher.Member> members, int n) {
+        List<Double> scores = new ArrayList<>();
+        collect(slots, members, 0, new ArrayList<BandMatcher.Member>(), new HashSet<Set<String>>(), scores);
+        Collections.sort(scores, Collections.<Double>reverseOrder());
+        return scores.size() > n ? scores.subList(0, n) : scores;
+    }
+
+    private static void collect(int[] slots, List<BandMatcher.Member> members, int slot, List<BandMatcher.Member> lineup,
+                                Set<Set<String>> seen, List<Double> scores) {
+        if (slot == slots.length) {
+            Set<String> ids = new HashSet<>();
+            double score = 0;
+            for (BandMatcher.Member member : lineup) {
+                ids.add(member.getId());
+                score += member.affinity;
+            }
+            if (seen.add(ids)) {
+                scores.add(score);
+            }
+            return;
+        }
+        for (BandMatcher.Member member : members) {
+            if ((member.instruments & (1L << slots[slot])) != 0 && !lineup.contains(member)) {
+                lineup.add(member);
+                collect(slots, members, slot + 1, lineup, seen, scores);
+                lineup.remove(lineup.size() - 1);
+            }
+        }
+    }
+}
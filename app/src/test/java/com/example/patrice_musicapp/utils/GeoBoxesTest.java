@@ -0,0 +1,50 @@
+package com.example.patrice_musicapp.utils;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GeoBoxesTest {
+
+    @Test
+    public void keepsABoxThatFits() {
+        List<double[]> boxes = GeoBoxes.split(10, 20, 30, 40);
+        assertEquals(1, boxes.size());
+        assertArrayEquals(new double[]{10, 20, 30, 40}, boxes.get(0), 1e-9);
+    }
+
+    @Test
+    public void clampsAtThePoles() {
+        List<double[]> boxes = GeoBoxes.split(80, 0, 95, 10);
+        assertArrayEquals(new double[]{80, 0, 90, 10}, boxes.get(0), 1e-9);
+        assertTrue(GeoBoxes.split(-100, 0, -95, 10).isEmpty());
+    }
+
+    @Test
+    public void splitsAtTheDateLine() {
+        List<double[]> boxes = GeoBoxes.split(0, 170, 10, 190);
+        assertEquals(2, boxes.size());
+        assertArrayEquals(new double[]{0, 170, 10, 180}, boxes.get(0), 1e-9);
+        assertArrayEquals(new double[]{0, -180, 10, -170}, boxes.get(1), 1e-9);
+
+        boxes = GeoBoxes.split(0, -190, 10, -170);
+        assertEquals(2, boxes.size());
+        assertArrayEquals(new double[]{0, 170, 10, 180}, boxes.get(0), 1e-9);
+        assertArrayEquals(new double[]{0, -180, 10, -170}, boxes.get(1), 1e-9);
+    }
+
+    @Test
+    public void noBoxIsWiderThanHalfTheWorld() {
+        List<double[]> boxes = GeoBoxes.split(0, -150, 10, 150);
+        assertEquals(2, boxes.size());
+        for (double[] box : boxes) {
+            assertTrue(box[3] - box[1] <= 180);
+        }
+        boxes = GeoBoxes.split(0, -500, 10, 500);
+        assertEquals(2, boxes.size());
+        assertArrayEquals(new double[]{0, -180, 10, 0}, boxes.get(0), 1e-9);
+        assertArrayEquals(new double[]{0, 0, 10, 180}, boxes.get(1), 1e-9);
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.patrice_musicapp.utils;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RecommendationEngineTest {
+    private static final long NOW = 1_600_000_000_000L;
+    private static final long DAY = 24L * 60 * 60 * 1000;
+    private static final int POOL_USERS = 100_000;
+
+    private static RecommendationEngine.Candidate candidate(String id, long genres, long instruments, double lat, double lng,
+                                                            int posts, long lastPost, int mutuals) {
+        return new RecommendationEngine.Candidate(id, genres, instruments, lat, lng, posts, lastPost, mutuals);
+    }
+
+    @Test
+    public void overlapIsShareOfViewersTags() {
+        assertEquals(0, RecommendationEngine.overlap(0, 0b111), 0);
+        assertEquals(1, RecommendationEngine.overlap(0b11, 0b111), 0);
+        assertEquals(0.5, RecommendationEngine.overlap(0b11, 0b10), 0);
+    }
+
+    @Test
+    public void kilometersMatchesKnownDistance() {
+        //new york to los angeles
+        double km = RecommendationEngine.kilometers(40.7128, -74.0060, 34.0522, -118.2437);
+        assertEquals(3936, km, 10);
+    }
+
+    @Test
+    public void ranksSharedGenresCloseAndActiveUsersFirst() {
+        RecommendationEngine engine = new RecommendationEngine(RecommendationEngine.Weights.defaults(), NOW);
+        engine.setViewer(new RecommendationEngine.Viewer(0b1011, 0b1, 40, -74));
+        engine.upsert(candidate("match", 0b1011, 0b1, 40.01, -74, 30, NOW - DAY, 3));
+        engine.upsert(candidate("stranger", 0b10000, 0b10, 10, 10, 0, 0, 0));
+        engine.upsert(candidate("partial", 0b1, 0, 40.5, -74, 5, NOW - 60 * DAY, 0));
+
+        assertEquals(3, engine.size());
+        List<String> top = engine.top(3);
+        assertEquals("match", top.get(0));
+        assertEquals("partial", top.get(1));
+        assertEquals("stranger", top.get(2));
+        assertEquals(1, engine.top(1).size());
+    }
+
+    @Test
+    public void upsertReplacesAndRemoveDropsCandidate() {
+        RecommendationEngine engine = new RecommendationEngine(RecommendationEngine.Weights.defaults(), NOW);
+        engine.setViewer(new RecommendationEngine.Viewer(0b1, 0, Double.NaN, Double.NaN));
+        engine.upsert(candidate("a", 0, 0, Double.NaN, Double.NaN, 0, 0, 0));
+        engine.upsert(candidate("b", 0, 0, Double.NaN, Double.NaN, 0, 0, 0));
+        double before = engine.scoreOf("a");
+        engine.upsert(candidate("a", 0b1, 0, Double.NaN, Double.NaN, 0, 0, 0));
+
+        assertEquals(2, engine.size());
+        assertTrue(engine.scoreOf("a") > before);
+        engine.remove("a");
+        assertEquals(1, engine.size());
+        assertTrue(Double.isNaN(engine.scoreOf("a")));
+        assertEquals("b", engine.top(5).get(0));
+    }
+
+    @Test
+    public void setViewerRescoresLikeAFreshEngine() {
+        Random random = new Random(7);
+        RecommendationEngine incremental = new RecommendationEngine(RecommendationEngine.Weights.defaults(), NOW);
+        incremental.setViewer(new RecommendationEngine.Viewer(0b1, 0b1, 40, -74));
+        RecommendationEngine fresh = new RecommendationEngine(RecommendationEngine.Weights.defaults(), NOW);
+        RecommendationEngine.Viewer edited = new RecommendationEngine.Viewer(0b110, 0b1, 41, -73);
+        fresh.setViewer(edited);
+        for (int i = 0; i < 1000; i++) {
+            RecommendationEngine.Candidate candidate = randomCandidate(random, i);
+            incremental.upsert(candidate);
+            fresh.upsert(candidate);
+        }
+
+        incremental.setViewer(edited);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(fresh.scoreOf("u" + i), incremental.scoreOf("u" + i), 1e-12);
+        }
+        assertEquals(fresh.top(20), incremental.top(20));
+    }
+
+    @Test
+    public void rescoresHundredThousandUsersLikeAFreshEngine() {
+        Random random = new Random(42);
+        RecommendationEngine.Candidate[] candidates = new RecommendationEngine.Candidate[POOL_USERS];
+        for (int i = 0; i < POOL_USERS; i++) {
+            candidates[i] = randomCandidate(random, i);
+        }
+        RecommendationEngine engine = new RecommendationEngine(RecommendationEngine.Weights.defaults(), NOW);
+        engine.setViewer(new RecommendationEngine.Viewer(0b101101, 0b11, 40.7, -74));
+        for (RecommendationEngine.Candidate candidate : candidates) {
+            engine.upsert(candidate);
+        }
+        assertEquals(POOL_USERS, engine.size());
+        assertEquals(10, engine.top(10).size());
+
+        //a genre edit, then a location edit
+        engine.setViewer(new RecommendationEngine.Viewer(0b111, 0b11, 40.7, -74));
+        RecommendationEngine.Viewer moved = new RecommendationEngine.Viewer(0b111, 0b11, 34, -118);
+        engine.setViewer(moved);
+
+        RecommendationEngine fresh = new RecommendationEngine(RecommendationEngine.Weights.defaults(), NOW);
+        fresh.setViewer(moved);
+        for (RecommendationEngine.Candidate candidate : candidates) {
+            fresh.upsert(candidate);
+        }
+        assertEquals(fresh.top(10), engine.top(10));
+    }
+
+    private static RecommendationEngine.Candidate randomCandidate(Random random, int i) {
+        boolean located = random.nextInt(10) > 0;
+        return candidate("u" + i, random.nextLong() & ((1L << 30) - 1), random.nextLong() & ((1L << 33) - 1),
+                located ? 25 + random.nextDouble() * 24 : Double.NaN,
+                located ? -125 + random.nextDouble() * 58 : Double.NaN,
+                random.nextInt(200), random.nextInt(4) == 0 ? 0 : NOW - (long) (random.nextDouble() * 365 * DAY),
+                random.nextInt(5));
+    }
+}
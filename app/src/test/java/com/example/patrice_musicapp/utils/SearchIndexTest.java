@@ -0,0 +1,55 @@
+package com.example.patrice_musicapp.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class SearchIndexTest {
+
+    @Test
+    public void gramsIncludeStartMarker() {
+        assertEquals(Arrays.asList("$ja", "jaz", "azz"), SearchIndex.grams("jazz"));
+    }
+
+    @Test
+    public void gramsAreDistinct() {
+        assertEquals(Arrays.asList("$aa", "aaa"), SearchIndex.grams("aaaa"));
+    }
+
+    @Test
+    public void gramsOfShortTerm() {
+        assertEquals(Collections.singletonList("$ab"), SearchIndex.grams("ab"));
+        assertTrue(SearchIndex.grams("a").isEmpty());
+    }
+
+    @Test
+    public void prefixDistanceIsZeroForPrefix() {
+        assertEquals(0, SearchIndex.prefixDistance("gui", "guitar", 2));
+        assertEquals(0, SearchIndex.prefixDistance("guitar", "guitar", 2));
+    }
+
+    @Test
+    public void prefixDistanceCountsEdits() {
+        //substitution
+        assertEquals(1, SearchIndex.prefixDistance("gjit", "guitar", 2));
+        //missing letter
+        assertEquals(1, SearchIndex.prefixDistance("gitar", "guitar", 2));
+        //extra letter
+        assertEquals(1, SearchIndex.prefixDistance("guuitar", "guitar", 2));
+        assertEquals(2, SearchIndex.prefixDistance("gjtar", "guitar", 2));
+    }
+
+    @Test
+    public void prefixDistanceStopsAboveMaxEdits() {
+        assertEquals(2, SearchIndex.prefixDistance("drums", "guitar", 1));
+        assertEquals(3, SearchIndex.prefixDistance("drums", "guitar", 2));
+    }
+
+    @Test
+    public void prefixDistanceOfQueryLongerThanTerm() {
+        assertEquals(2, SearchIndex.prefixDistance("rocks", "roc", 2));
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.patrice_musicapp.utils;
+
+import com.example.patrice_musicapp.models.Instruments;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+//the band matcher has a budget of 100 ms for thousands of candidates. average time per match, in ms, for the top
+//10 five piece lineups out of pools like the ones BandFinder loads
+@State(Scope.Benchmark)
+public class BandMatcherBenchmark {
+    private static final int INSTRUMENTS = Instruments.values().length;
+    private static final int[] LINEUP = {0, 1, 2, 3, 4};
+
+    @Param({"1000", "5000", "10000"})
+    public int candidates;
+
+    private List<BandMatcher.Member> members;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(11);
+        members = new ArrayList<>();
+        for (int i = 0; i < candidates; i++) {
+            long mask = 0;
+            int plays = 1 + random.nextInt(3);
+            for (int j = 0; j < plays; j++) {
+                mask |= 1L << random.nextInt(INSTRUMENTS);
+            }
+            members.add(new BandMatcher.Member("m" + i, mask, Math.round(random.nextDouble() * 100) / 100.0));
+        }
+    }
+
+    @Benchmark
+    public List<BandMatcher.Band> topTenBands() {
+        return BandMatcher.match(LINEUP, members, 10);
+    }
+}
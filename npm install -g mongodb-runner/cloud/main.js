@@ -1,2 +1,104 @@
 // Cloud Code entry point
 
+// one Like row per (post, user). the app keeps one row per post on the device, this covers a second device or a
+// retried save. two saves racing past the query can still both land, the migration below skips pairs that exist
+Parse.Cloud.beforeSave('Like', async (request) => {
+  const like = request.object;
+  if (!like.isNew()) {
+    return;
+  }
+  const post = like.get('post');
+  const user = like.get('user');
+  if (!post || !user) {
+    throw 'A like needs a post and a user';
+  }
+  const query = new Parse.Query('Like');
+  query.equalTo('post', post);
+  query.equalTo('user', user);
+  const existing = await query.first({ useMasterKey: true });
+  if (existing) {
+    throw 'Already liked';
+  }
+});
+
+// one-off move of the likes kept in Post.likesUserArray to Like rows, run from the dashboard's jobs with the
+// master key. the count already has these likes, so likesCount is left alone. the array is cleared only after the
+// post's rows are saved, so a failed run can be started again
+Parse.Cloud.job('migrateLikesUserArray', async (request) => {
+  const query = new Parse.Query('Post');
+  query.exists('likesUserArray');
+  query.select('likesUserArray');
+  let moved = 0;
+  await query.each(async (post) => {
+    const users = post.get('likesUserArray') || [];
+    if (users.length > 0) {
+      const existing = new Parse.Query('Like');
+      existing.equalTo('post', post);
+      existing.containedIn('user', users);
+      existing.select('user');
+      existing.limit(users.length);
+      const liked = {};
+      for (const like of await existing.find({ useMasterKey: true })) {
+        liked[like.get('user').id] = true;
+      }
+      const rows = [];
+      for (const user of users) {
+        if (!liked[user.id]) {
+          const like = new Parse.Object('Like');
+          like.set('post', post);
+          like.set('user', user);
+          rows.push(like);
+          liked[user.id] = true;
+        }
+      }
+      await Parse.Object.saveAll(rows, { useMasterKey: true });
+      moved += rows.length;
+    }
+    post.unset('likesUserArray');
+    await post.save(null, { useMasterKey: true });
+    request.message('Moved ' + moved + ' likes');
+  }, { useMasterKey: true });
+  return 'Moved ' + moved + ' likes';
+});
+
+// new users start with a postCount, so the app's (postCount, objectId) paging sees them
+Parse.Cloud.beforeSave(Parse.User, async (request) => {
+  const user = request.object;
+  if (user.isNew() && user.get('postCount') === undefined) {
+    user.set('postCount', 0);
+  }
+});
+
+// one-off fill of postCount and lastPostAt for users from before the app kept them, run from the dashboard's jobs
+// with the master key. fields that are already set are left alone, so it can be run again
+Parse.Cloud.job('backfillUserPostStats', async (request) => {
+  const query = new Parse.Query(Parse.User);
+  query.select('postCount', 'lastPostAt');
+  let filled = 0;
+  await query.each(async (user) => {
+    let changed = false;
+    if (user.get('postCount') === undefined) {
+      const posts = new Parse.Query('Post');
+      posts.equalTo('user', user);
+      user.set('postCount', await posts.count({ useMasterKey: true }));
+      changed = true;
+    }
+    if (user.get('lastPostAt') === undefined && user.get('postCount') > 0) {
+      const latest = new Parse.Query('Post');
+      latest.equalTo('user', user);
+      latest.descending('createdAt');
+      latest.select('createdAt');
+      const post = await latest.first({ useMasterKey: true });
+      if (post) {
+        user.set('lastPostAt', post.createdAt);
+        changed = true;
+      }
+    }
+    if (changed) {
+      await user.save(null, { useMasterKey: true });
+      filled++;
+      request.message('Filled ' + filled + ' users');
+    }
+  }, { useMasterKey: true });
+  return 'Filled ' + filled + ' users';
+});